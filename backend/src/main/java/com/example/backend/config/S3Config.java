@@ -1,12 +1,17 @@
 package com.example.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
 @Configuration
 public class S3Config {
 
@@ -16,30 +21,44 @@ public class S3Config {
         private final String b;
         private final Region region;
 
-        public S3Config(PrivateKey privateKey) {
+        // Endpoint S3 tương thích (VD: MinIO/LocalStack khi chạy local), để trống để dùng AWS
+        private final String endpoint;
+
+        public S3Config(PrivateKey privateKey, @Value("${app.s3.endpoint:}") String endpoint) {
                 this.privateKey = privateKey;
                 this.a = privateKey.getAssetKey();
                 this.b = privateKey.getSecretKey();
                 this.region = Region.AP_SOUTHEAST_2; // thay bằng region của bạn
+                this.endpoint = endpoint;
         }
 
     @Bean
         public S3Client s3Client() {
-                return S3Client.builder()
+                S3ClientBuilder builder = S3Client.builder()
                                 .region(region)
                                 .credentialsProvider(
                                                 StaticCredentialsProvider.create(
-                                                                AwsBasicCredentials.create(a, b)))
-                                .build();
+                                                                AwsBasicCredentials.create(a, b)));
+                if (!endpoint.isBlank()) {
+                        builder.endpointOverride(URI.create(endpoint))
+                                        .forcePathStyle(true);
+                }
+                return builder.build();
         }
 
         @Bean
         public S3Presigner s3Presigner() {
-                return S3Presigner.builder()
+                S3Presigner.Builder builder = S3Presigner.builder()
                                 .region(region)
                                 .credentialsProvider(
                                                 StaticCredentialsProvider.create(
-                                                                AwsBasicCredentials.create(a, b)))
-                                .build();
+                                                                AwsBasicCredentials.create(a, b)));
+                if (!endpoint.isBlank()) {
+                        builder.endpointOverride(URI.create(endpoint))
+                                        .serviceConfiguration(S3Configuration.builder()
+                                                        .pathStyleAccessEnabled(true)
+                                                        .build());
+                }
+                return builder.build();
         }
-}
\ No newline at end of file
+}
@@ -1,13 +1,20 @@
 package com.example.backend.config;
 
+import com.example.backend.security.JsonAccessDeniedHandler;
+import com.example.backend.security.JsonAuthenticationEntryPoint;
+import com.example.backend.security.JwtAuthenticationFilter;
 import com.example.backend.security.oauth2.OAuth2SuccessHandler;
+import com.example.backend.service.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -21,16 +28,46 @@ public class SecurityConfig {
     @Autowired
     private OAuth2SuccessHandler oAuth2SuccessHandler;
 
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+                .addFilterBefore(new JwtAuthenticationFilter(jwtService),
+                        UsernamePasswordAuthenticationFilter.class)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/login/**").permitAll()
+                        .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // API công khai duy nhất: đăng nhập, đăng ký và health check
+                        .requestMatchers(HttpMethod.POST, "/api/auth/login", "/api/auth/register",
+                                "/api/auth/oauth2/login").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/openvidu/health").permitAll()
+                        // Controller tự kiểm tra chính chủ hoặc ADMIN
+                        .requestMatchers(HttpMethod.PUT, "/api/user/*/status").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/user/*/sessions").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/user-metrics/user/*").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/record/filter").hasAnyRole("ADMIN", "AGENT")
+                        .requestMatchers(HttpMethod.POST, "/api/record/rating").authenticated()
+                        // Quản trị user/agent, bản ghi và metrics
+                        .requestMatchers("/api/user/**", "/api/agent/**", "/api/record/**",
+                                "/api/user-metrics/**").hasRole("ADMIN")
+                        .requestMatchers("/api/**").authenticated()
+                        // Ngoài /api: /ws (xác thực ở handshake), /login, /oauth2
                         .anyRequest().permitAll()
                 )
+                .exceptionHandling(exceptions -> exceptions
+                        .defaultAuthenticationEntryPointFor(
+                                new JsonAuthenticationEntryPoint(objectMapper),
+                                request -> request.getRequestURI().startsWith("/api/"))
+                        .defaultAccessDeniedHandlerFor(
+                                new JsonAccessDeniedHandler(objectMapper),
+                                request -> request.getRequestURI().startsWith("/api/"))
+                )
                 .oauth2Login(oauth2 -> oauth2
                         .successHandler(oAuth2SuccessHandler)
                         .failureUrl("/login?error=true")
@@ -1,15 +1,17 @@
 package com.example.backend.config;
 
+import com.example.backend.scheduling.HashedWheelTimer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class TaskSchedulerConfig {
 
     @Bean
-    public TaskScheduler taskScheduler() {
+    public ThreadPoolTaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
         taskScheduler.setPoolSize(10);
         taskScheduler.setThreadNamePrefix("presence-task-");
@@ -18,4 +20,13 @@ public class TaskSchedulerConfig {
         taskScheduler.initialize();
         return taskScheduler;
     }
+
+    /**
+     * Timer dùng chung cho timeout của support request và grace period offline.
+     * Tick 100ms x 512 ô = một vòng ~51 giây, task đến hạn chạy trên taskScheduler.
+     */
+    @Bean(destroyMethod = "stop")
+    public HashedWheelTimer hashedWheelTimer(ThreadPoolTaskScheduler taskScheduler) {
+        return new HashedWheelTimer("timer-wheel", 100, TimeUnit.MILLISECONDS, 512, taskScheduler);
+    }
 }
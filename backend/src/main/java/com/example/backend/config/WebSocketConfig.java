@@ -1,7 +1,10 @@
 package com.example.backend.config;
 
 //import com.example.backend.websocket.StompChannelInterceptor;
+import com.example.backend.websocket.SessionHeartbeatInterceptor;
 import com.example.backend.websocket.UserHandshakeInterceptor;
+import com.example.backend.websocket.UserPrincipalHandshakeHandler;
+import com.example.backend.websocket.WebSocketSessionCloser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -11,23 +14,38 @@ import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocket
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Chu kỳ heartbeat server gửi và mong nhận từ client (ms)
+    public static final long HEARTBEAT_MS = 10000;
+
     @Autowired
     private UserHandshakeInterceptor userHandshakeInterceptor;
 
+    @Autowired
+    private SessionHeartbeatInterceptor sessionHeartbeatInterceptor;
+
+    @Autowired
+    private UserPrincipalHandshakeHandler userPrincipalHandshakeHandler;
+
+    @Autowired
+    private WebSocketSessionCloser webSocketSessionCloser;
+
     @Autowired
     private TaskScheduler taskScheduler;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
+        // Broker trong JVM: presence, matching, replay buffer và admin monitor cũng
+        // giữ trạng thái trong từng JVM nên ứng dụng chỉ chạy một node
         // Enhanced config cho @stomp/stompjs compatibility
-        config.enableSimpleBroker("/topic", "/queue","/user")
-                .setHeartbeatValue(new long[] { 10000, 10000 }) // 10s heartbeat
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] { HEARTBEAT_MS, HEARTBEAT_MS }) // 10s heartbeat
                 .setTaskScheduler(taskScheduler);
 
         config.setApplicationDestinationPrefixes("/app");
@@ -37,10 +55,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setPreservePublishOrder(true);
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(sessionHeartbeatInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(webSocketSessionCloser);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(userPrincipalHandshakeHandler)
                 .addInterceptors(userHandshakeInterceptor)
                 .withSockJS()
                 .setClientLibraryUrl("https://cdn.jsdelivr.net/npm/sockjs-client@1/dist/sockjs.min.js")
@@ -51,6 +80,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Add native WebSocket endpoint for better performance
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(userPrincipalHandshakeHandler)
                 .addInterceptors(userHandshakeInterceptor);
     }
 
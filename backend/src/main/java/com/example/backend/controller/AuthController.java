@@ -3,10 +3,12 @@ import com.example.backend.dto.request.RegisterRequest;
 import com.example.backend.dto.request.LoginRequest;
 import com.example.backend.dto.response.LoginResponse;
 import com.example.backend.model.User;
+import com.example.backend.security.JwtPrincipal;
 import com.example.backend.service.AuthService;
 import com.example.backend.service.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -29,11 +31,10 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> logout(@AuthenticationPrincipal JwtPrincipal principal,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
-            String token = jwtService.extractTokenFromHeader(authHeader);
-
-            authService.logout(token);
+            authService.logout(principal, jwtService.extractTokenFromHeader(authHeader));
 
             Map<String, String> response = new HashMap<>();
             response.put("message", "Logout successful");
@@ -0,0 +1,52 @@
+package com.example.backend.controller;
+
+import com.example.backend.dto.notification.NotificationReplaySummary;
+import com.example.backend.dto.request.NotificationReplayRequest;
+import com.example.backend.websocket.NotificationSender;
+import com.example.backend.websocket.UserNotificationBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+import java.util.Map;
+
+/**
+ * Replay notification khi client kết nối lại: client gửi seq cuối cùng đã nhận
+ * tới /app/notifications/replay và chỉ nhận lại các frame bị lỡ (trên đúng
+ * topic ban đầu, giữ header seq), theo sau là một frame notification_replay
+ * trên /user/topic/support-updates.
+ */
+@Controller
+public class NotificationReplayController {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationReplayController.class);
+
+    @Autowired
+    private NotificationSender notificationSender;
+
+    @MessageMapping("/notifications/replay")
+    public void replay(@Payload NotificationReplayRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        Object userId = attributes != null ? attributes.get("userId") : null;
+        if (userId == null) {
+            return;
+        }
+
+        Long id = Long.valueOf(userId.toString());
+        String sessionId = headerAccessor.getSessionId();
+        UserNotificationBuffer.Replay replay = notificationSender.replay(id, sessionId, request.getLastSeq());
+
+        notificationSender.sendToSession(id, sessionId, "/topic/support-updates", notificationSender.serialize(
+                new NotificationReplaySummary("notification_replay", request.getLastSeq(), replay.replayed(),
+                        replay.complete(), replay.latestSeq(), System.currentTimeMillis())));
+
+        if (replay.replayed() > 0 || !replay.complete()) {
+            logger.info("Replayed {} notifications to user {} after seq {} (complete: {})",
+                    replay.replayed(), id, request.getLastSeq(), replay.complete());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.backend.controller;
+
+import com.example.backend.dto.response.UserStatusEntry;
+import com.example.backend.enums.UserStatus;
+import com.example.backend.service.SupportRequestService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot presence qua STOMP: client subscribe /app/users/status-snapshot một
+ * lần khi kết nối (và kết nối lại), sau đó chỉ áp các USER_STATUS_BATCH trên
+ * /topic/users/status-changes, không cần gọi lại /api/support/agents/online.
+ */
+@Controller
+public class PresenceController {
+
+    @Autowired
+    private SupportRequestService supportRequestService;
+
+    @SubscribeMapping("/users/status-snapshot")
+    public Map<String, Object> statusSnapshot() {
+        long now = System.currentTimeMillis();
+        List<UserStatusEntry> agents = supportRequestService.getOnlineAgents().stream()
+                .map(agent -> UserStatusEntry.builder()
+                        .userId(agent.getId())
+                        .fullName(agent.getFullName())
+                        .status(UserStatus.ONLINE)
+                        .timestamp(now)
+                        .build())
+                .toList();
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("type", "USER_STATUS_SNAPSHOT");
+        snapshot.put("agents", agents);
+        snapshot.put("timestamp", now);
+        return snapshot;
+    }
+}
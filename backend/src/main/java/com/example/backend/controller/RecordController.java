@@ -2,6 +2,7 @@ package com.example.backend.controller;
 
 import com.example.backend.dto.request.RecordingFilterRequest;
 import com.example.backend.dto.response.*;
+import com.example.backend.security.JwtPrincipal;
 import com.example.backend.service.RecordService;
 import com.example.backend.service.S3TreeService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +12,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
@@ -42,13 +45,26 @@ public class RecordController {
             @RequestParam(defaultValue = "10") int size) {
 
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("startedAt").descending());
+        // Sắp xếp thêm theo id để thứ tự ổn định khi trùng startedAt
+        Pageable pageable = PageRequest.of(page, size, Sort.by("startedAt").descending().and(Sort.by("id").descending()));
 
         Page<RecordingResponse> recordings = recordService.getRecords(agentId, userId, startDate, endDate, pageable);
 
         return ResponseEntity.ok(recordings);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<RecordingCursorPage> searchVideos(
+            @RequestParam(required = false) Long agentId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(recordService.searchRecords(agentId, userId, startDate, endDate, cursor, size));
+    }
+
     @GetMapping("/url")
     public ResponseEntity<RecordUrlResponse> getPresignedUrl(@RequestParam String key) {
         return ResponseEntity.ok(recordService.getPresignedUrl(key));
@@ -56,21 +72,28 @@ public class RecordController {
 
     @GetMapping("/tree")
     public S3TreeResponse getSubTree(
-            @RequestParam(required = false, defaultValue = "") String folderKey) {
+            @RequestParam(required = false, defaultValue = "") String folderKey,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + S3TreeService.DEFAULT_PAGE_SIZE) int limit) {
         System.out.println("FolderKey = '" + folderKey + "'");
-        return s3TreeService.getSubTree(folderKey);
+        return s3TreeService.getSubTree(folderKey, cursor, limit);
     }
 
     @DeleteMapping("/delete")
     public ResponseEntity<?> delete(@RequestParam String key, @RequestParam(required = false) Boolean folder) {
         if (Boolean.TRUE.equals(folder)) {
-            recordService.deleteFolder(key);
-        } else {
-            recordService.deleteFile(key);
+            // Folder lớn được xóa ở background, client theo dõi qua /delete/jobs/{jobId}
+            return ResponseEntity.accepted().body(recordService.deleteFolder(key));
         }
+        recordService.deleteFile(key);
         return ResponseEntity.ok().body("Deleted successfully");
     }
 
+    @GetMapping("/delete/jobs/{jobId}")
+    public ResponseEntity<BulkDeleteProgress> getDeleteProgress(@PathVariable String jobId) {
+        return ResponseEntity.ok(recordService.getDeleteProgress(jobId));
+    }
+
     @GetMapping("/download")
     public ResponseEntity<?> getPresignedUrl(
             @RequestParam String key,
@@ -87,9 +110,15 @@ public class RecordController {
     }
 
     @GetMapping("/filter")
-    public ResponseEntity<Page<RecordingDTO>> getRecordings(
+    public ResponseEntity<?> getRecordings(
             @RequestParam Long id,
-            RecordingFilterRequest filterRequest) {
+            RecordingFilterRequest filterRequest,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        // AGENT chỉ xem được bản ghi của chính mình
+        if (!"ADMIN".equalsIgnoreCase(principal.role()) && !id.equals(principal.userId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Not allowed to view recordings of another agent"));
+        }
 
         System.out.println("GET /api/recordings - agentId: {}, startDate: {}, endDate: {}" +
                 id + filterRequest.getStartDate() + filterRequest.getEndDate());
@@ -2,10 +2,12 @@ package com.example.backend.controller;
 
 import com.example.backend.model.SupportRequest;
 import com.example.backend.model.User;
+import com.example.backend.security.JwtPrincipal;
+import com.example.backend.service.SupportMatchingDispatcher;
 import com.example.backend.service.SupportRequestService;
-import com.example.backend.service.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -20,30 +22,21 @@ public class SupportController {
     private SupportRequestService supportRequestService;
 
     @Autowired
-    private JwtService jwtService;
+    private SupportMatchingDispatcher supportMatchingDispatcher;
 
     @GetMapping("/requests/{requestId}")
-    public ResponseEntity<?> getSupportRequest(@PathVariable Long requestId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
-        return supportRequestService.getSupportRequest(requestId, authHeader);
+    public ResponseEntity<?> getSupportRequest(@PathVariable Long requestId) {
+        return supportRequestService.getSupportRequest(requestId);
     }
 
     @PostMapping("/requests")
     public ResponseEntity<?> createSupportRequest(
             @RequestBody Map<String, Object> requestBody,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            // Extract và validate JWT token
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                Map<String, String> response = new HashMap<>();
-                response.put("message", "Invalid or expired token");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            Long userId = jwtService.extractUserId(token);
-            String userRole = jwtService.extractRole(token);
+            Long userId = principal.userId();
+            String userRole = principal.role();
 
             // Validate user role (chỉ USER mới có thể tạo support request)
             if (!"USER".equalsIgnoreCase(userRole)) {
@@ -85,8 +78,8 @@ public class SupportController {
             response.put("timestamp", System.currentTimeMillis());
             response.put("maxWaitTime", getMaxWaitTime(type));
 
-            // Trigger matching process bất đồng bộ
-            supportRequestService.processMatching(request.getId());
+            // Đưa request vào hàng đợi matching
+            supportMatchingDispatcher.submit(request);
 
             return ResponseEntity.ok(response);
 
@@ -99,16 +92,9 @@ public class SupportController {
     }
 
     @GetMapping("/agents/online")
-    public ResponseEntity<?> getOnlineAgents(
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> getOnlineAgents() {
 
         try {
-            // Extract và validate JWT token
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body("Invalid or expired token");
-            }
-
             List<User> onlineAgents = supportRequestService.getOnlineAgents();
 
             Map<String, Object> response = new HashMap<>();
@@ -126,16 +112,10 @@ public class SupportController {
     @PostMapping("/requests/{requestId}/complete")
     public ResponseEntity<?> completeRequest(
             @PathVariable Long requestId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            // Extract và validate JWT token
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body("Invalid or expired token");
-            }
-
-            Long userId = jwtService.extractUserId(token);
+            Long userId = principal.userId();
 
             supportRequestService.completeRequest(requestId, userId);
 
@@ -155,19 +135,11 @@ public class SupportController {
     public ResponseEntity<?> respondToRequest(
             @PathVariable Long requestId,
             @RequestBody Map<String, Object> requestBody,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            // Extract và validate JWT token
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                Map<String, String> response = new HashMap<>();
-                response.put("message", "Invalid or expired token");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            Long agentId = jwtService.extractUserId(token);
-            String userRole = jwtService.extractRole(token);
+            Long agentId = principal.userId();
+            String userRole = principal.role();
 
             // Validate agent role
             if (!"AGENT".equalsIgnoreCase(userRole)) {
@@ -210,15 +182,10 @@ public class SupportController {
     @DeleteMapping("/requests/{requestId}")
     public ResponseEntity<?> cancelSupportRequest(
             @PathVariable Long requestId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid or expired token"));
-            }
-
-            Long userId = jwtService.extractUserId(token);
+            Long userId = principal.userId();
             boolean cancelled = supportRequestService.cancelSupportRequest(requestId, userId);
 
             if (cancelled) {
@@ -249,16 +216,11 @@ public class SupportController {
     @PostMapping("/requests/{requestId}/cancel-permission")
     public ResponseEntity<?> cancelPermission(
             @PathVariable Long requestId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid or expired token"));
-            }
-
-            Long userId = jwtService.extractUserId(token);
-            String userRole = jwtService.extractRole(token);
+            Long userId = principal.userId();
+            String userRole = principal.role();
 
             boolean cancelled = supportRequestService.cancelPermissionPreparation(requestId, userId, userRole);
 
@@ -282,16 +244,11 @@ public class SupportController {
     @PostMapping("/requests/{requestId}/end-call")
     public ResponseEntity<?> endCall(
             @PathVariable Long requestId,
-            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+            @AuthenticationPrincipal JwtPrincipal principal) {
 
         try {
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid or expired token"));
-            }
-
-            Long userId = jwtService.extractUserId(token);
-            String userRole = jwtService.extractRole(token);
+            Long userId = principal.userId();
+            String userRole = principal.role();
 
             boolean ended = supportRequestService.endCall(requestId, userId, userRole);
 
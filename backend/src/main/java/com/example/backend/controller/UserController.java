@@ -7,10 +7,14 @@ import com.example.backend.dto.response.DeleteResponse;
 import com.example.backend.dto.response.TotalResponse;
 import com.example.backend.dto.response.UserResponse;
 import com.example.backend.enums.UserStatus;
+import com.example.backend.security.JwtPrincipal;
 import com.example.backend.service.UserService;
+import com.example.backend.websocket.UserSessionRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -24,9 +28,22 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserSessionRegistry userSessionRegistry;
+
 
+    /**
+     * Đổi trạng thái của chính mình (ADMIN đổi được cho user khác)
+     */
     @PutMapping("/{userId}/status")
-    public ResponseEntity<Map<String, String>> updateUserStatus(@PathVariable Long userId, @RequestParam UserStatus status) {
+    public ResponseEntity<Map<String, String>> updateUserStatus(
+            @PathVariable Long userId,
+            @RequestParam UserStatus status,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        if (!isSelfOrAdmin(principal, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Not allowed to change status of another user"));
+        }
         userService.updateUserStatus(userId, status);
         Map<String, String> response = new HashMap<>();
         response.put("message", "Status updated successfully");
@@ -34,6 +51,21 @@ public class UserController {
 
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Các WebSocket session đang mở của user và thời điểm heartbeat cuối.
+     * Chỉ ADMIN hoặc chính user đó được xem.
+     */
+    @GetMapping("/{userId}/sessions")
+    public ResponseEntity<?> getUserSessions(
+            @PathVariable Long userId,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        if (!isSelfOrAdmin(principal, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Not allowed to view sessions of another user"));
+        }
+        return ResponseEntity.ok(userSessionRegistry.getSessions(userId));
+    }
 //
     @PostMapping
     public ResponseEntity<UserResponse> createUser(@RequestBody UserRequest userRequest){
@@ -89,4 +121,8 @@ public class UserController {
         DeleteResponse deleteResponse = new DeleteResponse("Delete successfully!");
         return ResponseEntity.ok(deleteResponse);
     }
+
+    private static boolean isSelfOrAdmin(JwtPrincipal principal, Long userId) {
+        return "ADMIN".equalsIgnoreCase(principal.role()) || userId.equals(principal.userId());
+    }
 }
@@ -1,9 +1,17 @@
 package com.example.backend.controller;
 
+import com.example.backend.enums.LatencyKind;
+import com.example.backend.exception.ValidationException;
 import com.example.backend.model.UserMetric;
+import com.example.backend.security.JwtPrincipal;
+import com.example.backend.service.JwtService;
+import com.example.backend.service.LatencyHistogramService;
+import com.example.backend.service.MetricsEventService;
 import com.example.backend.service.UserMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -16,11 +24,25 @@ public class UserMetricsController {
     @Autowired
     private UserMetricsService userMetricsService;
 
+    @Autowired
+    private MetricsEventService metricsEventService;
+
+    @Autowired
+    private LatencyHistogramService latencyHistogramService;
+
+    @Autowired
+    private JwtService jwtService;
+
     /**
      * Lấy metrics của một user cụ thể
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getUserMetrics(@PathVariable Long userId) {
+    public ResponseEntity<?> getUserMetrics(@PathVariable Long userId,
+            @AuthenticationPrincipal JwtPrincipal principal) {
+        if (!"ADMIN".equalsIgnoreCase(principal.role()) && !userId.equals(principal.userId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("message", "Not allowed to view metrics of another user"));
+        }
         try {
             return ResponseEntity.ok(userMetricsService.getUserMetricResponse(userId));
         } catch (Exception e) {
@@ -56,12 +78,71 @@ public class UserMetricsController {
         }
     }
 
+    /**
+     * Thống kê pipeline ghi metrics (hàng đợi, số sự kiện bị bỏ, số batch)
+     */
+    @GetMapping("/pipeline-stats")
+    public ResponseEntity<?> getPipelineStats() {
+        return ResponseEntity.ok(metricsEventService.getStats());
+    }
+
+    /**
+     * Thống kê cache xác thực JWT của node này
+     */
+    @GetMapping("/jwt-cache-stats")
+    public ResponseEntity<?> getJwtCacheStats() {
+        return ResponseEntity.ok(jwtService.getCacheStats());
+    }
+
+    /**
+     * p50/p90/p99 độ trễ toàn hệ thống (kind = RESPONSE | MATCH)
+     */
+    @GetMapping("/latency")
+    public ResponseEntity<?> getGlobalLatency(@RequestParam(defaultValue = "RESPONSE") String kind) {
+        return ResponseEntity.ok(latencyHistogramService.getPercentiles(parseLatencyKind(kind), null));
+    }
+
+    /**
+     * p50/p90/p99 độ trễ của một agent
+     */
+    @GetMapping("/latency/user/{userId}")
+    public ResponseEntity<?> getUserLatency(@PathVariable Long userId,
+            @RequestParam(defaultValue = "RESPONSE") String kind) {
+        return ResponseEntity.ok(latencyHistogramService.getPercentiles(parseLatencyKind(kind), userId));
+    }
+
+    /**
+     * Các agent có độ trễ tại percentile vượt ngưỡng (ms), dùng cho cảnh báo
+     */
+    @GetMapping("/latency/slow-agents")
+    public ResponseEntity<?> getSlowAgents(@RequestParam(defaultValue = "RESPONSE") String kind,
+            @RequestParam(defaultValue = "90") double percentile,
+            @RequestParam long thresholdMs,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (percentile < 0 || percentile > 100) {
+            throw new ValidationException("percentile must be between 0 and 100");
+        }
+        if (limit < 1 || limit > 100) {
+            throw new ValidationException("limit must be between 1 and 100");
+        }
+        return ResponseEntity.ok(latencyHistogramService.getSlowAgents(parseLatencyKind(kind), percentile,
+                thresholdMs, limit));
+    }
+
     @PostMapping("/update-total-calls/{userId}")
     public ResponseEntity<?> updateTotalCalls(@PathVariable Long userId) {
-        userMetricsService.updateTotalCalls(userId);
+        metricsEventService.recordCallStarted(userId);
         return ResponseEntity.ok(Map.of("message", "Total calls updated successfully", "userId", userId));
     }
 
+    private LatencyKind parseLatencyKind(String kind) {
+        try {
+            return LatencyKind.valueOf(kind.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid latency kind: " + kind + " (expected RESPONSE or MATCH)");
+        }
+    }
+
     /**
      * Cập nhật rating manually (for testing purposes)
      */
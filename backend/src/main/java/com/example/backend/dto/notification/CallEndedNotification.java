@@ -0,0 +1,10 @@
+package com.example.backend.dto.notification;
+
+public record CallEndedNotification(
+        String type,
+        Long requestId,
+        Long endedBy,
+        boolean isUserEnded,
+        String message,
+        long timestamp) {
+}
@@ -0,0 +1,14 @@
+package com.example.backend.dto.notification;
+
+/**
+ * Gửi sau các frame replay. complete = false nghĩa là một phần frame đã mất,
+ * client cần tải lại trạng thái; latestSeq là seq client nên ghi nhận.
+ */
+public record NotificationReplaySummary(
+        String type,
+        Long lastSeq,
+        int replayed,
+        boolean complete,
+        long latestSeq,
+        long timestamp) {
+}
@@ -0,0 +1,10 @@
+package com.example.backend.dto.notification;
+
+public record PermissionCancelledNotification(
+        String type,
+        Long requestId,
+        Long cancelledBy,
+        boolean isUserCancelled,
+        String message,
+        long timestamp) {
+}
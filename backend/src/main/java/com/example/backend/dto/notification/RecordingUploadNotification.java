@@ -0,0 +1,12 @@
+package com.example.backend.dto.notification;
+
+public record RecordingUploadNotification(
+        String type,
+        String recordingId,
+        Long databaseId,
+        String sessionId,
+        Long requestId,
+        String status,
+        String message,
+        long timestamp) {
+}
@@ -0,0 +1,11 @@
+package com.example.backend.dto.notification;
+
+/**
+ * Notification chỉ mang id của request (timeout, hủy, lỗi, tiến độ matching)
+ */
+public record RequestEventNotification(
+        String type,
+        Long requestId,
+        String message,
+        long timestamp) {
+}
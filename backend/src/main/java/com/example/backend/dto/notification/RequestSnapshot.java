@@ -0,0 +1,40 @@
+package com.example.backend.dto.notification;
+
+import com.example.backend.enums.ResponseStatus;
+import com.example.backend.enums.SupportRequestStatus;
+import com.example.backend.model.SupportRequest;
+import com.example.backend.model.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thông tin support request đi kèm notification (field "request")
+ */
+public record RequestSnapshot(
+        Long id,
+        SupportRequestStatus status,
+        String type,
+        LocalDateTime createdAt,
+        ResponseStatus response,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Party agent,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Party user) {
+
+    public record Party(Long id, String fullName, String email) {
+
+        private static Party of(User user) {
+            return user == null ? null : new Party(user.getId(), user.getFullName(), user.getEmail());
+        }
+    }
+
+    public static RequestSnapshot of(SupportRequest request) {
+        return new RequestSnapshot(
+                request.getId(),
+                request.getStatus(),
+                request.getType(),
+                request.getCreatedAt(),
+                request.getResponse(),
+                Party.of(request.getAgent()),
+                Party.of(request.getUser()));
+    }
+}
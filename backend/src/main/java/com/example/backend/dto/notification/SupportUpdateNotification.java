@@ -0,0 +1,16 @@
+package com.example.backend.dto.notification;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * Notification trên /user/topic/support-updates kèm thông tin request.
+ * request là RequestSnapshot đã serialize sẵn, để các notification của cùng
+ * một request (VD: request_matched cho user và request_assigned cho agent)
+ * chỉ serialize request một lần.
+ */
+public record SupportUpdateNotification(
+        String type,
+        String message,
+        long timestamp,
+        @JsonRawValue String request) {
+}
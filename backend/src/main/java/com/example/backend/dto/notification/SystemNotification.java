@@ -0,0 +1,10 @@
+package com.example.backend.dto.notification;
+
+/**
+ * Thông báo hệ thống / force logout
+ */
+public record SystemNotification(
+        String type,
+        String message,
+        long timestamp) {
+}
@@ -0,0 +1,11 @@
+package com.example.backend.dto.notification;
+
+import com.example.backend.dto.response.UserStatusEntry;
+
+import java.util.List;
+
+public record UserStatusBatchNotification(
+        String type,
+        List<UserStatusEntry> changes,
+        long timestamp) {
+}
@@ -0,0 +1,27 @@
+package com.example.backend.dto.projection;
+
+import com.example.backend.enums.UserStatus;
+
+/**
+ * Agent kèm số liệu từ user_metrics, lấy bằng một câu JOIN
+ * (các trường metric là null nếu agent chưa có dòng user_metrics)
+ */
+public interface AgentMetricView {
+    Long getId();
+
+    String getEmail();
+
+    String getFullName();
+
+    UserStatus getStatus();
+
+    String getRole();
+
+    Boolean getActive();
+
+    Double getRating();
+
+    Integer getTotalCalls();
+
+    Double getTotalCallTime();
+}
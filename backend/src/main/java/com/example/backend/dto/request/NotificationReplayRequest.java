@@ -0,0 +1,13 @@
+package com.example.backend.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationReplayRequest {
+    // Seq cuối cùng client đã nhận, null nếu chưa nhận frame nào
+    private Long lastSeq;
+}
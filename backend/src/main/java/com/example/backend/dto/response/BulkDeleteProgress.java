@@ -0,0 +1,25 @@
+package com.example.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteProgress {
+    private String jobId;
+    private String prefix;
+    private String status;              // RUNNING | COMPLETED | FAILED
+    private long listedKeys;            // số key đã liệt kê từ S3
+    private long deletedKeys;           // số key đã xóa thành công
+    private long failedKeys;            // số key S3 báo lỗi khi xóa
+    private long deletedRecordings;     // số dòng recordings đã xóa
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,25 @@
+package com.example.backend.dto.response;
+
+import com.example.backend.enums.LatencyKind;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Percentile độ trễ (ms), agentId = null là số liệu toàn hệ thống
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LatencyPercentilesResponse {
+    private Long agentId;
+    private LatencyKind kind;
+    private long count;
+    private double mean;
+    private long p50;
+    private long p90;
+    private long p99;
+    private long max;
+}
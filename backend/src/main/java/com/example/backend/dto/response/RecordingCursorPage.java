@@ -0,0 +1,16 @@
+package com.example.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecordingCursorPage {
+    private List<RecordingResponse> items;
+    private String nextCursor;          // truyền lại để lấy trang tiếp, null nếu đã hết
+    private int size;
+}
@@ -18,4 +18,6 @@ public class S3TreeResponse {
     private long size;                  // kích thước file (folder = 0)
     private Instant lastModified;       // thời gian sửa đổi cuối cùng (folder = null)
 //    private String type;
+
+    private String nextCursor;          // key cuối của trang, null nếu đã hết
 }
\ No newline at end of file
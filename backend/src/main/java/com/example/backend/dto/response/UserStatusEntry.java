@@ -0,0 +1,22 @@
+package com.example.backend.dto.response;
+
+import com.example.backend.enums.UserStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Trạng thái presence của một user trong batch/snapshot gửi qua WebSocket.
+ * Batch agent đi qua topic công khai nên chỉ giữ các field danh sách agent cần.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserStatusEntry {
+    private Long userId;
+    private String fullName;
+    private UserStatus status;
+    private long timestamp;
+}
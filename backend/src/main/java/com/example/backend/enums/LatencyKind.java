@@ -0,0 +1,8 @@
+package com.example.backend.enums;
+
+public enum LatencyKind {
+    // Từ lúc tạo request đến khi agent chấp nhận/từ chối
+    RESPONSE,
+    // Từ lúc tạo request đến khi được ghép với agent
+    MATCH
+}
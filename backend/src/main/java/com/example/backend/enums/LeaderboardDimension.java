@@ -0,0 +1,8 @@
+package com.example.backend.enums;
+
+public enum LeaderboardDimension {
+    RATING,
+    TOTAL_CALLS,
+    TOTAL_CALL_TIME,
+    EFFICIENCY
+}
@@ -0,0 +1,7 @@
+package com.example.backend.enums;
+
+public enum MatchOutcome {
+    MATCHED, // Đã ghép được agent
+    WAITING, // Chưa có agent phù hợp, tiếp tục chờ
+    CLOSED // Request không còn WAITING (hủy, timeout, agent không khả dụng)
+}
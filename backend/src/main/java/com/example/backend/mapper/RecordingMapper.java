@@ -12,6 +12,7 @@ public interface RecordingMapper {
     @Mapping(source = "rating", target = "rating")
     @Mapping(target = "agentFullName", ignore = true)
     @Mapping(target = "userFullName", ignore = true)
+    @Mapping(target = "s3Url", ignore = true)
     RecordingResponse toResponse(Recording recording);
 
 }
@@ -1,5 +1,6 @@
 package com.example.backend.mapper;
 
+import com.example.backend.dto.projection.AgentMetricView;
 import com.example.backend.dto.request.UserRequest;
 import com.example.backend.dto.response.AgentResponse;
 import com.example.backend.dto.response.UserResponse;
@@ -35,6 +36,9 @@ public interface UserMapper {
     @Mapping(source = "totalCalls", target = "totalCall")
     @Mapping(source = "totalCallTime", target = "totalCallTime")
     AgentResponse toAgentResponse(UserMetric userMetric);
+
+    @Mapping(source = "totalCalls", target = "totalCall")
+    AgentResponse toAgentResponse(AgentMetricView agentMetricView);
 //    void updateUserFromRequest(UserRequest userRequest, @MappingTarget User user);
 
     @Named("toEmail")
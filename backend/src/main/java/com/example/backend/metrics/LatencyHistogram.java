@@ -0,0 +1,203 @@
+package com.example.backend.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Histogram độ trễ kiểu HDR (log-linear): mỗi khoảng [2^k, 2^(k+1)) được chia
+ * thành SUB_BUCKETS ô bằng nhau nên sai số tương đối của percentile luôn dưới
+ * 1/SUB_BUCKETS (~3%), với số ô cố định bất kể số lần ghi.
+ *
+ * Giá trị tính bằng mili giây, từ 0 đến MAX_VALUE_MS (lớn hơn bị kẹp lại).
+ * Hai histogram cộng được với nhau (merge), nên histogram tổng có thể dựng lại
+ * từ histogram của từng agent. Mã hóa nhị phân chỉ ghi các ô khác 0 (varint),
+ * tối đa khoảng 1-2 KB kể cả khi phân bố trải rộng.
+ *
+ * Các phương thức đều synchronized, phù hợp khi số lần ghi ở mức vài nghìn/giây.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // ~24 ngày, đủ cho mọi độ trễ có nghĩa của request hỗ trợ
+    public static final long MAX_VALUE_MS = (1L << 31) - 1;
+
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE_MS) + 1;
+
+    private static final byte ENCODING_VERSION = 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long sum;
+    private long max;
+
+    /**
+     * Ghi một giá trị (ms), giá trị âm được tính là 0
+     */
+    public synchronized void record(long valueMs) {
+        long value = Math.min(Math.max(valueMs, 0), MAX_VALUE_MS);
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Cộng toàn bộ giá trị của histogram khác vào histogram này
+     */
+    public void merge(LatencyHistogram other) {
+        if (other == this) {
+            return;
+        }
+        LatencyHistogram snapshot = other.copy();
+        synchronized (this) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += snapshot.counts[i];
+            }
+            totalCount += snapshot.totalCount;
+            sum += snapshot.sum;
+            max = Math.max(max, snapshot.max);
+        }
+    }
+
+    public synchronized LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(counts, 0, copy.counts, 0, BUCKET_COUNT);
+        copy.totalCount = totalCount;
+        copy.sum = sum;
+        copy.max = max;
+        return copy;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return totalCount == 0 ? 0.0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Giá trị tại percentile (0-100): cận trên của ô chứa phần tử thứ
+     * ceil(p% * count), không vượt quá max thực tế. Trả về 0 nếu chưa có dữ liệu.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0.0), 100.0);
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * totalCount));
+
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Mã hóa gọn: version, count, sum, max, rồi các cặp (khoảng cách index, count)
+     * của ô khác 0
+     */
+    public synchronized byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(ENCODING_VERSION);
+        writeVarLong(out, totalCount);
+        writeVarLong(out, sum);
+        writeVarLong(out, max);
+
+        int previous = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static LatencyHistogram decode(byte[] data) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (data == null || data.length == 0) {
+            return histogram;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != ENCODING_VERSION) {
+            throw new IllegalArgumentException("Unsupported histogram encoding version: " + version);
+        }
+        histogram.totalCount = readVarLong(buffer);
+        histogram.sum = readVarLong(buffer);
+        histogram.max = readVarLong(buffer);
+
+        int index = -1;
+        while (buffer.hasRemaining()) {
+            index += (int) readVarLong(buffer);
+            if (index >= BUCKET_COUNT) {
+                throw new IllegalArgumentException("Histogram bucket index out of range: " + index);
+            }
+            histogram.counts[index] = readVarLong(buffer);
+        }
+        return histogram;
+    }
+
+    // Giá trị nhỏ hơn SUB_BUCKETS có ô riêng; lớn hơn thì ô = (số mũ, SUB_BUCKET_BITS bit cao nhất)
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalArgumentException("Malformed varint in histogram encoding");
+            }
+        }
+    }
+}
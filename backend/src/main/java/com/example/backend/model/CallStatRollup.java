@@ -0,0 +1,47 @@
+package com.example.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu cuộc gọi gộp sẵn theo giờ/ngày/tháng (theo thời điểm bắt đầu
+ * recording), được cộng dồn khi recording bắt đầu, dừng và được đánh giá
+ */
+@Entity
+@Table(name = "call_stat_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_call_stat_rollup_bucket", columnNames = { "granularity", "bucket_start" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CallStatRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // hour | day | month
+    @Column(name = "granularity", nullable = false, length = 10)
+    private String granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "call_count", nullable = false)
+    private Long callCount;
+
+    @Column(name = "total_duration", nullable = false)
+    private Double totalDuration;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount;
+}
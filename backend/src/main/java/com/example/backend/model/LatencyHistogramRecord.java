@@ -0,0 +1,45 @@
+package com.example.backend.model;
+
+import com.example.backend.enums.LatencyKind;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Histogram độ trễ đã mã hóa (LatencyHistogram.encode) của một agent,
+ * agent_id = 0 là histogram tổng của toàn hệ thống
+ */
+@Entity
+@Table(name = "latency_histograms", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_latency_histogram_kind_agent", columnNames = { "kind", "agent_id" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LatencyHistogramRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 20)
+    private LatencyKind kind;
+
+    @Column(name = "agent_id", nullable = false)
+    private Long agentId;
+
+    @Column(name = "total_count", nullable = false)
+    private Long totalCount;
+
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
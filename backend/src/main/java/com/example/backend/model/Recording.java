@@ -11,7 +11,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "recordings")
+@Table(name = "recordings", indexes = {
+        @Index(name = "idx_recordings_agent_started", columnList = "agent_id, started_at, id"),
+        @Index(name = "idx_recordings_user_started", columnList = "user_id, started_at, id"),
+        @Index(name = "idx_recordings_started", columnList = "started_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,9 +57,6 @@ public class Recording {
     @Column(name = "file_size")
     private Long fileSize;
 
-    @Column(name = "s3_url", length = 2048)
-    private String s3Url;
-
     @Column(name = "s3_key")
     private String s3Key;
 
@@ -0,0 +1,73 @@
+package com.example.backend.model;
+
+import com.example.backend.enums.UploadJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job upload recording lên S3, được worker xử lý ở background và retry khi lỗi
+ */
+@Entity
+@Table(name = "recording_upload_jobs", indexes = {
+        @Index(name = "idx_upload_job_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecordingUploadJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "recording_id", nullable = false, unique = true)
+    private String recordingId;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    // URL file recording trên OpenVidu server
+    @Column(name = "recording_url", nullable = false, length = 2048)
+    private String recordingUrl;
+
+    // Key S3 cố định từ lúc tạo job, mọi lần retry ghi đè cùng một object
+    @Column(name = "s3_key", length = 1024)
+    private String s3Key;
+
+    @Column(name = "duration")
+    private Double duration;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private UploadJobStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Node đang chạy job gia hạn lease định kỳ; RUNNING mà lease hết hạn là node đó đã dừng
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -31,7 +31,9 @@ public class User {
     @Column(name = "full_name", length = 200)
     private String fullName;
 
-    @Column(nullable = false)
+    // Chỉ ghi khi tạo user; sau đó chỉ PresenceRegistry ghi cột này (batch UPDATE),
+    // nên save() entity đọc từ trước không ghi đè trạng thái mới hơn
+    @Column(nullable = false, updatable = false)
     @Enumerated(EnumType.STRING)
     private UserStatus status = UserStatus.OFFLINE;
 
@@ -64,6 +64,10 @@ public class UserMetric {
     @Column(name = "average_response_time")
     private Double averageResponseTime = 0.00;
 
+    // Tổng thời gian phản hồi (giây), dùng để tính average_response_time trong SQL
+    @Column(name = "total_response_time")
+    private Double totalResponseTime = 0.00;
+
     @OneToOne
     @JsonIgnore
     @JoinColumn(name = "user_id", nullable = true, foreignKey = @ForeignKey(name = "fk_user_metric_user"))
@@ -0,0 +1,18 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.CallStatRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CallStatRollupRepository extends JpaRepository<CallStatRollup, Long> {
+
+    List<CallStatRollup> findByGranularityAndBucketStartBetweenOrderByBucketStartAsc(
+            String granularity, LocalDateTime start, LocalDateTime end);
+
+    Optional<CallStatRollup> findByGranularityAndBucketStart(String granularity, LocalDateTime bucketStart);
+}
@@ -0,0 +1,21 @@
+package com.example.backend.repository;
+
+import com.example.backend.enums.LatencyKind;
+import com.example.backend.model.LatencyHistogramRecord;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LatencyHistogramRepository extends JpaRepository<LatencyHistogramRecord, Long> {
+
+    // Khóa dòng để cộng histogram của node này vào mà không ghi đè mẫu của node khác
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM LatencyHistogramRecord h WHERE h.kind = :kind AND h.agentId = :agentId")
+    Optional<LatencyHistogramRecord> findForUpdate(@Param("kind") LatencyKind kind, @Param("agentId") Long agentId);
+}
@@ -1,11 +1,11 @@
 package com.example.backend.repository;
 
 import com.example.backend.dto.response.AgentStaticResponse;
-import com.example.backend.dto.response.RecordStaticResponse;
 import com.example.backend.model.Recording;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RecordingRepository extends JpaRepository<Recording,Long> {
+public interface RecordingRepository extends JpaRepository<Recording,Long>, JpaSpecificationExecutor<Recording> {
     Optional<Recording> findByRecordingId (String recordingId);
     Optional<Recording> findBySessionId(String sessionId);
     Page<Recording> findByAgentId(Long agentId, Pageable pageable);
@@ -40,40 +40,4 @@ public interface RecordingRepository extends JpaRepository<Recording,Long> {
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate,
             Pageable pageable);
-
-
-    @Query("""
-    SELECT r FROM Recording r
-    WHERE (:agentId IS NULL OR r.agentId = :agentId)
-      AND (:userId IS NULL OR r.userId = :userId)
-      AND (COALESCE(:start, r.startedAt) <= r.startedAt)
-      AND (COALESCE(:end, r.stoppedAt) >= r.stoppedAt)
-    """)
-    Page<Recording> findByFilters(
-            @Param("agentId") Long agentId,
-            @Param("userId") Long userId,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end,
-            Pageable pageable);
-
-    @Query(value = """
-        SELECT 
-            DATE_TRUNC(:interval, r.started_at) AS bucket, 
-            COUNT(*) AS cnt,
-            SUM(r.duration) as sum
-        FROM recordings r
-        WHERE r.started_at BETWEEN :start AND :end
-        GROUP BY bucket
-        ORDER BY bucket
-        """, nativeQuery = true)
-    List<Object[]> countByInterval(
-            @Param("interval") String interval, // 'hour' | 'day' | 'month'
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end
-    );
-
-    @Query("SELECT new com.example.backend.dto.response.RecordStaticResponse(AVG(r.rating), COUNT(r), SUM(r.duration)) " +
-            "FROM Recording r " +
-            "WHERE FUNCTION('DATE', r.startedAt) = CURRENT_DATE")
-    RecordStaticResponse getTodaySummary();
 }
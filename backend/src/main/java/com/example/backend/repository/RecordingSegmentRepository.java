@@ -2,8 +2,12 @@ package com.example.backend.repository;
 
 import com.example.backend.model.RecordingSegment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +17,10 @@ public interface RecordingSegmentRepository extends JpaRepository<RecordingSegme
 
     // Xóa tất cả segments của recording
     void deleteByRecordingId(Long recordingId);
+
+    // Xóa segments của các recording có S3 key thuộc lô
+    @Modifying
+    @Query("DELETE FROM RecordingSegment s WHERE s.recording.id IN "
+            + "(SELECT r.id FROM Recording r WHERE r.s3Key IN :s3Keys)")
+    int deleteByRecordingS3KeyIn(@Param("s3Keys") Collection<String> s3Keys);
 }
@@ -0,0 +1,53 @@
+package com.example.backend.repository;
+
+import com.example.backend.model.Recording;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Điều kiện lọc recording, chỉ ghép các điều kiện thực sự được truyền vào để
+ * Postgres dùng được index (agent_id, started_at) / (user_id, started_at)
+ */
+public final class RecordingSpecifications {
+
+    private RecordingSpecifications() {
+    }
+
+    public static Specification<Recording> search(Long agentId, Long userId,
+            LocalDateTime start, LocalDateTime end) {
+        Specification<Recording> spec = (root, query, cb) -> cb.isNotNull(root.get("startedAt"));
+        if (agentId != null) {
+            spec = spec.and(agentIs(agentId));
+        }
+        if (userId != null) {
+            spec = spec.and(userIs(userId));
+        }
+        if (start != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("startedAt"), start));
+        }
+        if (end != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("startedAt"), end));
+        }
+        return spec;
+    }
+
+    public static Specification<Recording> agentIs(Long agentId) {
+        return (root, query, cb) -> cb.equal(root.get("agentId"), agentId);
+    }
+
+    public static Specification<Recording> userIs(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    /**
+     * Các recording đứng sau cursor khi sắp xếp (startedAt DESC, id DESC)
+     */
+    public static Specification<Recording> before(LocalDateTime startedAt, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("startedAt"), startedAt),
+                cb.and(
+                        cb.equal(root.get("startedAt"), startedAt),
+                        cb.lessThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.backend.repository;
+
+import com.example.backend.enums.UploadJobStatus;
+import com.example.backend.model.RecordingUploadJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RecordingUploadJobRepository extends JpaRepository<RecordingUploadJob, Long> {
+
+    Optional<RecordingUploadJob> findByRecordingId(String recordingId);
+
+    // Các job đến hạn chạy, job chờ lâu nhất trước
+    @Query("SELECT j FROM RecordingUploadJob j WHERE j.status = :status AND j.nextAttemptAt <= :now ORDER BY j.nextAttemptAt ASC")
+    List<RecordingUploadJob> findDueJobs(@Param("status") UploadJobStatus status,
+            @Param("now") LocalDateTime now,
+            Pageable pageable);
+
+    // Nhận job để chạy, trả về 0 nếu job đã được worker khác nhận
+    @Transactional
+    @Modifying
+    @Query("UPDATE RecordingUploadJob j SET j.status = com.example.backend.enums.UploadJobStatus.RUNNING, "
+            + "j.attempts = j.attempts + 1, j.updatedAt = :now, j.leaseExpiresAt = :leaseExpiresAt "
+            + "WHERE j.id = :id AND j.status = com.example.backend.enums.UploadJobStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now,
+            @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+
+    // Gia hạn lease của job đang chạy, trả về 0 nếu job không còn RUNNING
+    @Transactional
+    @Modifying
+    @Query("UPDATE RecordingUploadJob j SET j.leaseExpiresAt = :leaseExpiresAt "
+            + "WHERE j.id = :id AND j.status = com.example.backend.enums.UploadJobStatus.RUNNING")
+    int renewLease(@Param("id") Long id, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+
+    // Job RUNNING có lease đã hết hạn (node chạy nó đã dừng) được đưa lại về PENDING.
+    // Job của node khác còn đang chạy thì lease vẫn được gia hạn nên không bị đụng tới
+    @Transactional
+    @Modifying
+    @Query("UPDATE RecordingUploadJob j SET j.status = com.example.backend.enums.UploadJobStatus.PENDING, "
+            + "j.nextAttemptAt = :now, j.updatedAt = :now, j.leaseExpiresAt = null "
+            + "WHERE j.status = com.example.backend.enums.UploadJobStatus.RUNNING "
+            + "AND (j.leaseExpiresAt IS NULL OR j.leaseExpiresAt < :now)")
+    int requeueExpiredLeases(@Param("now") LocalDateTime now);
+}
@@ -1,13 +1,16 @@
 package com.example.backend.repository;
 
+import com.example.backend.enums.ResponseStatus;
 import com.example.backend.enums.SupportRequestStatus;
 import com.example.backend.enums.UserStatus;
 import com.example.backend.model.SupportRequest;
 import com.example.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -40,10 +43,63 @@ public interface SupportRequestRepository extends JpaRepository<SupportRequest,
     @Query("SELECT COUNT(sr) FROM SupportRequest sr WHERE sr.agent = :agent AND sr.status = 'MATCHED'")
     long countActiveRequestsByAgent(@Param("agent") User agent);
 
+    // Đếm active requests của tất cả agent (dùng để nạp AgentAvailabilityIndex)
+    @Query("SELECT sr.agent.id, COUNT(sr) FROM SupportRequest sr WHERE sr.status = 'MATCHED' GROUP BY sr.agent.id")
+    List<Object[]> countActiveRequestsGroupByAgent();
+
     // Tìm requests timeout (quá thời gian chờ)
     @Query("SELECT sr FROM SupportRequest sr WHERE sr.status = 'WAITING' AND sr.createdAt <= :timeoutTime")
     List<SupportRequest> findTimeoutRequests(@Param("timeoutTime") LocalDateTime timeoutTime);
 
+    // Chuyển toàn bộ request WAITING đã quá hạn sang TIMEOUT trong một câu lệnh,
+    // trả về (id, user_id) của các request bị timeout
+    @Transactional
+    @Query(value = "WITH expired AS ("
+            + " UPDATE support_requests SET status = 'TIMEOUT', timeout_at = :now"
+            + " WHERE status = 'WAITING'"
+            + " AND ((type = 'choose_agent' AND created_at <= :chooseAgentCutoff)"
+            + " OR (type <> 'choose_agent' AND created_at <= :defaultCutoff))"
+            + " RETURNING id, user_id)"
+            + " SELECT id, user_id FROM expired", nativeQuery = true)
+    List<Object[]> timeoutExpiredWaitingRequests(@Param("now") LocalDateTime now,
+            @Param("chooseAgentCutoff") LocalDateTime chooseAgentCutoff,
+            @Param("defaultCutoff") LocalDateTime defaultCutoff);
+
+    // Ghép request với agent chỉ khi request vẫn đang WAITING (sweeper hoặc user hủy
+    // có thể đã đổi trạng thái), trả về số dòng được cập nhật
+    @Modifying
+    @Query("UPDATE SupportRequest sr SET sr.agent = :agent, sr.status = 'MATCHED', sr.matchedAt = :matchedAt"
+            + " WHERE sr.id = :id AND sr.status = 'WAITING'")
+    int markMatchedIfWaiting(@Param("id") Long id, @Param("agent") User agent,
+            @Param("matchedAt") LocalDateTime matchedAt);
+
+    // Timeout một request chỉ khi request vẫn đang WAITING
+    @Modifying
+    @Query("UPDATE SupportRequest sr SET sr.status = 'TIMEOUT', sr.timeoutAt = :timeoutAt"
+            + " WHERE sr.id = :id AND sr.status = 'WAITING'")
+    int markTimeoutIfWaiting(@Param("id") Long id, @Param("timeoutAt") LocalDateTime timeoutAt);
+
+    // User hủy request của chính mình chỉ khi request vẫn đang WAITING
+    @Modifying
+    @Query("UPDATE SupportRequest sr SET sr.status = 'CANCELLED', sr.completedAt = :completedAt"
+            + " WHERE sr.id = :id AND sr.user.id = :userId AND sr.status = 'WAITING'")
+    int markCancelledIfWaiting(@Param("id") Long id, @Param("userId") Long userId,
+            @Param("completedAt") LocalDateTime completedAt);
+
+    // Hoàn thành request chỉ khi request vẫn đang MATCHED
+    @Modifying
+    @Query("UPDATE SupportRequest sr SET sr.status = 'COMPLETED', sr.completedAt = :completedAt"
+            + " WHERE sr.id = :id AND sr.status = 'MATCHED'")
+    int markCompletedIfMatched(@Param("id") Long id, @Param("completedAt") LocalDateTime completedAt);
+
+    // Ghi phản hồi của agent chỉ khi request vẫn đang MATCHED với chính agent đó
+    @Modifying
+    @Query("UPDATE SupportRequest sr SET sr.status = 'COMPLETED', sr.response = :response,"
+            + " sr.completedAt = :completedAt"
+            + " WHERE sr.id = :id AND sr.agent.id = :agentId AND sr.status = 'MATCHED'")
+    int markRespondedIfMatched(@Param("id") Long id, @Param("agentId") Long agentId,
+            @Param("response") ResponseStatus response, @Param("completedAt") LocalDateTime completedAt);
+
     // Tìm latest request của user
     Optional<SupportRequest> findFirstByUserOrderByCreatedAtDesc(User user);
 }
@@ -1,10 +1,13 @@
 package com.example.backend.repository;
 
 import com.example.backend.model.UserMetric;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,6 +52,24 @@ public interface UserMetricRepository extends JpaRepository<UserMetric, Long> {
     """)
     List<Object[]> getRatingDistribution();
 
-    @Query("SELECT u FROM UserMetric u WHERE u.totalCalls > 0")
-    List<UserMetric> findAllWithCalls();
+    @Query("SELECT m FROM UserMetric m JOIN FETCH m.user u WHERE u.id IN :userIds")
+    List<UserMetric> findAllByUserIdInWithUser(@Param("userIds") Collection<Long> userIds);
+
+    // Top-K cho AgentLeaderboard (cùng điểm thì id nhỏ trước, khớp thứ tự trong bộ nhớ)
+    @Query("SELECT m FROM UserMetric m JOIN FETCH m.user u WHERE u.role = 'AGENT'"
+            + " ORDER BY COALESCE(m.rating, 0) DESC, u.id ASC")
+    List<UserMetric> findTopAgentsByRating(Pageable pageable);
+
+    @Query("SELECT m FROM UserMetric m JOIN FETCH m.user u WHERE u.role = 'AGENT'"
+            + " ORDER BY COALESCE(m.totalCalls, 0) DESC, u.id ASC")
+    List<UserMetric> findTopAgentsByTotalCalls(Pageable pageable);
+
+    @Query("SELECT m FROM UserMetric m JOIN FETCH m.user u WHERE u.role = 'AGENT'"
+            + " ORDER BY COALESCE(m.totalCallTime, 0) DESC, u.id ASC")
+    List<UserMetric> findTopAgentsByTotalCallTime(Pageable pageable);
+
+    @Query("SELECT m FROM UserMetric m JOIN FETCH m.user u WHERE u.role = 'AGENT' AND m.totalCalls > 0"
+            + " ORDER BY (COALESCE(m.rating, 0) * m.totalCalls) / (COALESCE(m.totalCallTime, 0) / 30 + 1) DESC,"
+            + " u.id ASC")
+    List<UserMetric> findTopAgentsByEfficiency(Pageable pageable);
 }
@@ -1,12 +1,13 @@
 package com.example.backend.repository;
 
-import com.example.backend.enums.UserStatus;
+import com.example.backend.dto.projection.AgentMetricView;
 import com.example.backend.enums.UserStatus;
 import com.example.backend.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -23,6 +24,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     long countByRoleAndStatus(String role, UserStatus status);
 
     long countByRoleAndStatusNot(String role, UserStatus status);
+
+    List<User> findByRoleAndStatus(String role, UserStatus status);
+
+    List<User> findByStatusNot(UserStatus status);
 //    List<User> findAllByStatus(String status);
 
     List<User> findByFullNameContainingIgnoreCase(String fullName);
@@ -35,4 +40,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Page<User> findByRoleInAndFullNameContainingIgnoreCase(List<String> roles, String keyword, Pageable pageable);
 
+    // Agent + metric trong một câu JOIN. Sort truyền vào phải là JpaSort.unsafe theo alias u./m.
+    @Query(value = "SELECT u.id AS id, u.email AS email, u.fullName AS fullName, u.status AS status,"
+            + " u.role AS role, u.isActive AS active, m.rating AS rating, m.totalCalls AS totalCalls,"
+            + " m.totalCallTime AS totalCallTime"
+            + " FROM User u LEFT JOIN UserMetric m ON m.user = u"
+            + " WHERE u.role = 'AGENT'",
+            countQuery = "SELECT COUNT(u) FROM User u WHERE u.role = 'AGENT'")
+    Page<AgentMetricView> findAgentsWithMetrics(Pageable pageable);
+
+    @Query(value = "SELECT u.id AS id, u.email AS email, u.fullName AS fullName, u.status AS status,"
+            + " u.role AS role, u.isActive AS active, m.rating AS rating, m.totalCalls AS totalCalls,"
+            + " m.totalCallTime AS totalCallTime"
+            + " FROM User u LEFT JOIN UserMetric m ON m.user = u"
+            + " WHERE u.role = 'AGENT' AND LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%'))",
+            countQuery = "SELECT COUNT(u) FROM User u WHERE u.role = 'AGENT'"
+                    + " AND LOWER(u.fullName) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    Page<AgentMetricView> searchAgentsWithMetrics(@Param("keyword") String keyword, Pageable pageable);
+
+    @Query("SELECT u.id AS id, u.email AS email, u.fullName AS fullName, u.status AS status,"
+            + " u.role AS role, u.isActive AS active, m.rating AS rating, m.totalCalls AS totalCalls,"
+            + " m.totalCallTime AS totalCallTime"
+            + " FROM User u LEFT JOIN UserMetric m ON m.user = u"
+            + " WHERE u.id = :id AND u.role = 'AGENT'")
+    Optional<AgentMetricView> findAgentWithMetricsById(@Param("id") Long id);
+
 }
@@ -0,0 +1,301 @@
+package com.example.backend.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timer dạng bánh xe băm (hashed timing wheel). Đặt lịch và hủy đều là O(1),
+ * một thread duy nhất quay bánh xe; task đến hạn được chạy trên executor bên
+ * ngoài để không làm chậm nhịp tick.
+ *
+ * Độ chính xác bằng một tick, phù hợp cho timeout và grace period (giây đến
+ * phút), không dùng cho tác vụ cần chính xác đến mili giây.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    // Giới hạn số timeout chuyển vào bánh xe mỗi tick để tick không bị kéo dài
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final Thread workerThread;
+
+    // Nhiều thread ghi, chỉ worker đọc
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final LongAdder firedCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+
+    private volatile boolean running = true;
+    private volatile long startTime;
+    private long tick;
+
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, Executor executor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]");
+        }
+
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(this::run, name);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * Lên lịch chạy task sau delay
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        workerThread.interrupt();
+        try {
+            workerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Timer {} stopped - pending: {}, fired: {}, cancelled: {}",
+                workerThread.getName(), getPendingCount(), getFiredCount(), getCancelledCount());
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getFiredCount() {
+        return firedCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                continue;
+            }
+
+            Bucket bucket = wheel[(int) (tick & mask)];
+            removeCancelledTimeouts();
+            transferTimeoutsToBuckets();
+            bucket.expireTimeouts(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Ngủ đến tick kế tiếp, trả về thời điểm tick (tính từ startTime) hoặc -1
+     * nếu bị interrupt
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+
+        while (true) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - currentTime + 999_999) / 1_000_000;
+
+            if (sleepMillis <= 0) {
+                return currentTime;
+            }
+
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferTimeoutsToBuckets() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state.get() == STATE_CANCELLED) {
+                continue;
+            }
+
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            // Timeout đã quá hạn thì đặt vào tick hiện tại
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expire(Timeout timeout) {
+        if (!timeout.state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+            return;
+        }
+        pendingCount.decrementAndGet();
+        firedCount.increment();
+
+        try {
+            executor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Timer task rejected by executor", e);
+        }
+    }
+
+    /**
+     * Handle của một task đã lên lịch
+     */
+    public static final class Timeout {
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+
+        // Chỉ worker thread đọc/ghi các field dưới đây
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Hủy task, trả về false nếu task đã chạy hoặc đã bị hủy trước đó
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                return false;
+            }
+            timer.pendingCount.decrementAndGet();
+            timer.cancelledCount.increment();
+            // Worker sẽ gỡ khỏi bucket ở tick kế tiếp
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+    }
+
+    /**
+     * Danh sách liên kết đôi các timeout trong một ô của bánh xe
+     */
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    expire(timeout);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.backend.security;
+
+import com.example.backend.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.AuthenticationEntryPoint;
+
+import java.io.IOException;
+
+/**
+ * Trả về 401 dạng ErrorResponse cho route /api/** cần xác thực.
+ * Nếu JwtAuthenticationFilter đã đánh dấu token không hợp lệ thì báo
+ * "Invalid or expired token", ngược lại báo thiếu token.
+ */
+public class JsonAuthenticationEntryPoint implements AuthenticationEntryPoint {
+
+    public static final String INVALID_TOKEN_ATTRIBUTE = JsonAuthenticationEntryPoint.class.getName() + ".INVALID_TOKEN";
+
+    private final ObjectMapper objectMapper;
+
+    public JsonAuthenticationEntryPoint(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void commence(HttpServletRequest request, HttpServletResponse response,
+            AuthenticationException authException) throws IOException {
+        String message = request.getAttribute(INVALID_TOKEN_ATTRIBUTE) != null
+                ? "Invalid or expired token"
+                : "Authentication required";
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                message,
+                "AUTH_001",
+                HttpStatus.UNAUTHORIZED.value(),
+                request.getRequestURI());
+
+        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(), errorResponse);
+    }
+}
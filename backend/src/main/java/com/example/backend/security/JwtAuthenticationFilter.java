@@ -0,0 +1,82 @@
+package com.example.backend.security;
+
+import com.example.backend.service.JwtService;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Xác thực JWT một lần cho mỗi request /api/** và đặt JwtPrincipal vào
+ * SecurityContext. Token sai hoặc hết hạn không chặn request ở đây: request
+ * đi tiếp như chưa đăng nhập, route permitAll vẫn chạy bình thường còn route
+ * cần xác thực bị JsonAuthenticationEntryPoint trả về 401.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private final JwtService jwtService;
+
+    public JwtAuthenticationFilter(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String token = jwtService.extractTokenFromHeader(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (token == null) {
+            // Không có token: để SecurityConfig quyết định route có cần xác thực không
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        JwtPrincipal principal;
+        try {
+            principal = jwtService.parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            rejectToken(request, response, filterChain);
+            return;
+        }
+
+        if (principal.isExpired() || principal.userId() == null || principal.role() == null) {
+            rejectToken(request, response, filterChain);
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                principal,
+                token,
+                List.of(new SimpleGrantedAuthority("ROLE_" + principal.role())));
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Token không dùng được: xóa context và cho request đi tiếp như chưa đăng nhập
+     */
+    private void rejectToken(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SecurityContextHolder.clearContext();
+        request.setAttribute(JsonAuthenticationEntryPoint.INVALID_TOKEN_ATTRIBUTE, Boolean.TRUE);
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.backend.security;
+
+import java.time.Instant;
+
+/**
+ * Thông tin user lấy từ JWT sau khi đã xác thực chữ ký
+ */
+public record JwtPrincipal(Long userId, String email, String role, Instant expiresAt) {
+
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
+}
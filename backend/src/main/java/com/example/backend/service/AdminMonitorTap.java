@@ -0,0 +1,217 @@
+package com.example.backend.service;
+
+import com.example.backend.websocket.NotificationSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Luồng giám sát cho admin, thay cho việc gửi thêm một bản mọi notification tới user "1".
+ *
+ * Admin subscribe /user/queue/admin-monitor (một subscription cho mỗi session), có
+ * thể kèm header lọc: agentId, requestType, eventType (nhiều giá trị cách nhau bởi
+ * dấu phẩy). Frame được gửi qua user destination tới đúng session của admin, nên
+ * session khác subscribe cùng đường dẫn không nhận được gì.
+ * Mỗi notification chỉ được publish một lần vào tap và được chuyển tới từng
+ * subscription khớp bộ lọc, giới hạn bởi token bucket riêng
+ * (app.admin-monitor.rate-per-second / burst). Không có admin nào subscribe thì
+ * publish trả về ngay. Payload là JSON đã serialize sẵn, số sự kiện bị bỏ do
+ * vượt giới hạn được gửi trong header monitorDropped của frame kế tiếp.
+ */
+@Component
+public class AdminMonitorTap {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminMonitorTap.class);
+
+    // Đường dẫn client subscribe (có prefix /user) và đường dẫn server gửi tới
+    public static final String SUBSCRIBE_DESTINATION = "/user/queue/admin-monitor";
+    private static final String DESTINATION = "/queue/admin-monitor";
+
+    private static final String ADMIN_ROLE = "ADMIN";
+
+    @Autowired
+    private NotificationSender notificationSender;
+
+    @Value("${app.admin-monitor.rate-per-second:20}")
+    private double ratePerSecond;
+
+    @Value("${app.admin-monitor.burst:40}")
+    private int burst;
+
+    // Khóa: sessionId; subscribe lại trong cùng session thay bộ lọc cũ
+    private final Map<String, Tap> taps = new ConcurrentHashMap<>();
+
+    private record Filter(Set<Long> agentIds, Set<String> requestTypes, Set<String> eventTypes) {
+
+        private boolean matches(String eventType, Long agentId, String requestType) {
+            return (agentIds.isEmpty() || (agentId != null && agentIds.contains(agentId)))
+                    && (requestTypes.isEmpty() || (requestType != null && requestTypes.contains(requestType)))
+                    && (eventTypes.isEmpty() || eventTypes.contains(eventType));
+        }
+    }
+
+    private static final class Tap {
+        private final Long userId;
+        private final String sessionId;
+        private final String subscriptionId;
+        private final Filter filter;
+        private final TokenBucket bucket;
+        private long dropped;
+
+        private Tap(Long userId, String sessionId, String subscriptionId, Filter filter, TokenBucket bucket) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.filter = filter;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Token bucket đơn giản, nạp liên tục theo thời gian
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(double ratePerSecond, int capacity) {
+            this.capacity = Math.max(1, capacity);
+            this.refillPerNano = ratePerSecond / 1_000_000_000.0;
+            this.tokens = this.capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        private synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !taps.isEmpty();
+    }
+
+    /**
+     * Đưa một notification vào luồng giám sát
+     *
+     * @param eventType   type của notification (request_matched, call_ended, ...)
+     * @param agentId     agent liên quan, null nếu không xác định
+     * @param requestType loại support request, null nếu không có
+     * @param payload     notification đã serialize (xem NotificationSender)
+     */
+    public void publish(String eventType, Long agentId, String requestType, byte[] payload) {
+        if (taps.isEmpty()) {
+            return;
+        }
+
+        for (Tap tap : taps.values()) {
+            if (!tap.filter.matches(eventType, agentId, requestType)) {
+                continue;
+            }
+
+            long droppedBefore;
+            synchronized (tap) {
+                if (!tap.bucket.tryAcquire()) {
+                    tap.dropped++;
+                    continue;
+                }
+                droppedBefore = tap.dropped;
+                tap.dropped = 0;
+            }
+
+            // Báo cho admin số sự kiện bị bỏ do vượt giới hạn kể từ lần gửi trước
+            notificationSender.sendToSession(tap.userId, tap.sessionId, DESTINATION, payload, droppedBefore > 0
+                    ? Map.of("monitorDropped", Long.toString(droppedBefore))
+                    : Map.of());
+        }
+    }
+
+    /**
+     * Gửi tới mọi admin đang subscribe, không qua bộ lọc và token bucket
+     * (VD: batch trạng thái user, admin cần đủ để bảng không bị lệch).
+     */
+    public void publishToAll(byte[] payload) {
+        for (Tap tap : taps.values()) {
+            notificationSender.sendToSession(tap.userId, tap.sessionId, DESTINATION, payload);
+        }
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (!SUBSCRIBE_DESTINATION.equals(destination)) {
+            return;
+        }
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object role = attributes != null ? attributes.get("role") : null;
+        Object userId = attributes != null ? attributes.get("userId") : null;
+        if (role == null || userId == null || !ADMIN_ROLE.equalsIgnoreCase(role.toString())) {
+            // Không có tap thì user destination của session này không bao giờ nhận được frame nào
+            logger.warn("Ignoring admin monitor subscription from non-admin session {}", accessor.getSessionId());
+            return;
+        }
+
+        Filter filter = new Filter(
+                parseIds(accessor.getFirstNativeHeader("agentId")),
+                parseValues(accessor.getFirstNativeHeader("requestType")),
+                parseValues(accessor.getFirstNativeHeader("eventType")));
+        taps.put(accessor.getSessionId(), new Tap(Long.valueOf(userId.toString()), accessor.getSessionId(),
+                accessor.getSubscriptionId(), filter, new TokenBucket(ratePerSecond, burst)));
+        logger.info("Admin monitor tap added: session {}, filter {}", accessor.getSessionId(), filter);
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String subscriptionId = accessor.getSubscriptionId();
+        taps.computeIfPresent(accessor.getSessionId(),
+                (sessionId, tap) -> tap.subscriptionId.equals(subscriptionId) ? null : tap);
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        taps.remove(event.getSessionId());
+    }
+
+    private static Set<String> parseValues(String header) {
+        if (header == null || header.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(header.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static Set<Long> parseIds(String header) {
+        try {
+            return parseValues(header).stream().map(Long::valueOf).collect(Collectors.toUnmodifiableSet());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid agentId filter for admin monitor: {}", header);
+            return Set.of();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.backend.service;
+
+import com.example.backend.enums.UserStatus;
+import com.example.backend.model.User;
+import com.example.backend.repository.SupportRequestRepository;
+import com.example.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Index in-memory các agent đang ONLINE và số request MATCHED của từng agent.
+ * Cho phép tìm agent ít tải nhất (không nằm trong danh sách loại trừ) mà không
+ * cần truy vấn DB.
+ */
+@Component
+public class AgentAvailabilityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentAvailabilityIndex.class);
+
+    private static final Comparator<Slot> BY_LOAD_THEN_ID = Comparator
+            .comparingInt(Slot::load)
+            .thenComparingLong(Slot::agentId);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SupportRequestRepository supportRequestRepository;
+
+    // Agent online sắp xếp theo (load, agentId)
+    private final NavigableSet<Slot> available = new TreeSet<>(BY_LOAD_THEN_ID);
+
+    private final Map<Long, Slot> onlineSlots = new HashMap<>();
+
+    // Load được giữ cả khi agent offline (agent có thể rớt mạng giữa lúc đang được ghép)
+    private final Map<Long, Integer> loads = new HashMap<>();
+
+    // Được gọi khi có thêm chỗ trống (agent online hoặc được trả lại chỗ)
+    private final List<Runnable> capacityListeners = new CopyOnWriteArrayList<>();
+
+    private record Slot(int load, long agentId) {
+    }
+
+    public void addCapacityListener(Runnable listener) {
+        capacityListeners.add(listener);
+    }
+
+    /**
+     * Nạp trạng thái ban đầu từ DB khi ứng dụng khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        List<User> onlineAgents = userRepository.findByRoleAndStatus("AGENT", UserStatus.ONLINE);
+        List<Object[]> activeCounts = supportRequestRepository.countActiveRequestsGroupByAgent();
+
+        synchronized (this) {
+            available.clear();
+            onlineSlots.clear();
+            loads.clear();
+
+            for (Object[] row : activeCounts) {
+                loads.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+            }
+            for (User agent : onlineAgents) {
+                addSlot(agent.getId());
+            }
+        }
+
+        logger.info("Agent availability index loaded: {} online agents", onlineAgents.size());
+        fireCapacityAvailable();
+    }
+
+    public void markOnline(Long agentId) {
+        synchronized (this) {
+            if (agentId == null || onlineSlots.containsKey(agentId)) {
+                return;
+            }
+            addSlot(agentId);
+        }
+        fireCapacityAvailable();
+    }
+
+    public synchronized void markOffline(Long agentId) {
+        Slot slot = onlineSlots.remove(agentId);
+        if (slot != null) {
+            available.remove(slot);
+        }
+    }
+
+    public synchronized boolean isOnline(Long agentId) {
+        return onlineSlots.containsKey(agentId);
+    }
+
+    public synchronized int getLoad(Long agentId) {
+        return loads.getOrDefault(agentId, 0);
+    }
+
+    public synchronized int onlineCount() {
+        return onlineSlots.size();
+    }
+
+    public synchronized List<Long> onlineAgentIds() {
+        return new ArrayList<>(onlineSlots.keySet());
+    }
+
+    /**
+     * Chọn agent online ít tải nhất, không thuộc excluded và còn dưới maxLoad,
+     * đồng thời giữ chỗ (tăng load) cho agent đó.
+     *
+     * @return id của agent được giữ chỗ, hoặc null nếu không có agent phù hợp
+     */
+    public synchronized Long reserveLeastLoaded(Set<Long> excluded, int maxLoad) {
+        for (Slot slot : available) {
+            if (slot.load() >= maxLoad) {
+                return null; // Các slot phía sau còn tải cao hơn
+            }
+            if (excluded == null || !excluded.contains(slot.agentId())) {
+                changeLoad(slot.agentId(), 1);
+                return slot.agentId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Giữ chỗ cho một agent cụ thể nếu agent online và còn dưới maxLoad
+     */
+    public synchronized boolean tryReserve(Long agentId, int maxLoad) {
+        if (!onlineSlots.containsKey(agentId) || getLoad(agentId) >= maxLoad) {
+            return false;
+        }
+        changeLoad(agentId, 1);
+        return true;
+    }
+
+    /**
+     * Trả lại chỗ khi request MATCHED được agent phản hồi hoặc hoàn thành
+     */
+    public void release(Long agentId) {
+        synchronized (this) {
+            if (agentId == null || !loads.containsKey(agentId)) {
+                return;
+            }
+            changeLoad(agentId, -1);
+        }
+        fireCapacityAvailable();
+    }
+
+    /**
+     * Kiểm tra có agent phù hợp hay không mà không giữ chỗ
+     */
+    public synchronized boolean hasCandidate(Set<Long> excluded, int maxLoad) {
+        for (Slot slot : available) {
+            if (slot.load() >= maxLoad) {
+                return false;
+            }
+            if (excluded == null || !excluded.contains(slot.agentId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fireCapacityAvailable() {
+        for (Runnable listener : capacityListeners) {
+            listener.run();
+        }
+    }
+
+    private void addSlot(Long agentId) {
+        Slot slot = new Slot(loads.getOrDefault(agentId, 0), agentId);
+        onlineSlots.put(agentId, slot);
+        available.add(slot);
+    }
+
+    private void changeLoad(Long agentId, int delta) {
+        int newLoad = Math.max(0, loads.getOrDefault(agentId, 0) + delta);
+        if (newLoad == 0) {
+            loads.remove(agentId);
+        } else {
+            loads.put(agentId, newLoad);
+        }
+
+        Slot old = onlineSlots.get(agentId);
+        if (old != null) {
+            available.remove(old);
+            Slot updated = new Slot(newLoad, agentId);
+            onlineSlots.put(agentId, updated);
+            available.add(updated);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.backend.service;
+
+import com.example.backend.enums.LeaderboardDimension;
+import com.example.backend.model.UserMetric;
+import com.example.backend.repository.UserMetricRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bảng xếp hạng agent trong bộ nhớ: mỗi tiêu chí giữ top-K agent (K =
+ * app.leaderboard.size) sắp xếp theo điểm, cập nhật mỗi khi metric của agent
+ * thay đổi. Đọc top-N chỉ duyệt K phần tử đầu.
+ * Khi một agent trong top tụt điểm xuống dưới ngưỡng, agent ngoài top có thể
+ * đáng được vào thay nhưng bảng không biết, nên một lần đồng bộ lại từ DB được
+ * xếp lịch; ngoài ra còn đồng bộ định kỳ để chống lệch.
+ */
+@Component
+public class AgentLeaderboard {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentLeaderboard.class);
+
+    private static final Duration RECONCILE_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration RECONCILE_DELAY = Duration.ofSeconds(1);
+
+    // Điểm cao trước, cùng điểm thì id nhỏ trước
+    private static final Comparator<Entry> BY_SCORE_DESC = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparingLong(Entry::agentId);
+
+    @Autowired
+    private UserMetricRepository userMetricRepository;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.leaderboard.size:50}")
+    private int capacity;
+
+    private final Map<LeaderboardDimension, Board> boards = new EnumMap<>(LeaderboardDimension.class);
+
+    private final Object lock = new Object();
+
+    // Khác null trong lúc reconcile: các cập nhật trong lúc đọc DB sẽ được áp lại
+    private List<UserMetric> replayLog;
+
+    // Tăng mỗi khi reconcile bắt đầu đọc DB. refreshAgents đọc DB trước lần
+    // reconcile mới nhất thì dữ liệu cũ hơn bảng vừa dựng, nên bị bỏ
+    private long epoch;
+
+    private final AtomicBoolean reconcileScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+
+    private volatile boolean ready = false;
+
+    public record Entry(Long agentId, String fullName, double score) {
+    }
+
+    private static final class Board {
+        private final NavigableSet<Entry> ranking = new TreeSet<>(BY_SCORE_DESC);
+        private final Map<Long, Entry> byAgent = new HashMap<>();
+    }
+
+    public AgentLeaderboard() {
+        for (LeaderboardDimension dimension : LeaderboardDimension.values()) {
+            boards.put(dimension, new Board());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Số agent tối đa giữ cho mỗi tiêu chí (K)
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Top n agent theo tiêu chí (n tối đa bằng K)
+     */
+    public List<Entry> top(LeaderboardDimension dimension, int n) {
+        synchronized (lock) {
+            List<Entry> result = new ArrayList<>(Math.min(n, capacity));
+            for (Entry entry : boards.get(dimension).ranking) {
+                if (result.size() >= n) {
+                    break;
+                }
+                result.add(entry);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Đọc lại metric của các agent vừa thay đổi và cập nhật bảng xếp hạng
+     */
+    public void refreshAgents(Collection<Long> agentIds) {
+        if (agentIds.isEmpty()) {
+            return;
+        }
+        long readEpoch;
+        synchronized (lock) {
+            readEpoch = epoch;
+        }
+        try {
+            List<UserMetric> metrics = userMetricRepository.findAllByUserIdInWithUser(agentIds);
+            synchronized (lock) {
+                if (readEpoch != epoch) {
+                    // Reconcile bắt đầu sau khi đọc: bảng đã có dữ liệu mới hơn
+                    return;
+                }
+                for (UserMetric metric : metrics) {
+                    offer(metric);
+                }
+                if (replayLog != null) {
+                    replayLog.addAll(metrics);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error refreshing leaderboard for agents {}", agentIds, e);
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng từ DB (top-K mỗi tiêu chí bằng ORDER BY ... LIMIT K)
+     */
+    public void reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        reconcileScheduled.set(false);
+        synchronized (lock) {
+            epoch++;
+            replayLog = new ArrayList<>();
+        }
+        try {
+            Pageable topK = PageRequest.of(0, capacity);
+            Map<LeaderboardDimension, List<UserMetric>> fresh = new EnumMap<>(LeaderboardDimension.class);
+            fresh.put(LeaderboardDimension.RATING, userMetricRepository.findTopAgentsByRating(topK));
+            fresh.put(LeaderboardDimension.TOTAL_CALLS, userMetricRepository.findTopAgentsByTotalCalls(topK));
+            fresh.put(LeaderboardDimension.TOTAL_CALL_TIME, userMetricRepository.findTopAgentsByTotalCallTime(topK));
+            fresh.put(LeaderboardDimension.EFFICIENCY, userMetricRepository.findTopAgentsByEfficiency(topK));
+
+            synchronized (lock) {
+                fresh.forEach((dimension, metrics) -> {
+                    Board board = boards.get(dimension);
+                    board.ranking.clear();
+                    board.byAgent.clear();
+                    for (UserMetric metric : metrics) {
+                        if (isEligible(dimension, metric)) {
+                            Entry entry = toEntry(dimension, metric);
+                            board.ranking.add(entry);
+                            board.byAgent.put(entry.agentId(), entry);
+                        }
+                    }
+                });
+
+                List<UserMetric> replay = replayLog;
+                replayLog = null;
+                for (UserMetric metric : replay) {
+                    offer(metric);
+                }
+            }
+            ready = true;
+        } catch (Exception e) {
+            synchronized (lock) {
+                replayLog = null;
+            }
+            logger.error("Error reconciling agent leaderboard", e);
+            // Các refresh bị bỏ theo epoch chỉ được bù khi reconcile thành công
+            scheduleReconcile();
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    // Gọi khi đang giữ lock
+    private void offer(UserMetric metric) {
+        Long agentId = metric.getUser().getId();
+        for (LeaderboardDimension dimension : LeaderboardDimension.values()) {
+            Board board = boards.get(dimension);
+            boolean wasFull = board.ranking.size() >= capacity;
+            Entry lowest = wasFull ? board.ranking.last() : null;
+
+            Entry previous = board.byAgent.remove(agentId);
+            if (previous != null) {
+                board.ranking.remove(previous);
+            }
+
+            if (!isEligible(dimension, metric)) {
+                if (previous != null && wasFull) {
+                    scheduleReconcile();
+                }
+                continue;
+            }
+
+            Entry entry = toEntry(dimension, metric);
+            if (board.ranking.size() < capacity || BY_SCORE_DESC.compare(entry, board.ranking.last()) < 0) {
+                board.ranking.add(entry);
+                board.byAgent.put(agentId, entry);
+                if (board.ranking.size() > capacity) {
+                    Entry evicted = board.ranking.pollLast();
+                    board.byAgent.remove(evicted.agentId());
+                }
+            }
+
+            // Agent đang trong top tụt xuống dưới ngưỡng cũ: agent ngoài top có thể cao hơn
+            if (previous != null && lowest != null && BY_SCORE_DESC.compare(entry, lowest) > 0) {
+                scheduleReconcile();
+            }
+        }
+    }
+
+    private void scheduleReconcile() {
+        if (reconcileScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::reconcile, Instant.now().plus(RECONCILE_DELAY));
+        }
+    }
+
+    private static boolean isEligible(LeaderboardDimension dimension, UserMetric metric) {
+        if (metric.getUser() == null || !"AGENT".equalsIgnoreCase(metric.getUser().getRole())) {
+            return false;
+        }
+        return dimension != LeaderboardDimension.EFFICIENCY || valueOf(metric.getTotalCalls()) > 0;
+    }
+
+    private static Entry toEntry(LeaderboardDimension dimension, UserMetric metric) {
+        return new Entry(metric.getUser().getId(), metric.getUser().getFullName(), score(dimension, metric));
+    }
+
+    static double score(LeaderboardDimension dimension, UserMetric metric) {
+        double rating = valueOf(metric.getRating());
+        double totalCalls = valueOf(metric.getTotalCalls());
+        double totalCallTime = valueOf(metric.getTotalCallTime());
+        return switch (dimension) {
+            case RATING -> rating;
+            case TOTAL_CALLS -> totalCalls;
+            case TOTAL_CALL_TIME -> totalCallTime;
+            case EFFICIENCY -> (rating * totalCalls) / (totalCallTime / 30 + 1);
+        };
+    }
+
+    private static double valueOf(Number value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+}
@@ -7,6 +7,7 @@ import com.example.backend.exception.ValidationException;
 import com.example.backend.model.User;
 import com.example.backend.model.UserMetric;
 import com.example.backend.repository.UserRepository;
+import com.example.backend.security.JwtPrincipal;
 import com.example.backend.websocket.WebSocketPresenceHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -46,13 +47,13 @@ public class AuthService {
         User user = userRepository.findByEmailAndPasswordAndIsActive(email, password, true)
                 .orElseThrow(AuthenticationException::invalidCredentials);
 
-        if(!user.getStatus().equals(UserStatus.OFFLINE)) {
+        // Kiểm tra và chuyển ONLINE trong một bước, trạng thái lấy từ PresenceRegistry
+        if (!userService.updateUserStatusIfCurrent(user.getId(), UserStatus.OFFLINE, UserStatus.ONLINE)) {
             throw new AuthenticationException("Tài khoản đã đăng nhập");
         }
+        user.setStatus(UserStatus.ONLINE);
         UserMetric userMetric = null;
 
-        userService.updateUserStatus(user.getId(), UserStatus.ONLINE);
-
         if ("AGENT".equalsIgnoreCase(user.getRole())) {
             userMetric = userMetricsService.getOrCreateUserMetric(user.getId());
         }
@@ -65,15 +66,16 @@ public class AuthService {
     /**
      * Logout user và xử lý agent presence
      */
-    public void logout(String token) {
-        if (token == null || jwtService.isTokenExpired(token)) {
+    public void logout(JwtPrincipal principal, String token) {
+        if (principal == null) {
             throw new ValidationException("Invalid or expired token");
         }
 
         try {
-            Long userId = jwtService.extractUserId(token);
-            String role = jwtService.extractRole(token);
-            String email = jwtService.extractUsername(token);
+            Long userId = principal.userId();
+            String role = principal.role();
+            String email = principal.email();
+            jwtService.revokeToken(principal, token);
 
             System.out.println("User logout: " + email + " (ID: " + userId + ", Role: " + role + ")");
 
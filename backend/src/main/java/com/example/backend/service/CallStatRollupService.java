@@ -0,0 +1,225 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.RecordStaticResponse;
+import com.example.backend.dto.response.TimeSeriesPoint;
+import com.example.backend.exception.ValidationException;
+import com.example.backend.model.CallStatRollup;
+import com.example.backend.repository.CallStatRollupRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Duy trì bảng call_stat_rollups và phục vụ thống kê cuộc gọi từ đó thay vì
+ * GROUP BY trên toàn bộ bảng recordings.
+ *
+ * Delta được cộng trong cùng transaction với thay đổi recording (qua savepoint,
+ * lỗi thống kê không làm hỏng thay đổi recording). Mỗi lần cộng giữ advisory
+ * lock dạng shared, backfill giữ lock exclusive nên hai việc không chạy xen nhau.
+ * Độ lệch được kiểm tra định kỳ (app.rollup.drift-check-minutes), không chỉ lúc khởi động.
+ */
+@Service
+public class CallStatRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallStatRollupService.class);
+
+    private static final Set<String> GRANULARITIES = Set.of("hour", "day", "month");
+
+    // Khóa advisory của Postgres dùng chung giữa việc cộng delta và backfill
+    private static final long ROLLUP_LOCK_KEY = 0x63616c6c73746174L;
+
+    // Cộng dồn vào 3 bucket giờ/ngày/tháng chứa ts trong một câu lệnh
+    private static final String ADD_TO_BUCKETS_SQL = """
+            WITH rollup_lock AS (SELECT pg_advisory_xact_lock_shared(?))
+            INSERT INTO call_stat_rollups
+                (granularity, bucket_start, call_count, total_duration, rating_sum, rating_count)
+            SELECT g, date_trunc(g, CAST(? AS timestamp)), ?, ?, ?, ?
+            FROM rollup_lock CROSS JOIN unnest(ARRAY['hour', 'day', 'month']) AS g
+            ON CONFLICT (granularity, bucket_start) DO UPDATE SET
+                call_count = call_stat_rollups.call_count + EXCLUDED.call_count,
+                total_duration = call_stat_rollups.total_duration + EXCLUDED.total_duration,
+                rating_sum = call_stat_rollups.rating_sum + EXCLUDED.rating_sum,
+                rating_count = call_stat_rollups.rating_count + EXCLUDED.rating_count
+            """;
+
+    // Rollup lệch khi số cuộc gọi hoặc tổng đánh giá theo tháng khác với recordings
+    // (không so thời lượng vì là số thực, cộng dồn lệch sai số làm tròn)
+    private static final String OUT_OF_SYNC_SQL = """
+            SELECT r.calls <> s.calls OR r.rating_sum <> s.rating_sum OR r.rating_count <> s.rating_count
+            FROM (SELECT COUNT(*) AS calls, COALESCE(SUM(rating), 0) AS rating_sum, COUNT(rating) AS rating_count
+                    FROM recordings WHERE started_at IS NOT NULL) r
+            CROSS JOIN (SELECT COALESCE(SUM(call_count), 0) AS calls, COALESCE(SUM(rating_sum), 0) AS rating_sum,
+                    COALESCE(SUM(rating_count), 0) AS rating_count
+                    FROM call_stat_rollups WHERE granularity = 'month') s
+            """;
+
+    // Dựng rollup từ toàn bộ lịch sử recordings
+    private static final String REBUILD_SQL = """
+            INSERT INTO call_stat_rollups
+                (granularity, bucket_start, call_count, total_duration, rating_sum, rating_count)
+            SELECT g, date_trunc(g, r.started_at), COUNT(*), COALESCE(SUM(r.duration), 0),
+                COALESCE(SUM(r.rating), 0), COUNT(r.rating)
+            FROM recordings r CROSS JOIN unnest(ARRAY['hour', 'day', 'month']) AS g
+            WHERE r.started_at IS NOT NULL
+            GROUP BY g, date_trunc(g, r.started_at)
+            """;
+
+    @Autowired
+    private CallStatRollupRepository callStatRollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.rollup.drift-check-minutes:10}")
+    private long driftCheckMinutes;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Savepoint trong transaction của caller (transaction mới nếu caller không có)
+    private TransactionTemplate nestedTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        nestedTransactionTemplate = new TransactionTemplate(transactionManager);
+        nestedTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+    }
+
+    /**
+     * Kiểm tra lệch ngay khi khởi động rồi lặp lại định kỳ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::backfillIfOutOfSync, Duration.ofMinutes(driftCheckMinutes));
+    }
+
+    /**
+     * Dựng lại rollup từ lịch sử recordings nếu bảng rollup trống hoặc lệch
+     * (VD: lần đầu triển khai mà traffic đến trước khi backfill kịp chạy).
+     * Chạy dưới lock exclusive: delta đã commit nằm sẵn trong recordings, delta
+     * chưa commit phải chờ lock và được cộng sau, nên mỗi thay đổi chỉ tính một lần.
+     * Lần kiểm tra đầu không giữ lock (recording và delta commit cùng nhau nên một
+     * snapshot luôn khớp), chỉ khi thấy lệch mới chặn các lượt cộng delta.
+     */
+    public void backfillIfOutOfSync() {
+        try {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(OUT_OF_SYNC_SQL, Boolean.class))) {
+                return;
+            }
+            Integer rows = transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForObject("SELECT 1 FROM (SELECT pg_advisory_xact_lock(?)) l", Integer.class,
+                        ROLLUP_LOCK_KEY);
+                if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(OUT_OF_SYNC_SQL, Boolean.class))) {
+                    return 0;
+                }
+                jdbcTemplate.update("DELETE FROM call_stat_rollups");
+                return jdbcTemplate.update(REBUILD_SQL);
+            });
+            if (rows != null && rows > 0) {
+                logger.info("Rebuilt {} call stat rollup rows from recordings", rows);
+            }
+        } catch (Exception e) {
+            logger.error("Error backfilling call stat rollups", e);
+        }
+    }
+
+    public void recordCallStarted(LocalDateTime startedAt) {
+        apply(startedAt, 1, 0, 0, 0);
+    }
+
+    /**
+     * Trừ toàn bộ phần đóng góp của một recording đã bị xóa
+     */
+    public void recordCallRemoved(LocalDateTime startedAt, Double duration, Integer rating) {
+        apply(startedAt, -1, duration != null ? -duration : 0, rating != null ? -rating : 0,
+                rating != null ? -1 : 0);
+    }
+
+    /**
+     * Cộng phần chênh lệch thời lượng (recording có thể được cập nhật thời lượng nhiều lần)
+     */
+    public void recordDuration(LocalDateTime startedAt, Double previousDuration, Double duration) {
+        double delta = (duration != null ? duration : 0) - (previousDuration != null ? previousDuration : 0);
+        if (delta != 0) {
+            apply(startedAt, 0, delta, 0, 0);
+        }
+    }
+
+    /**
+     * Cộng đánh giá mới, hoặc thay đánh giá cũ nếu recording đã được đánh giá
+     */
+    public void recordRating(LocalDateTime startedAt, Integer previousRating, int rating) {
+        long delta = rating - (previousRating != null ? previousRating : 0);
+        apply(startedAt, 0, 0, delta, previousRating == null ? 1 : 0);
+    }
+
+    public List<TimeSeriesPoint> getCallStats(String interval, LocalDateTime start, LocalDateTime end) {
+        if (!GRANULARITIES.contains(interval)) {
+            throw new ValidationException("Invalid interval: " + interval + ". Must be hour, day or month");
+        }
+        return callStatRollupRepository
+                .findByGranularityAndBucketStartBetweenOrderByBucketStartAsc(interval, truncate(interval, start), end)
+                .stream()
+                .map(row -> new TimeSeriesPoint(row.getBucketStart(), row.getCallCount(), row.getTotalDuration()))
+                .toList();
+    }
+
+    public RecordStaticResponse getTodaySummary() {
+        return callStatRollupRepository.findByGranularityAndBucketStart("day", LocalDate.now().atStartOfDay())
+                .map(this::toSummary)
+                .orElseGet(() -> new RecordStaticResponse(null, 0L, 0.0));
+    }
+
+    private RecordStaticResponse toSummary(CallStatRollup row) {
+        Double avgRating = row.getRatingCount() > 0
+                ? (double) row.getRatingSum() / row.getRatingCount()
+                : null;
+        return new RecordStaticResponse(avgRating, row.getCallCount(), row.getTotalDuration());
+    }
+
+    // Lỗi cập nhật thống kê không được làm hỏng luồng cuộc gọi: chỉ rollback về savepoint.
+    // Dùng JdbcTemplate (không qua repository @Transactional) để lỗi không đánh dấu
+    // rollback-only cho transaction của caller
+    private void apply(LocalDateTime startedAt, long calls, double duration, long ratingSum, long ratingCount) {
+        if (startedAt == null) {
+            return;
+        }
+        try {
+            nestedTransactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(ADD_TO_BUCKETS_SQL,
+                    ROLLUP_LOCK_KEY, startedAt, calls, duration, ratingSum, ratingCount));
+        } catch (Exception e) {
+            logger.error("Error updating call stat rollups for {}", startedAt, e);
+        }
+    }
+
+    private static LocalDateTime truncate(String interval, LocalDateTime time) {
+        return switch (interval) {
+            case "hour" -> time.truncatedTo(ChronoUnit.HOURS);
+            case "day" -> time.truncatedTo(ChronoUnit.DAYS);
+            default -> time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        };
+    }
+}
@@ -1,16 +1,28 @@
 package com.example.backend.service;
 
+import com.example.backend.security.JwtPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 @Service
@@ -22,6 +34,37 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Số token tối đa giữ trong cache
+    @Value("${jwt.cache-size:10000}")
+    private int maxCachedTokens;
+
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    // Token đã xác thực, key là SHA-256 của token (không giữ token gốc trong bộ nhớ).
+    // LinkedHashMap theo thứ tự truy cập: khi đầy thì bỏ token lâu không dùng nhất (LRU)
+    private final Map<String, JwtPrincipal> principalCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JwtPrincipal> eldest) {
+                    return size() > maxCachedTokens;
+                }
+            });
+
+    // Token đã logout (SHA-256 -> thời điểm hết hạn), giữ đến khi token tự hết hạn.
+    // Chỉ có hiệu lực trên node xử lý logout.
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        jwtParser = Jwts.parser().verifyWith(signingKey).build();
+    }
+
     /**
      * Generate JWT token for user
      */
@@ -53,32 +96,67 @@ public class JwtService {
                 .compact();
     }
 
+    /**
+     * Xác thực token và trả về principal. Token chỉ được verify chữ ký một lần,
+     * các lần sau lấy từ cache cho đến khi token hết hạn.
+     * Token không hợp lệ, hết hạn hoặc đã logout sẽ ném JwtException như khi parse.
+     */
+    public JwtPrincipal parseToken(String token) {
+        String cacheKey = digest(token);
+
+        if (revokedTokens.containsKey(cacheKey)) {
+            throw new JwtException("Token has been revoked");
+        }
+
+        JwtPrincipal cached = principalCache.get(cacheKey);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                cacheHits.increment();
+                return cached;
+            }
+            principalCache.remove(cacheKey);
+        }
+
+        cacheMisses.increment();
+        Claims claims = extractAllClaims(token);
+        JwtPrincipal principal = new JwtPrincipal(
+                claims.get("userId", Long.class),
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+
+        if (principal.expiresAt() != null) {
+            principalCache.put(cacheKey, principal);
+        }
+        return principal;
+    }
+
     /**
      * Extract username from token
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).email();
     }
 
     /**
      * Extract user ID from token
      */
     public Long extractUserId(String token) {
-        return extractClaim(token, claims -> claims.get("userId", Long.class));
+        return parseToken(token).userId();
     }
 
     /**
      * Extract user role from token
      */
     public String extractRole(String token) {
-        return extractClaim(token, claims -> claims.get("role", String.class));
+        return parseToken(token).role();
     }
 
     /**
      * Extract expiration date from token
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return Date.from(parseToken(token).expiresAt());
     }
 
     /**
@@ -93,9 +171,7 @@ public class JwtService {
      * Extract all claims from token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey()) // getSigningKey() trả về kiểu java.security.Key
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)    // thay parseClaimsJws(...)
                 .getPayload();               // thay getBody()
     }
@@ -104,7 +180,7 @@ public class JwtService {
      * Check if token is expired
      */
     public Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parseToken(token).isExpired();
     }
 
     /**
@@ -127,8 +203,44 @@ public class JwtService {
      * Get signing key
      */
     private SecretKey getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
+    }
+
+    /**
+     * Thu hồi token khi logout: parseToken từ chối token này cho đến khi nó hết hạn
+     */
+    public void revokeToken(JwtPrincipal principal, String token) {
+        if (token == null || principal == null || principal.expiresAt() == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+
+        String cacheKey = digest(token);
+        revokedTokens.put(cacheKey, principal.expiresAt());
+        principalCache.remove(cacheKey);
+    }
+
+    /**
+     * Thống kê cache token (hits, misses, số token đang cache, số token đã thu hồi)
+     */
+    public Map<String, Long> getCacheStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", cacheHits.sum());
+        stats.put("misses", cacheMisses.sum());
+        stats.put("size", (long) principalCache.size());
+        stats.put("capacity", (long) maxCachedTokens);
+        stats.put("revoked", (long) revokedTokens.size());
+        return stats;
+    }
+
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     /**
@@ -0,0 +1,272 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.LatencyPercentilesResponse;
+import com.example.backend.enums.LatencyKind;
+import com.example.backend.metrics.LatencyHistogram;
+import com.example.backend.model.LatencyHistogramRecord;
+import com.example.backend.repository.LatencyHistogramRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histogram độ trễ theo agent và toàn hệ thống (agentId = GLOBAL_AGENT_ID).
+ * Ghi vào bộ nhớ, theo chu kỳ phần mẫu mới của node này (delta) được cộng vào
+ * dòng trong bảng latency_histograms dưới khóa dòng, nên nhiều node dùng chung
+ * một dòng mà không ghi đè mẫu của nhau. Sau mỗi lần lưu, bản đọc trong bộ nhớ
+ * được thay bằng dòng trong DB (gồm mẫu của các node khác) cộng mẫu chưa lưu.
+ * Khi khởi động, dữ liệu đã lưu được merge vào những gì đã ghi trước lúc nạp
+ * xong nên không mất mẫu nào. Nạp lỗi thì thử lại sau LOAD_RETRY_DELAY, mẫu
+ * ghi trong lúc chờ được giữ lại và lưu sau khi nạp xong.
+ */
+@Service
+public class LatencyHistogramService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyHistogramService.class);
+
+    public static final long GLOBAL_AGENT_ID = 0L;
+
+    private static final Duration PERSIST_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration LOAD_RETRY_DELAY = Duration.ofSeconds(30);
+
+    @Autowired
+    private LatencyHistogramRepository latencyHistogramRepository;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<HistogramKey, TrackedHistogram> histograms = new ConcurrentHashMap<>();
+
+    // Chỉ lưu xuống DB sau khi đã nạp, tránh nạp lại cả phần delta vừa lưu
+    private volatile boolean loaded = false;
+
+    private record HistogramKey(LatencyKind kind, long agentId) {
+    }
+
+    private static final class TrackedHistogram {
+        // Bản để đọc: dữ liệu trong DB ở lần nạp/lưu gần nhất cộng mẫu ghi trên node này
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        // Mẫu ghi trên node này chưa cộng vào DB
+        private final LatencyHistogram pending = new LatencyHistogram();
+        // resetAgent chưa được lưu: lần lưu tới thay dòng trong DB thay vì cộng vào
+        private boolean resetPending;
+        private boolean dirty;
+
+        private synchronized void record(long millis) {
+            histogram.record(millis);
+            pending.record(millis);
+            dirty = true;
+        }
+
+        private synchronized void reset() {
+            histogram.reset();
+            pending.reset();
+            resetPending = true;
+            dirty = true;
+        }
+
+        /**
+         * Lấy delta cần lưu, null nếu không có thay đổi
+         */
+        private synchronized Delta drain() {
+            if (!dirty) {
+                return null;
+            }
+            Delta delta = new Delta(pending.copy(), resetPending);
+            pending.reset();
+            resetPending = false;
+            dirty = false;
+            return delta;
+        }
+
+        // Lưu lỗi: trả delta về để lần sau lưu lại
+        private synchronized void restore(Delta delta) {
+            pending.merge(delta.samples());
+            resetPending |= delta.reset();
+            dirty = true;
+        }
+
+        /**
+         * Bản copy để đọc percentile ngoài lock
+         */
+        private synchronized LatencyHistogram snapshot() {
+            return histogram.copy();
+        }
+
+        private synchronized void mergeLoaded(LatencyHistogram persisted) {
+            histogram.merge(persisted);
+        }
+
+        private synchronized void replaceWith(LatencyHistogram persisted) {
+            histogram.reset();
+            histogram.merge(persisted);
+            histogram.merge(pending);
+        }
+    }
+
+    private record Delta(LatencyHistogram samples, boolean reset) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        load();
+        taskScheduler.scheduleWithFixedDelay(this::persistDirty, PERSIST_INTERVAL);
+    }
+
+    @PreDestroy
+    public void stop() {
+        persistDirty();
+    }
+
+    /**
+     * Ghi một mẫu độ trễ cho agent và cho histogram tổng
+     */
+    public void record(LatencyKind kind, Long agentId, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            return;
+        }
+        long millis = Duration.between(from, to).toMillis();
+        if (agentId != null) {
+            recordInto(new HistogramKey(kind, agentId), millis);
+        }
+        recordInto(new HistogramKey(kind, GLOBAL_AGENT_ID), millis);
+    }
+
+    public LatencyPercentilesResponse getPercentiles(LatencyKind kind, Long agentId) {
+        long id = agentId != null ? agentId : GLOBAL_AGENT_ID;
+        TrackedHistogram tracked = histograms.get(new HistogramKey(kind, id));
+        LatencyHistogram snapshot = tracked != null ? tracked.snapshot() : new LatencyHistogram();
+        return toResponse(kind, id, snapshot);
+    }
+
+    /**
+     * Các agent có độ trễ tại percentile >= thresholdMs, chậm nhất trước
+     */
+    public List<LatencyPercentilesResponse> getSlowAgents(LatencyKind kind, double percentile, long thresholdMs,
+            int limit) {
+        record Candidate(long agentId, LatencyHistogram snapshot, long value) {
+        }
+
+        return histograms.entrySet().stream()
+                .filter(e -> e.getKey().kind() == kind && e.getKey().agentId() != GLOBAL_AGENT_ID)
+                .map(e -> {
+                    LatencyHistogram snapshot = e.getValue().snapshot();
+                    return new Candidate(e.getKey().agentId(), snapshot, snapshot.getValueAtPercentile(percentile));
+                })
+                .filter(c -> c.snapshot().getTotalCount() > 0 && c.value() >= thresholdMs)
+                .sorted(Comparator.comparingLong(Candidate::value).reversed())
+                .limit(limit)
+                .map(c -> toResponse(kind, c.agentId(), c.snapshot()))
+                .toList();
+    }
+
+    /**
+     * Xóa histogram của agent (không ảnh hưởng histogram tổng)
+     */
+    public void resetAgent(Long agentId) {
+        if (agentId == null) {
+            return;
+        }
+        for (LatencyKind kind : LatencyKind.values()) {
+            histograms.computeIfAbsent(new HistogramKey(kind, agentId), key -> new TrackedHistogram()).reset();
+        }
+    }
+
+    private void recordInto(HistogramKey key, long millis) {
+        histograms.computeIfAbsent(key, k -> new TrackedHistogram()).record(millis);
+    }
+
+    private void load() {
+        // Đọc và decode hết trước khi merge: lỗi giữa chừng không để lại dòng nào
+        // đã merge, lần thử lại không cộng trùng
+        Map<HistogramKey, LatencyHistogram> persisted = new HashMap<>();
+        try {
+            for (LatencyHistogramRecord row : latencyHistogramRepository.findAll()) {
+                persisted.put(new HistogramKey(row.getKind(), row.getAgentId()),
+                        LatencyHistogram.decode(row.getData()));
+            }
+        } catch (Exception e) {
+            logger.error("Error loading latency histograms, retrying in {}s", LOAD_RETRY_DELAY.toSeconds(), e);
+            taskScheduler.schedule(this::load, Instant.now().plus(LOAD_RETRY_DELAY));
+            return;
+        }
+
+        persisted.forEach((key, histogram) ->
+                histograms.computeIfAbsent(key, k -> new TrackedHistogram()).mergeLoaded(histogram));
+        loaded = true;
+        logger.info("Loaded {} latency histograms", persisted.size());
+    }
+
+    synchronized void persistDirty() {
+        if (!loaded) {
+            return;
+        }
+        histograms.forEach((key, tracked) -> {
+            Delta delta = tracked.drain();
+            if (delta == null) {
+                return;
+            }
+            try {
+                LatencyHistogram persisted = transactionTemplate.execute(status -> mergeIntoRow(key, delta));
+                tracked.replaceWith(persisted);
+            } catch (Exception e) {
+                tracked.restore(delta);
+                logger.error("Error persisting latency histogram {} for agent {}", key.kind(), key.agentId(), e);
+            }
+        });
+    }
+
+    /**
+     * Cộng delta vào dòng đã khóa (hoặc thay hẳn nếu agent vừa bị reset), trả về histogram đã lưu.
+     * Hai node cùng tạo dòng mới thì một node lỗi unique và lưu lại ở lần sau.
+     */
+    private LatencyHistogram mergeIntoRow(HistogramKey key, Delta delta) {
+        LatencyHistogramRecord row = latencyHistogramRepository.findForUpdate(key.kind(), key.agentId())
+                .orElseGet(() -> LatencyHistogramRecord.builder()
+                        .kind(key.kind())
+                        .agentId(key.agentId())
+                        .build());
+
+        LatencyHistogram merged = delta.reset() || row.getData() == null
+                ? new LatencyHistogram()
+                : LatencyHistogram.decode(row.getData());
+        merged.merge(delta.samples());
+
+        row.setTotalCount(merged.getTotalCount());
+        row.setData(merged.encode());
+        row.setUpdatedAt(LocalDateTime.now());
+        latencyHistogramRepository.save(row);
+        return merged;
+    }
+
+    private static LatencyPercentilesResponse toResponse(LatencyKind kind, long agentId, LatencyHistogram snapshot) {
+        return LatencyPercentilesResponse.builder()
+                .agentId(agentId == GLOBAL_AGENT_ID ? null : agentId)
+                .kind(kind)
+                .count(snapshot.getTotalCount())
+                .mean(snapshot.getMean())
+                .p50(snapshot.getValueAtPercentile(50))
+                .p90(snapshot.getValueAtPercentile(90))
+                .p99(snapshot.getValueAtPercentile(99))
+                .max(snapshot.getMax())
+                .build();
+    }
+}
@@ -1,76 +1,354 @@
 package com.example.backend.service;
 
+import com.example.backend.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Service để handle các events và tự động cập nhật metrics
+ * Pipeline ghi metrics bất đồng bộ: các sự kiện được đưa vào hàng đợi có giới
+ * hạn, định kỳ gộp theo agent rồi ghi xuống user_metrics bằng một batch UPDATE
+ * (nơi duy nhất tính lại counter và average của user_metrics).
+ * Khi hàng đợi đầy, sự kiện mới bị bỏ và được đếm vào dropped.
+ *
+ * Sự kiện phát ra trong transaction chỉ vào hàng đợi sau khi transaction commit.
+ * Mỗi lần flush chạy trong một transaction; nếu lỗi thì delta đã gộp được giữ
+ * lại và ghi cùng lần flush sau (mỗi agent một delta nên không tăng không giới hạn).
  */
 @Service
 public class MetricsEventService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEventService.class);
+
+    // Mỗi dòng VALUES là delta đã gộp của một agent, average được tính lại từ giá trị cũ.
+    // rating và average_call_duration làm tròn 2 chữ số như trước; vì tính lại từ tổng
+    // (total_ratings, total_call_time) nên sai số làm tròn không bị cộng dồn
+    private static final String BATCH_UPDATE_SQL = """
+            UPDATE user_metrics m SET
+                total_accepted_calls = COALESCE(m.total_accepted_calls, 0) + d.accepted,
+                total_rejected_calls = COALESCE(m.total_rejected_calls, 0) + d.rejected,
+                total_response_time = COALESCE(m.total_response_time, COALESCE(m.average_response_time, 0)
+                        * (COALESCE(m.total_accepted_calls, 0) + COALESCE(m.total_rejected_calls, 0))) + d.response_time,
+                average_response_time = CASE WHEN d.accepted + d.rejected > 0
+                    THEN (COALESCE(m.total_response_time, COALESCE(m.average_response_time, 0)
+                            * (COALESCE(m.total_accepted_calls, 0) + COALESCE(m.total_rejected_calls, 0))) + d.response_time)
+                        / (COALESCE(m.total_accepted_calls, 0) + COALESCE(m.total_rejected_calls, 0) + d.accepted + d.rejected)
+                    ELSE m.average_response_time END,
+                total_calls = m.total_calls + d.calls,
+                total_call_time = m.total_call_time + d.call_time,
+                successful_calls = COALESCE(m.successful_calls, 0) + d.successful,
+                failed_calls = COALESCE(m.failed_calls, 0) + d.failed,
+                average_call_duration = CASE WHEN m.total_calls + d.calls > 0
+                    THEN ROUND(CAST((m.total_call_time + d.call_time) / (m.total_calls + d.calls) AS numeric), 2)
+                    ELSE m.average_call_duration END,
+                total_ratings = COALESCE(m.total_ratings, 0) + d.five + d.four + d.three + d.two + d.one,
+                five_star_ratings = COALESCE(m.five_star_ratings, 0) + d.five,
+                four_star_ratings = COALESCE(m.four_star_ratings, 0) + d.four,
+                three_star_ratings = COALESCE(m.three_star_ratings, 0) + d.three,
+                two_star_ratings = COALESCE(m.two_star_ratings, 0) + d.two,
+                one_star_ratings = COALESCE(m.one_star_ratings, 0) + d.one,
+                rating = CASE WHEN d.five + d.four + d.three + d.two + d.one > 0
+                    THEN ROUND(((COALESCE(m.five_star_ratings, 0) + d.five) * 5
+                            + (COALESCE(m.four_star_ratings, 0) + d.four) * 4
+                            + (COALESCE(m.three_star_ratings, 0) + d.three) * 3
+                            + (COALESCE(m.two_star_ratings, 0) + d.two) * 2
+                            + (COALESCE(m.one_star_ratings, 0) + d.one)) * 1.0
+                        / (COALESCE(m.total_ratings, 0) + d.five + d.four + d.three + d.two + d.one), 2)
+                    ELSE m.rating END
+            FROM (VALUES (?::bigint, ?::int, ?::int, ?::float8, ?::int, ?::float8, ?::int, ?::int,
+                    ?::int, ?::int, ?::int, ?::int, ?::int))
+                AS d(user_id, accepted, rejected, response_time, calls, call_time, successful, failed,
+                    five, four, three, two, one)
+            WHERE m.user_id = d.user_id
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Autowired
     private UserMetricsService userMetricsService;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private AgentLeaderboard agentLeaderboard;
+
+    @Value("${app.metrics.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${app.metrics.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final Queue<MetricsEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final LongAdder acceptedEvents = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder flushedEvents = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    // Delta của lần flush lỗi, chỉ truy cập trong flush()
+    private Map<Long, AgentDelta> retryDeltas = new LinkedHashMap<>();
+    private volatile int retryingAgents;
+
+    private ScheduledFuture<?> flushTask;
+
+    private enum EventType {
+        CALL_ACCEPTED, CALL_REJECTED, CALL_STARTED, CALL_COMPLETED, CALL_FAILED, RATING
+    }
+
+    private record MetricsEvent(Long agentId, EventType type, double value) {
+    }
+
+    @PostConstruct
+    public void start() {
+        flushTask = taskScheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(flushIntervalMs));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        flush();
+    }
+
+    /**
+     * Agent chấp nhận request
+     */
+    public boolean recordCallAccepted(Long agentId, LocalDateTime requestTime, LocalDateTime responseTime) {
+        return offer(agentId, EventType.CALL_ACCEPTED, responseTimeSeconds(requestTime, responseTime));
+    }
+
     /**
-     * Handle khi user join video call session
+     * Agent từ chối request
      */
-    public void handleUserJoinedCall(Long agentId, Long userId, String sessionId) {
-        // Log event cho debugging
-        System.out.println("User " + userId + " joined call with agent " + agentId + " in session " + sessionId);
+    public boolean recordCallRejected(Long agentId, LocalDateTime requestTime, LocalDateTime responseTime) {
+        return offer(agentId, EventType.CALL_REJECTED, responseTimeSeconds(requestTime, responseTime));
+    }
 
-        // Có thể thêm logic cập nhật metrics nếu cần
-        // userMetricsService.updateCallActive(agentId, userId);
+    /**
+     * Cuộc gọi bắt đầu (tăng total_calls)
+     */
+    public boolean recordCallStarted(Long agentId) {
+        return offer(agentId, EventType.CALL_STARTED, 0);
     }
 
     /**
-     * Handle khi user rời khỏi video call session
+     * Cuộc gọi kết thúc
      */
-//    public void handleUserLeftCall(Long agentId, Long userId, String sessionId, Long durationSeconds) {
-//        System.out.println("User " + userId + " left call with agent " + agentId +
-//                " in session " + sessionId + " after " + durationSeconds + " seconds");
-//
-//        // Cập nhật metrics khi user rời khỏi call
-//        if (durationSeconds != null && durationSeconds > 0) {
-//            userMetricsService.updateCallCompleted(agentId, userId, durationSeconds, true);
-//        }
-//    }
+    public boolean recordCallCompleted(Long agentId, Double callDurationSeconds, boolean isSuccessful) {
+        double duration = callDurationSeconds != null ? callDurationSeconds : 0.0;
+        return offer(agentId, isSuccessful ? EventType.CALL_COMPLETED : EventType.CALL_FAILED, duration);
+    }
 
     /**
-     * Handle khi agent phản hồi support request
+     * User đánh giá agent (1-5 sao)
      */
-//    public void handleAgentResponse(Long agentId, Long userId, LocalDateTime requestTime,
-//            LocalDateTime responseTime, boolean isAccepted) {
-//
-//        if (requestTime != null && responseTime != null) {
-//            long responseTimeSeconds = java.time.Duration.between(requestTime, responseTime).toSeconds();
-//            userMetricsService.updateResponseTime(agentId, responseTimeSeconds);
-//        }
-//
-//        System.out.println("Agent " + agentId + " responded to user " + userId +
-//                " request: " + (isAccepted ? "ACCEPTED" : "REJECTED"));
-//    }
+    public boolean recordRating(Long agentId, int rating) {
+        if (rating < 1 || rating > 5) {
+            return false;
+        }
+        return offer(agentId, EventType.RATING, rating);
+    }
 
     /**
-     * Handle khi session timeout hoặc failed
+     * Thống kê pipeline: queued > 0 kéo dài hoặc dropped tăng nghĩa là flush
+     * không theo kịp
      */
-//    public void handleSessionFailed(Long agentId, Long userId, String reason) {
-//        System.out.println("Session failed between agent " + agentId + " and user " + userId +
-//                ". Reason: " + reason);
-//
-//        // Cập nhật failed call metrics
-//        userMetricsService.updateCallCompleted(agentId, userId, 0L, false);
-//    }
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queued", (long) queueSize.get());
+        stats.put("capacity", (long) queueCapacity);
+        stats.put("accepted", acceptedEvents.sum());
+        stats.put("dropped", droppedEvents.sum());
+        stats.put("flushedEvents", flushedEvents.sum());
+        stats.put("flushedBatches", flushedBatches.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("retryingAgents", (long) retryingAgents);
+        return stats;
+    }
 
     /**
-     * Handle batch metrics update (có thể chạy theo schedule)
+     * Trong transaction: chỉ đưa sự kiện vào hàng đợi sau khi commit, rollback thì bỏ.
+     * Khi đó giá trị trả về luôn là true vì chưa biết hàng đợi có còn chỗ không.
      */
-    public void handleBatchMetricsUpdate() {
-        // Logic để cập nhật metrics theo batch nếu cần
-        System.out.println("Running batch metrics update at " + LocalDateTime.now());
+    private boolean offer(Long agentId, EventType type, double value) {
+        if (agentId == null) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(agentId, type, value);
+                }
+            });
+            return true;
+        }
+        return enqueue(agentId, type, value);
     }
-}
 
+    private boolean enqueue(Long agentId, EventType type, double value) {
+        if (queueSize.incrementAndGet() > queueCapacity) {
+            queueSize.decrementAndGet();
+            droppedEvents.increment();
+            long dropped = droppedEvents.sum();
+            if (dropped == 1 || dropped % 1000 == 0) {
+                logger.warn("Metrics queue is full ({} events), dropped {} events so far", queueCapacity, dropped);
+            }
+            return false;
+        }
+
+        queue.add(new MetricsEvent(agentId, type, value));
+        acceptedEvents.increment();
+        return true;
+    }
+
+    /**
+     * Gộp các sự kiện đang chờ (cùng delta lỗi của lần trước) theo agent và ghi
+     * bằng một batch UPDATE trong một transaction
+     */
+    synchronized void flush() {
+        Map<Long, AgentDelta> deltas = retryDeltas;
+        retryDeltas = new LinkedHashMap<>();
+
+        MetricsEvent event;
+        while ((event = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            deltas.computeIfAbsent(event.agentId(), AgentDelta::new).apply(event);
+        }
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<AgentDelta> batchDeltas = new ArrayList<>(deltas.values());
+        List<Object[]> batchArgs = new ArrayList<>(batchDeltas.size());
+        int events = 0;
+        for (AgentDelta delta : batchDeltas) {
+            batchArgs.add(delta.toArgs());
+            events += delta.events;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] updated = jdbcTemplate.batchUpdate(BATCH_UPDATE_SQL, batchArgs);
+
+                // Agent chưa có dòng user_metrics: tạo rồi ghi lại riêng dòng đó.
+                // User đã bị xóa thì bỏ delta, tránh làm lỗi cả batch ở mọi lần thử lại
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) {
+                        Long agentId = batchDeltas.get(i).agentId;
+                        if (!userRepository.existsById(agentId)) {
+                            logger.warn("Dropping metrics delta for missing user {}", agentId);
+                            continue;
+                        }
+                        userMetricsService.getOrCreateUserMetric(agentId);
+                        jdbcTemplate.update(BATCH_UPDATE_SQL, batchArgs.get(i));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            failedBatches.increment();
+            retryDeltas = deltas;
+            retryingAgents = deltas.size();
+            logger.error("Failed to flush {} metrics events for {} agents, will retry on next flush",
+                    events, deltas.size(), e);
+            return;
+        }
+
+        retryingAgents = 0;
+        flushedEvents.add(events);
+        flushedBatches.increment();
+        agentLeaderboard.refreshAgents(deltas.keySet());
+    }
+
+    private double responseTimeSeconds(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            return 0.0;
+        }
+        return Duration.between(from, to).toMillis() / 1000.0;
+    }
+
+    /**
+     * Delta đã gộp của một agent trong một lần flush
+     */
+    private static final class AgentDelta {
+        private final Long agentId;
+        private int accepted;
+        private int rejected;
+        private double responseTime;
+        private int calls;
+        private double callTime;
+        private int successful;
+        private int failed;
+        private final int[] stars = new int[6];
+        private int events;
+
+        AgentDelta(Long agentId) {
+            this.agentId = agentId;
+        }
+
+        void apply(MetricsEvent event) {
+            events++;
+            switch (event.type()) {
+                case CALL_ACCEPTED -> {
+                    accepted++;
+                    responseTime += event.value();
+                }
+                case CALL_REJECTED -> {
+                    rejected++;
+                    responseTime += event.value();
+                }
+                case CALL_STARTED -> calls++;
+                case CALL_COMPLETED -> {
+                    successful++;
+                    callTime += event.value();
+                }
+                case CALL_FAILED -> {
+                    failed++;
+                    callTime += event.value();
+                }
+                case RATING -> stars[(int) event.value()]++;
+            }
+        }
+
+        Object[] toArgs() {
+            return new Object[] {
+                    agentId, accepted, rejected, responseTime, calls, callTime, successful, failed,
+                    stars[5], stars[4], stars[3], stars[2], stars[1]
+            };
+        }
+    }
+}
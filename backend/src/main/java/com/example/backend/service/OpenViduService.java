@@ -40,7 +40,10 @@ public class OpenViduService {
     private RecordingSegmentRepository recordingSegmentRepository;
 
     @Autowired
-    private UserMetricsService userMetricsService;
+    private MetricsEventService metricsEventService;
+
+    @Autowired
+    private RecordingUploadWorker recordingUploadWorker;
 
     @PostConstruct
     public void init() {
@@ -159,7 +162,7 @@ public class OpenViduService {
 
     public RecordingDTO startAutoRecording(String sessionId, Long agentId, Long userId, Long requestId) throws  OpenViduHttpException, OpenViduJavaClientException {
 
-        userMetricsService.updateTotalCalls(agentId);
+        metricsEventService.recordCallStarted(agentId);
         RecordingProperties properties = new RecordingProperties.Builder()
                 .outputMode(Recording.OutputMode.COMPOSED)
                 .recordingLayout(RecordingLayout.BEST_FIT)
@@ -176,7 +179,7 @@ public class OpenViduService {
                 .status(RecordingStatus.STARTED)
                 .startedAt(LocalDateTime.now())
                 .build();
-        recordingRepository.save(dbRecording);
+        recordService.saveStartedRecording(dbRecording);
         return RecordingDTO.builder()
                 .recordingId(recording.getId())
                 .sessionId(recording.getSessionId())
@@ -189,14 +192,16 @@ public class OpenViduService {
         Recording recording = this.openVidu.stopRecording(recordingId);
 
         com.example.backend.model.Recording dbRecording = recordService.updateRecordingDetails(recordingId, recording);
-        recordService.updateRecordingStatus(recordingId, RecordingStatus.STOPPED);
-        recordService.uploadToS3(recording);
+        dbRecording = recordService.updateRecordingStatus(recordingId, RecordingStatus.STOPPED);
+
+        // Upload lên S3 chạy ở background, kết quả được gửi qua WebSocket
+        recordingUploadWorker.enqueue(recording.getId(), recording.getSessionId(), recording.getUrl(),
+                recording.getDuration(), recording.getSize());
 
         return RecordingDTO.builder()
                 .recordingId(recording.getId())
                 .sessionId(recording.getSessionId())
                 .status(dbRecording.getStatus().toString())
-                .url(dbRecording.getS3Url())
                 .duration(recording.getDuration())
                 .fileSize(recording.getSize())
                 .databaseId(dbRecording.getId())
@@ -0,0 +1,295 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.UserStatusEntry;
+import com.example.backend.enums.UserStatus;
+import com.example.backend.model.User;
+import com.example.backend.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trạng thái presence (ONLINE/OFFLINE/...) của user, giữ trong bộ nhớ và là
+ * nguồn đúng duy nhất khi đọc trạng thái.
+ * - Đổi trạng thái chỉ cập nhật bộ nhớ và AgentAvailabilityIndex ngay lập tức.
+ * - Cột users.status được ghi bằng một batch UPDATE theo chu kỳ
+ *   (app.presence.flush-interval-ms), chỉ với user có trạng thái khác lần ghi trước.
+ * - Broadcast cũng chỉ gửi khi flush, nên user kết nối lại liên tục (ONLINE ->
+ *   OFFLINE -> ONLINE trong một chu kỳ) không tạo ra ghi DB hay broadcast nào.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private static final String BATCH_UPDATE_SQL = "UPDATE users SET status = ? WHERE id = ?";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AgentAvailabilityIndex agentAvailabilityIndex;
+
+    @Autowired
+    private UserStatusBatchPublisher userStatusBatchPublisher;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.presence.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private final Map<Long, Presence> presences = new ConcurrentHashMap<>();
+
+    // User có trạng thái thay đổi từ lần flush trước
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder persistedChanges = new LongAdder();
+    private final LongAdder coalescedChanges = new LongAdder();
+
+    /**
+     * Trạng thái của một user. Các field được đọc/ghi khi giữ lock trên chính đối tượng
+     */
+    private static final class Presence {
+        private final String fullName;
+        private String role;
+        private UserStatus status;
+        // Trạng thái đã ghi xuống DB và đã broadcast
+        private UserStatus persistedStatus;
+        // Đã bị bỏ khỏi map, người giữ tham chiếu cũ phải lấy lại
+        private boolean evicted;
+
+        private Presence(User user) {
+            this.fullName = user.getFullName();
+            this.role = user.getRole();
+            this.status = user.getStatus();
+            this.persistedStatus = user.getStatus();
+        }
+    }
+
+    private record StatusChange(Long userId, String role, UserStatusEntry entry) {
+    }
+
+    /**
+     * Nạp sẵn các user không OFFLINE để các bộ đếm (countByRole) đọc từ bộ nhớ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (User user : userRepository.findByStatusNot(UserStatus.OFFLINE)) {
+            presences.putIfAbsent(user.getId(), new Presence(user));
+        }
+        taskScheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(flushIntervalMs));
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    /**
+     * Trạng thái hiện tại, OFFLINE nếu user không tồn tại
+     */
+    public UserStatus getStatus(Long userId) {
+        Presence presence = presence(userId);
+        if (presence == null) {
+            return UserStatus.OFFLINE;
+        }
+        synchronized (presence) {
+            return presence.status;
+        }
+    }
+
+    /**
+     * Đổi trạng thái user
+     *
+     * @return false nếu user không tồn tại
+     */
+    public boolean setStatus(Long userId, UserStatus status) {
+        return transition(userId, null, status);
+    }
+
+    /**
+     * Đổi trạng thái chỉ khi trạng thái hiện tại bằng expected (VD: đăng nhập chỉ
+     * khi đang OFFLINE), nguyên tử với các lần đổi khác của cùng user
+     */
+    public boolean compareAndSetStatus(Long userId, UserStatus expected, UserStatus status) {
+        return transition(userId, expected, status);
+    }
+
+    /**
+     * Cập nhật role đã cache (quyết định user có nằm trong AgentAvailabilityIndex không)
+     */
+    public void updateRole(Long userId, String role) {
+        Presence presence = presences.get(userId);
+        if (presence != null) {
+            synchronized (presence) {
+                presence.role = role;
+            }
+        }
+    }
+
+    /**
+     * Số user có role và trạng thái nằm trong statuses. User OFFLINE không được
+     * giữ trong bộ nhớ nên statuses không được chứa OFFLINE.
+     */
+    public long countByRole(String role, Set<UserStatus> statuses) {
+        long count = 0;
+        for (Presence presence : presences.values()) {
+            synchronized (presence) {
+                if (!presence.evicted && role.equalsIgnoreCase(presence.role) && statuses.contains(presence.status)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public Map<String, Long> getStats() {
+        return Map.of(
+                "tracked", (long) presences.size(),
+                "pending", (long) dirty.size(),
+                "transitions", transitions.sum(),
+                "persistedChanges", persistedChanges.sum(),
+                "coalescedChanges", coalescedChanges.sum());
+    }
+
+    private boolean transition(Long userId, UserStatus expected, UserStatus status) {
+        while (true) {
+            Presence presence = presence(userId);
+            if (presence == null) {
+                return false;
+            }
+            synchronized (presence) {
+                if (presence.evicted) {
+                    continue;
+                }
+                if (expected != null && presence.status != expected) {
+                    return false;
+                }
+                if (presence.status == status) {
+                    return true;
+                }
+                presence.status = status;
+                transitions.increment();
+                dirty.add(userId);
+
+                // Cập nhật ngay để matching thấy agent, không đợi flush
+                if ("AGENT".equalsIgnoreCase(presence.role)) {
+                    if (status == UserStatus.ONLINE) {
+                        agentAvailabilityIndex.markOnline(userId);
+                    } else {
+                        agentAvailabilityIndex.markOffline(userId);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private Presence presence(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        Presence presence = presences.get(userId);
+        if (presence != null) {
+            return presence;
+        }
+        // Lần đầu gặp user: trạng thái trong DB là trạng thái hiện tại
+        return userRepository.findById(userId)
+                .map(user -> presences.computeIfAbsent(userId, id -> new Presence(user)))
+                .orElse(null);
+    }
+
+    /**
+     * Ghi các trạng thái đã đổi bằng một batch UPDATE rồi broadcast thay đổi thực sự
+     */
+    synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        List<StatusChange> changes = new ArrayList<>();
+        Iterator<Long> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            Long userId = iterator.next();
+            iterator.remove();
+
+            Presence presence = presences.get(userId);
+            if (presence == null) {
+                continue;
+            }
+            synchronized (presence) {
+                if (presence.status == presence.persistedStatus) {
+                    // Đổi qua lại trong cùng một chu kỳ, không có thay đổi thực sự
+                    coalescedChanges.increment();
+                    evictIfIdle(userId, presence);
+                } else {
+                    changes.add(new StatusChange(userId, presence.role, UserStatusEntry.builder()
+                            .userId(userId)
+                            .fullName(presence.fullName)
+                            .status(presence.status)
+                            .timestamp(System.currentTimeMillis())
+                            .build()));
+                }
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Object[]> batchArgs = new ArrayList<>(changes.size());
+            for (StatusChange change : changes) {
+                batchArgs.add(new Object[] { change.entry().getStatus().name(), change.userId() });
+            }
+            jdbcTemplate.batchUpdate(BATCH_UPDATE_SQL, batchArgs);
+            persistedChanges.add(changes.size());
+        } catch (Exception e) {
+            logger.error("Failed to persist {} presence changes, will retry", changes.size(), e);
+            changes.forEach(change -> dirty.add(change.userId()));
+            return;
+        }
+
+        for (StatusChange change : changes) {
+            Presence presence = presences.get(change.userId());
+            if (presence != null) {
+                synchronized (presence) {
+                    presence.persistedStatus = change.entry().getStatus();
+                    // Nếu trạng thái đã đổi tiếp sau khi đọc, user vẫn nằm trong dirty cho lần sau
+                    evictIfIdle(change.userId(), presence);
+                }
+            }
+            userStatusBatchPublisher.publish(change.role(), change.entry());
+        }
+    }
+
+    // User OFFLINE đã ghi xong thì không cần giữ trong bộ nhớ, lần sau đọc lại từ DB
+    private void evictIfIdle(Long userId, Presence presence) {
+        if (presence.status == UserStatus.OFFLINE && presence.persistedStatus == UserStatus.OFFLINE
+                && !dirty.contains(userId)) {
+            presence.evicted = true;
+            presences.remove(userId, presence);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache presigned URL theo (key, thời hạn).
+ * URL được dùng lại cho đến khi còn ít hơn một khoảng an toàn trước lúc hết hạn
+ * (1/5 thời hạn, tối thiểu 30 giây), nên client luôn nhận URL còn dùng được
+ * trong khoảng đó.
+ */
+@Component
+public class PresignedUrlCache {
+
+    private static final Duration MIN_SAFETY_MARGIN = Duration.ofSeconds(30);
+
+    // Dọn các URL đã quá khoảng an toàn
+    private static final Duration CLEANUP_INTERVAL = Duration.ofMinutes(5);
+
+    private static final int MAX_ENTRIES = 50_000;
+
+    @Autowired
+    private S3Presigner s3Presigner;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.s3.bucket:openvidurecord}")
+    private String bucketName;
+
+    private final Map<CacheKey, CachedUrl> cache = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record CacheKey(String key, Duration duration) {
+    }
+
+    private record CachedUrl(String url, Instant refreshAfter) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::evictStale, CLEANUP_INTERVAL);
+    }
+
+    /**
+     * Presigned GET URL của key, ký lại nếu bản trong cache sắp hết hạn
+     */
+    public String get(String key, Duration duration) {
+        Instant now = Instant.now();
+        CachedUrl cached = cache.get(new CacheKey(key, duration));
+        if (cached != null && now.isBefore(cached.refreshAfter())) {
+            hits.increment();
+            return cached.url();
+        }
+        misses.increment();
+        return sign(key, duration, now);
+    }
+
+    /**
+     * Presigned URL cho nhiều key cùng lúc (VD: một trang danh sách recording),
+     * chỉ ký các key chưa có hoặc sắp hết hạn. Key null bị bỏ qua.
+     */
+    public Map<String, String> getAll(Collection<String> keys, Duration duration) {
+        Instant now = Instant.now();
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String key : keys) {
+            if (key == null || urls.containsKey(key)) {
+                continue;
+            }
+            CachedUrl cached = cache.get(new CacheKey(key, duration));
+            if (cached != null && now.isBefore(cached.refreshAfter())) {
+                hits.increment();
+                urls.put(key, cached.url());
+            } else {
+                misses.increment();
+                urls.put(key, sign(key, duration, now));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Bỏ mọi URL của key (gọi khi object bị xóa)
+     */
+    public void invalidate(String key) {
+        cache.keySet().removeIf(cacheKey -> cacheKey.key().equals(key));
+    }
+
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Set<String> removed = new HashSet<>(keys);
+        cache.keySet().removeIf(cacheKey -> removed.contains(cacheKey.key()));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private String sign(String key, Duration duration, Instant now) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(duration)
+                .getObjectRequest(getObjectRequest)
+                .build();
+
+        String url = s3Presigner.presignGetObject(presignRequest).url().toString();
+
+        if (cache.size() >= MAX_ENTRIES) {
+            evictStale();
+        }
+        if (cache.size() < MAX_ENTRIES) {
+            cache.put(new CacheKey(key, duration), new CachedUrl(url, now.plus(duration).minus(safetyMargin(duration))));
+        }
+        return url;
+    }
+
+    private void evictStale() {
+        Instant now = Instant.now();
+        cache.values().removeIf(cached -> !now.isBefore(cached.refreshAfter()));
+    }
+
+    private static Duration safetyMargin(Duration duration) {
+        Duration margin = duration.dividedBy(5);
+        return margin.compareTo(MIN_SAFETY_MARGIN) < 0 ? MIN_SAFETY_MARGIN : margin;
+    }
+}
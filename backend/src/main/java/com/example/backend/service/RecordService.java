@@ -4,30 +4,35 @@ import com.example.backend.dto.request.RecordingFilterRequest;
 import com.example.backend.dto.response.*;
 import com.example.backend.exception.ResourceNotFoundException;
 import com.example.backend.exception.BusinessException;
+import com.example.backend.exception.ValidationException;
 import com.example.backend.mapper.RecordingMapper;
 import com.example.backend.model.Recording;
 import com.example.backend.enums.RecordingStatus;
 import com.example.backend.model.RecordingSegment;
 import com.example.backend.model.User;
 import com.example.backend.repository.RecordingRepository;
+import com.example.backend.repository.RecordingSpecifications;
 import com.example.backend.repository.UserRepository;
 import io.openvidu.java.client.OpenVidu;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.sync.RequestBody;
+import org.springframework.transaction.annotation.Transactional;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
@@ -40,10 +45,15 @@ import java.util.stream.Stream;
 @Service
 public class RecordService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RecordService.class);
+
+    // Thời hạn URL phát lại recording trả về trong các danh sách
+    private static final Duration PLAYBACK_URL_DURATION = Duration.ofDays(7);
+
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     @Autowired
     private S3Client s3Client;
-    @Autowired
-    private S3Presigner s3Presigner;
 
     private OpenVidu openVidu;
 
@@ -57,26 +67,35 @@ public class RecordService {
     private UserRepository userRepository;
 
     @Autowired
-    private UserMetricsService userMetricsService;
+    private MetricsEventService metricsEventService;
 
-    private String bucketName = "openvidurecord";
+    @Autowired
+    private S3MultipartUploader s3MultipartUploader;
+
+    @Autowired
+    private S3ObjectIndex s3ObjectIndex;
+
+    @Autowired
+    private S3BulkDeleteService s3BulkDeleteService;
+
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    @Autowired
+    private CallStatRollupService callStatRollupService;
+
+    @Value("${app.s3.bucket:openvidurecord}")
+    private String bucketName;
 
     public RecordStaticResponse getSummary(){
-        return recordingRepository.getTodaySummary();
+        return callStatRollupService.getTodaySummary();
     }
 
 
     public List<TimeSeriesPoint> getCallStats(String interval,
                                               LocalDateTime start,
                                               LocalDateTime end) {
-        List<Object[]> rows = recordingRepository.countByInterval(interval, start, end);
-        return rows.stream()
-                .map(r -> new TimeSeriesPoint(
-                        ((java.sql.Timestamp) r[0]).toLocalDateTime(),
-                        ((Number) r[1]).longValue(),
-                        ((Double) r[2]).doubleValue()
-                ))
-                .toList();
+        return callStatRollupService.getCallStats(interval, start, end);
     }
 
     public Page<RecordingResponse> getRecords(Long agentId,
@@ -85,23 +104,54 @@ public class RecordService {
                                               String endDate,
                                               Pageable pageable) {
 
-        // 1. Parse date
-        LocalDateTime start = null;
-        LocalDateTime end = null;
+        // 1. Lấy recordings, chỉ lọc theo các điều kiện được truyền vào
+        Page<Recording> recordings = recordingRepository.findAll(
+                RecordingSpecifications.search(agentId, userId, parseStartDate(startDate), parseEndDate(endDate)),
+                pageable);
 
-        if (startDate != null && !startDate.isEmpty()) {
-            // parse yyyy-MM-dd -> LocalDate -> LocalDateTime 00:00:00
-            start = LocalDate.parse(startDate).atStartOfDay();
+        // 2. Map Recording -> RecordingResponse
+        List<RecordingResponse> responses = toResponses(recordings.getContent());
+        return new PageImpl<>(responses, pageable, recordings.getTotalElements());
+    }
+
+    /**
+     * Tìm recording phân trang bằng cursor (startedAt DESC, id DESC), không đếm
+     * tổng và không dùng OFFSET nên tốc độ không phụ thuộc trang sâu bao nhiêu
+     */
+    public RecordingCursorPage searchRecords(Long agentId,
+                                             Long userId,
+                                             String startDate,
+                                             String endDate,
+                                             String cursor,
+                                             int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_SEARCH_PAGE_SIZE);
+
+        Specification<Recording> spec = RecordingSpecifications.search(
+                agentId, userId, parseStartDate(startDate), parseEndDate(endDate));
+        if (cursor != null && !cursor.isEmpty()) {
+            RecordingCursor position = RecordingCursor.decode(cursor);
+            spec = spec.and(RecordingSpecifications.before(position.startedAt(), position.id()));
         }
-        if (endDate != null && !endDate.isEmpty()) {
-            // parse yyyy-MM-dd -> LocalDate -> LocalDateTime 23:59:59
-            end = LocalDate.parse(endDate).atTime(23, 59, 59);
+
+        // Lấy dư một dòng để biết còn trang sau hay không
+        List<Recording> rows = recordingRepository.findBy(spec, query -> query
+                .sortBy(Sort.by(Sort.Order.desc("startedAt"), Sort.Order.desc("id")))
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Recording> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Recording last = page.get(page.size() - 1);
+            nextCursor = new RecordingCursor(last.getStartedAt(), last.getId()).encode();
         }
 
-        // 2. Lấy tất cả recordings với filter (nếu dùng Specification hoặc method name)
-        Page<Recording> recordings = recordingRepository.findByFilters(agentId, userId, start, end, pageable);
+        return new RecordingCursorPage(toResponses(page), nextCursor, page.size());
+    }
 
-        // 3. Lấy tất cả userId + agentId trong page, fetch 1 lần
+    private List<RecordingResponse> toResponses(List<Recording> recordings) {
+        // Lấy tất cả userId + agentId trong page, fetch 1 lần
         Set<Long> userIds = recordings.stream()
                 .flatMap(r -> Stream.of(r.getUserId(), r.getAgentId()))
                 .collect(Collectors.toSet());
@@ -110,8 +160,11 @@ public class RecordService {
                 .stream()
                 .collect(Collectors.toMap(User::getId, Function.identity()));
 
-        // 4. Map Recording -> RecordingResponse
-        return recordings.map(recording -> {
+        // Ký URL phát lại cho cả trang một lần (dùng cache)
+        Map<String, String> urlsByKey = presignedUrlCache.getAll(
+                recordings.stream().map(Recording::getS3Key).toList(), PLAYBACK_URL_DURATION);
+
+        return recordings.stream().map(recording -> {
             User user = usersMap.get(recording.getUserId());
             User agent = usersMap.get(recording.getAgentId());
 
@@ -121,24 +174,46 @@ public class RecordService {
             RecordingResponse recordingResponse = recordingMapper.toResponse(recording);
             recordingResponse.setUserFullName(user.getFullName());
             recordingResponse.setAgentFullName(agent.getFullName());
+            recordingResponse.setS3Url(urlsByKey.get(recording.getS3Key()));
 
             return recordingResponse;
-        });
+        }).toList();
     }
 
-    public RecordUrlResponse getPresignedUrl(String key) {
+    // parse yyyy-MM-dd -> LocalDateTime 00:00:00
+    private static LocalDateTime parseStartDate(String startDate) {
+        return startDate != null && !startDate.isEmpty() ? LocalDate.parse(startDate).atStartOfDay() : null;
+    }
 
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
+    // parse yyyy-MM-dd -> LocalDateTime 23:59:59
+    private static LocalDateTime parseEndDate(String endDate) {
+        return endDate != null && !endDate.isEmpty() ? LocalDate.parse(endDate).atTime(23, 59, 59) : null;
+    }
 
-        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(Duration.ofDays(7))
-                .getObjectRequest(getObjectRequest)
-                .build();
+    /**
+     * Vị trí (startedAt, id) của dòng cuối trang, mã hóa base64 để client truyền lại nguyên vẹn
+     */
+    private record RecordingCursor(LocalDateTime startedAt, Long id) {
 
-        return new RecordUrlResponse(s3Presigner.presignGetObject(presignRequest).url().toString());
+        String encode() {
+            String raw = startedAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static RecordingCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new RecordingCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new ValidationException("Invalid cursor");
+            }
+        }
+    }
+
+    public RecordUrlResponse getPresignedUrl(String key) {
+        return new RecordUrlResponse(presignedUrlCache.get(key, PLAYBACK_URL_DURATION));
     }
 
     public Recording createRecording(String recordingId,String sessionId, Long agentId, Long userId, Long requestId){
@@ -153,31 +228,51 @@ public class RecordService {
         return recordingRepository.save(recording);
     }
 
+    /**
+     * Lưu recording vừa bắt đầu và cộng vào thống kê trong cùng transaction
+     */
+    @Transactional
+    public Recording saveStartedRecording(Recording recording) {
+        Recording saved = recordingRepository.save(recording);
+        callStatRollupService.recordCallStarted(saved.getStartedAt());
+        return saved;
+    }
+
+    @Transactional
     public Recording updateRecordingDetails(String recordingId, io.openvidu.java.client.Recording openViduRecording) {
         Optional<Recording> recordingOpt = recordingRepository.findByRecordingId(recordingId);
         if (recordingOpt.isPresent()) {
             Recording recording = recordingOpt.get();
+            Double previousDuration = recording.getDuration();
             recording.setDuration(openViduRecording.getDuration());
             recording.setFileSize(openViduRecording.getSize());
             recording.setStatus(RecordingStatus.STOPPED);
             if(recording.getRating() != null) {
                 boolean isSuccessful = recording.getRating() < 3 ? false : true;
-                userMetricsService.updateCallCompleted(recording.getAgentId(), recording.getDuration(), isSuccessful);
+                metricsEventService.recordCallCompleted(recording.getAgentId(), recording.getDuration(), isSuccessful);
             }
 
-            return recordingRepository.save(recording);
+            Recording saved = recordingRepository.save(recording);
+            // Cộng thống kê sau khi lưu: lưu lỗi thì không có delta thừa
+            callStatRollupService.recordDuration(saved.getStartedAt(), previousDuration, saved.getDuration());
+            return saved;
         }
         throw new RuntimeException("Recording not found " + recordingId);
     }
 
+    @Transactional
     public Recording updateRecordingStatus(String recordingId, RecordingStatus status) {
         Optional<Recording> recordingOpt = recordingRepository.findByRecordingId(recordingId);
         if (recordingOpt.isPresent()) {
             Recording recording = recordingOpt.get();
             recording.setStatus(status);
+            boolean started = false;
             switch (status) {
                 case STARTED:
-                    recording.setStartedAt(LocalDateTime.now());
+                    if (recording.getStartedAt() == null) {
+                        recording.setStartedAt(LocalDateTime.now());
+                        started = true;
+                    }
                     break;
                 case STOPPED:
                     recording.setStoppedAt(LocalDateTime.now());
@@ -188,85 +283,75 @@ public class RecordService {
                     // No specific time update for these statuses
                     break;
             }
-            return recordingRepository.save(recording);
+            Recording saved = recordingRepository.save(recording);
+            if (started) {
+                callStatRollupService.recordCallStarted(saved.getStartedAt());
+            }
+            return saved;
         }
         throw new RuntimeException("Recording not found: " + recordingId);
 
     }
 
-    public void updateRecordingS3Info(String recordingId, String s3Key, String s3Url) {
+    public void updateRecordingS3Info(String recordingId, String s3Key) {
         Optional<Recording> recordingOpt = recordingRepository.findByRecordingId(recordingId);
         if (recordingOpt.isPresent()) {
             Recording recording = recordingOpt.get();
             recording.setS3Key(s3Key);
-            recording.setS3Url(s3Url);
             recordingRepository.save(recording);
         }
     }
 
-    public void uploadToS3(io.openvidu.java.client.Recording openViduRecording) {
-        try {
-            String recordingUrl = openViduRecording.getUrl();
-
-            // Tạo connection với Basic Authentication
-            URL url = new URL(recordingUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-            // Thêm Basic Authentication header
-            // OpenVidu sử dụng OPENVIDUAPP:MY_SECRET làm credentials
-            String credentials = "OPENVIDUAPP:MY_SECRET";
-            String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
-            connection.setRequestProperty("Authorization", "Basic " + encodedCredentials);
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(30000);
-            connection.setReadTimeout(30000);
-
-            try (InputStream inputStream = connection.getInputStream()) {
-                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd--HHmmss"));
-                String s3Key = String.format("recording/%s/%s/%s-%s.mp4",
-                        openViduRecording.getSessionId(),
-                        timestamp,
-                        openViduRecording.getId(),
-                        timestamp);
-
-                // Lấy content length từ connection
-                long contentLength = connection.getContentLengthLong();
-                if (contentLength == -1) {
-                    // Fallback nếu không get được content length
-                    contentLength = openViduRecording.getSize();
-                }
-
-                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                        .bucket(bucketName)
-                        .key(s3Key)
-                        .contentType("video/mp4")
-                        .metadata(Map.of(
-                                "session-id", openViduRecording.getSessionId(),
-                                "recording-id", openViduRecording.getId(),
-                                "duration", String.valueOf(openViduRecording.getDuration()),
-                                "size", String.valueOf(openViduRecording.getSize())))
-                        .build();
-
-                // Upload với content length chính xác
-                s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(inputStream, contentLength));
-
-                String s3Url = getPresignedUrl(s3Key).getUrl();
-                System.out.println("Successfully uploaded to S3: " + s3Url);
-                updateRecordingS3Info(openViduRecording.getId(), s3Key, s3Url);
-
-                updateRecordingStatus(openViduRecording.getId(), RecordingStatus.UPLOADED);
-
-            } finally {
-                connection.disconnect();
-            }
+    /**
+     * Key S3 cho file recording, được tạo một lần khi tạo upload job
+     */
+    public String buildRecordingS3Key(String recordingId, String sessionId) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd--HHmmss"));
+        return String.format("recording/%s/%s/%s-%s.mp4",
+                sessionId,
+                timestamp,
+                recordingId,
+                timestamp);
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("Failed to upload recording to S3: " + e.getMessage());
-            updateRecordingStatus(openViduRecording.getId(), RecordingStatus.FAILED);
-            throw new RuntimeException("Failed to upload recording to S3", e);
+    /**
+     * Tải file recording từ OpenVidu và upload lên S3 tại s3Key, được gọi bởi RecordingUploadWorker.
+     * Retry dùng lại cùng s3Key nên không để lại object thừa.
+     * Lỗi được ném ra để worker quyết định retry hay đánh dấu FAILED.
+     */
+    public String uploadRecordingFile(String recordingId, String sessionId, String recordingUrl,
+                                      String s3Key, Double duration, Long size) throws Exception {
+        // Tạo connection với Basic Authentication
+        URL url = new URL(recordingUrl);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+        // Thêm Basic Authentication header
+        // OpenVidu sử dụng OPENVIDUAPP:MY_SECRET làm credentials
+        String credentials = "OPENVIDUAPP:MY_SECRET";
+        String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
+        connection.setRequestProperty("Authorization", "Basic " + encodedCredentials);
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(30000);
+        connection.setReadTimeout(30000);
+
+        try (InputStream inputStream = connection.getInputStream()) {
+            // Multipart upload: không cần biết trước content length
+            long uploadedBytes = s3MultipartUploader.upload(inputStream, bucketName, s3Key, "video/mp4", Map.of(
+                    "session-id", sessionId,
+                    "recording-id", recordingId,
+                    "duration", String.valueOf(duration),
+                    "size", String.valueOf(size)));
+            s3ObjectIndex.put(s3Key, uploadedBytes, Instant.now());
+
+            logger.info("Uploaded recording {} to S3: {} ({} bytes)", recordingId, s3Key, uploadedBytes);
+            updateRecordingS3Info(recordingId, s3Key);
+
+            updateRecordingStatus(recordingId, RecordingStatus.UPLOADED);
+            return s3Key;
+
+        } finally {
+            connection.disconnect();
         }
-        return;
     }
 
     public void deleteFile(String key) {
@@ -274,57 +359,44 @@ public class RecordService {
                 .bucket(bucketName)
                 .key(key)
                 .build());
+        s3ObjectIndex.remove(key);
+        presignedUrlCache.invalidate(key);
     }
 
-    // Xóa cả folder (xóa tất cả object có prefix)
-    public void deleteFolder(String folderKey) {
-        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(folderKey)
-                .build();
-
-        ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
-        List<S3Object> objects = listResponse.contents();
+    // Xóa cả folder (xóa tất cả object có prefix) ở background, trả về tiến độ của job
+    public BulkDeleteProgress deleteFolder(String folderKey) {
+        return s3BulkDeleteService.startFolderDelete(folderKey);
+    }
 
-        if (!objects.isEmpty()) {
-            DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
-                    .bucket(bucketName)
-                    .delete(Delete.builder()
-                            .objects(
-                                    objects.stream().map(o -> ObjectIdentifier.builder().key(o.key()).build()).toList())
-                            .build())
-                    .build();
-            s3Client.deleteObjects(deleteRequest);
-        }
+    public BulkDeleteProgress getDeleteProgress(String jobId) {
+        return s3BulkDeleteService.getProgress(jobId);
     }
 
     public RecordUrlResponse getFilePresignedUrl(String key, Duration expireDuration) {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
-
-        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                .getObjectRequest(getObjectRequest)
-                .signatureDuration(expireDuration)
-                .build();
-
-        URL url = s3Presigner.presignGetObject(presignRequest).url();
-        return new RecordUrlResponse(url.toString());
+        return new RecordUrlResponse(presignedUrlCache.get(key, expireDuration));
     }
 
     // Pre-signed URL cho tất cả file trong folder
     public List<RecordUrlResponse> getFolderPresignedUrls(String folderKey, Duration expireDuration) {
-        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(folderKey)
-                .build();
+        List<String> keys;
+        if (s3ObjectIndex.isReady()) {
+            keys = s3ObjectIndex.keysWithPrefix(folderKey);
+        } else {
+            ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(folderKey)
+                    .build();
+            keys = s3Client.listObjectsV2Paginator(listRequest).contents().stream()
+                    .map(S3Object::key)
+                    .toList();
+        }
 
-        ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
+        List<String> fileKeys = keys.stream()
+                .filter(key -> !key.endsWith("/")) // bỏ folder giả
+                .toList();
 
-        return listResponse.contents().stream()
-                .filter(obj -> !obj.key().endsWith("/")) // bỏ folder giả
-                .map(obj -> getFilePresignedUrl(obj.key(), expireDuration)) // trả về RecordUrlResponse trực tiếp
+        return presignedUrlCache.getAll(fileKeys, expireDuration).values().stream()
+                .map(RecordUrlResponse::new) // trả về RecordUrlResponse trực tiếp
                 .collect(Collectors.toList());
     }
 
@@ -364,7 +436,9 @@ public class RecordService {
             }
         }
 
-        return recordings.map(this::convertToDTO);
+        Map<String, String> urlsByKey = presignedUrlCache.getAll(
+                recordings.stream().map(Recording::getS3Key).toList(), PLAYBACK_URL_DURATION);
+        return recordings.map(recording -> convertToDTO(recording, urlsByKey.get(recording.getS3Key())));
     }
 
     // Lấy chi tiết recording theo ID
@@ -375,7 +449,10 @@ public class RecordService {
                 .orElseThrow(() -> new ResourceNotFoundException("Recording not found with id: " + recordingId));
 
 
-        return convertToDTO(recording);
+        String url = recording.getS3Key() != null
+                ? presignedUrlCache.get(recording.getS3Key(), PLAYBACK_URL_DURATION)
+                : null;
+        return convertToDTO(recording, url);
 
     }
 
@@ -390,7 +467,7 @@ public class RecordService {
         return PageRequest.of(filterRequest.getPage(), filterRequest.getSize(), sort);
     }
 
-    private RecordingDTO convertToDTO(Recording recording) {
+    private RecordingDTO convertToDTO(Recording recording, String url) {
         List<RecordingSegmentDTO> segmentDTOs = recording.getSegments() != null ?
                 recording.getSegments().stream()
                         .map(this::convertSegmentToDTO)
@@ -403,7 +480,7 @@ public class RecordService {
                 .status(recording.getStatus().toString())
                 .duration(recording.getDuration())
                 .fileSize(recording.getFileSize())
-                .url(recording.getS3Url())
+                .url(url)
                 .startedAt(recording.getStartedAt())
                 .stoppedAt(recording.getStoppedAt())
                 .segments(segmentDTOs)
@@ -421,19 +498,22 @@ public class RecordService {
                 .build();
     }
 
+    @Transactional
     public void rating(String key, String rating, String feedback) {
         Optional<Recording> recordings = recordingRepository.findBySessionId(key);
         if (recordings.isPresent()) {
             Recording recording = recordings.get();
+            Integer previousRating = recording.getRating();
             recording.setRating(Integer.parseInt(rating));
             recording.setFeedback(feedback);
             recordingRepository.save(recording);
+            callStatRollupService.recordRating(recording.getStartedAt(), previousRating, Integer.parseInt(rating));
             boolean isSuccessful = rating != null && Integer.parseInt(rating) < 3 ? false : true;
             if(recording.getDuration() != null) {
-                userMetricsService.updateCallCompleted(recording.getAgentId(), recording.getDuration(), isSuccessful);
+                metricsEventService.recordCallCompleted(recording.getAgentId(), recording.getDuration(), isSuccessful);
             }
             if (recording.getAgentId() != null) {
-                userMetricsService.updateRating(recording.getAgentId(), Integer.parseInt(rating));
+                metricsEventService.recordRating(recording.getAgentId(), Integer.parseInt(rating));
             }
             return; // Thêm return để tránh throw exception
         }
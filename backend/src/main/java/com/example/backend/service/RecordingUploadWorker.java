@@ -0,0 +1,285 @@
+package com.example.backend.service;
+
+import com.example.backend.enums.RecordingStatus;
+import com.example.backend.enums.UploadJobStatus;
+import com.example.backend.model.Recording;
+import com.example.backend.model.RecordingUploadJob;
+import com.example.backend.repository.RecordingRepository;
+import com.example.backend.repository.RecordingUploadJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker upload recording lên S3 ở background.
+ * Job được lưu trong bảng recording_upload_jobs nên không mất khi server
+ * restart; job lỗi được retry với backoff tăng dần, số upload chạy cùng lúc bị
+ * giới hạn bởi app.recording.upload-concurrency.
+ * Job đang chạy giữ một lease được gia hạn định kỳ; chỉ job có lease hết hạn
+ * (node chạy nó đã dừng) mới bị đưa lại về PENDING, nên nhiều node dùng chung
+ * bảng không chạy lại job của nhau.
+ */
+@Component
+public class RecordingUploadWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingUploadWorker.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    // Quét job đến hạn retry (job mới được kick ngay khi enqueue)
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(2);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(2);
+    private static final Duration LEASE_RENEW_INTERVAL = Duration.ofSeconds(30);
+
+    @Autowired
+    private RecordingUploadJobRepository uploadJobRepository;
+
+    @Autowired
+    private RecordingRepository recordingRepository;
+
+    @Autowired
+    private RecordService recordService;
+
+    @Autowired
+    private WebSocketBroadcastService webSocketBroadcastService;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private final ExecutorService uploadExecutor;
+    private final Semaphore permits;
+    private final AtomicBoolean pollRequested = new AtomicBoolean(false);
+
+    public RecordingUploadWorker(@Value("${app.recording.upload-concurrency:2}") int concurrency) {
+        int workers = Math.max(1, concurrency);
+        this.permits = new Semaphore(workers);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "recording-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::requeueExpiredLeases, LEASE_RENEW_INTERVAL);
+        taskScheduler.scheduleWithFixedDelay(this::requestPoll, POLL_INTERVAL);
+    }
+
+    /**
+     * Job RUNNING có lease hết hạn (node chạy nó đã dừng) được chạy lại từ đầu
+     */
+    private void requeueExpiredLeases() {
+        try {
+            int requeued = uploadJobRepository.requeueExpiredLeases(LocalDateTime.now());
+            if (requeued > 0) {
+                logger.info("Requeued {} interrupted recording upload jobs", requeued);
+                requestPoll();
+            }
+        } catch (Exception e) {
+            logger.error("Error requeueing interrupted recording upload jobs", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
+    /**
+     * Tạo job upload cho recording vừa dừng và kick worker
+     */
+    public RecordingUploadJob enqueue(String recordingId, String sessionId, String recordingUrl,
+            Double duration, Long fileSize) {
+        LocalDateTime now = LocalDateTime.now();
+        RecordingUploadJob job = uploadJobRepository.findByRecordingId(recordingId)
+                .orElseGet(() -> RecordingUploadJob.builder()
+                        .recordingId(recordingId)
+                        .attempts(0)
+                        .build());
+
+        if (job.getStatus() == UploadJobStatus.RUNNING || job.getStatus() == UploadJobStatus.SUCCEEDED) {
+            return job;
+        }
+
+        job.setSessionId(sessionId);
+        job.setRecordingUrl(recordingUrl);
+        if (job.getS3Key() == null) {
+            job.setS3Key(recordService.buildRecordingS3Key(recordingId, sessionId));
+        }
+        job.setDuration(duration);
+        job.setFileSize(fileSize);
+        job.setStatus(UploadJobStatus.PENDING);
+        job.setAttempts(0);
+        job.setNextAttemptAt(now);
+        job.setLastError(null);
+        job.setUpdatedAt(now);
+        RecordingUploadJob saved = uploadJobRepository.save(job);
+
+        requestPoll();
+        return saved;
+    }
+
+    /**
+     * Gộp các yêu cầu quét: chỉ một lần poll được xếp hàng tại một thời điểm
+     */
+    private void requestPoll() {
+        if (pollRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::poll, Instant.now());
+        }
+    }
+
+    private void poll() {
+        pollRequested.set(false);
+        try {
+            int available = permits.availablePermits();
+            if (available == 0) {
+                return;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<RecordingUploadJob> dueJobs = uploadJobRepository.findDueJobs(
+                    UploadJobStatus.PENDING, now, PageRequest.of(0, available));
+
+            for (RecordingUploadJob job : dueJobs) {
+                if (!permits.tryAcquire()) {
+                    break;
+                }
+                // Nhận job bằng UPDATE có điều kiện, tránh chạy trùng
+                LocalDateTime leaseExpiresAt = now.plus(LEASE_DURATION);
+                if (uploadJobRepository.claim(job.getId(), now, leaseExpiresAt) == 0) {
+                    permits.release();
+                    continue;
+                }
+                job.setStatus(UploadJobStatus.RUNNING);
+                job.setAttempts(job.getAttempts() + 1);
+                job.setUpdatedAt(now);
+                job.setLeaseExpiresAt(leaseExpiresAt);
+
+                uploadExecutor.execute(() -> {
+                    try {
+                        runJob(job);
+                    } finally {
+                        permits.release();
+                        requestPoll();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.error("Error polling recording upload jobs", e);
+        }
+    }
+
+    private void runJob(RecordingUploadJob job) {
+        ScheduledFuture<?> heartbeat = taskScheduler.scheduleAtFixedRate(() -> renewLease(job),
+                Instant.now().plus(LEASE_RENEW_INTERVAL), LEASE_RENEW_INTERVAL);
+        try {
+            if (job.getS3Key() == null) {
+                // Job tạo trước khi có cột s3_key
+                job.setS3Key(recordService.buildRecordingS3Key(job.getRecordingId(), job.getSessionId()));
+            }
+            recordService.uploadRecordingFile(job.getRecordingId(), job.getSessionId(), job.getRecordingUrl(),
+                    job.getS3Key(), job.getDuration(), job.getFileSize());
+
+            job.setStatus(UploadJobStatus.SUCCEEDED);
+            job.setLeaseExpiresAt(null);
+            job.setLastError(null);
+            job.setUpdatedAt(LocalDateTime.now());
+            uploadJobRepository.save(job);
+
+            logger.info("Uploaded recording {} after {} attempt(s)", job.getRecordingId(), job.getAttempts());
+            notifyStatus(job.getRecordingId(), RecordingStatus.UPLOADED);
+
+        } catch (Exception e) {
+            handleFailure(job, e);
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void renewLease(RecordingUploadJob job) {
+        try {
+            uploadJobRepository.renewLease(job.getId(), LocalDateTime.now().plus(LEASE_DURATION));
+        } catch (Exception e) {
+            logger.warn("Error renewing lease of recording upload job {}", job.getRecordingId(), e);
+        }
+    }
+
+    private void handleFailure(RecordingUploadJob job, Exception e) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setLastError(truncate(e.getMessage()));
+        job.setUpdatedAt(now);
+        job.setLeaseExpiresAt(null);
+
+        if (job.getAttempts() >= MAX_ATTEMPTS) {
+            job.setStatus(UploadJobStatus.FAILED);
+            uploadJobRepository.save(job);
+
+            logger.error("Recording {} upload failed after {} attempts", job.getRecordingId(), job.getAttempts(), e);
+            try {
+                recordService.updateRecordingStatus(job.getRecordingId(), RecordingStatus.FAILED);
+            } catch (Exception ex) {
+                logger.error("Error marking recording {} as FAILED", job.getRecordingId(), ex);
+            }
+            notifyStatus(job.getRecordingId(), RecordingStatus.FAILED);
+            return;
+        }
+
+        Duration backoff = backoff(job.getAttempts());
+        job.setStatus(UploadJobStatus.PENDING);
+        job.setNextAttemptAt(now.plus(backoff));
+        uploadJobRepository.save(job);
+
+        logger.warn("Recording {} upload attempt {} failed, retrying in {}s: {}",
+                job.getRecordingId(), job.getAttempts(), backoff.toSeconds(), e.getMessage());
+    }
+
+    // 5s, 10s, 20s, ... tối đa 10 phút
+    private static Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 16);
+        Duration delay = BASE_BACKOFF.multipliedBy(1L << exponent);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private void notifyStatus(String recordingId, RecordingStatus status) {
+        try {
+            recordingRepository.findByRecordingId(recordingId)
+                    .ifPresent((Recording recording) ->
+                            webSocketBroadcastService.notifyRecordingUploadStatus(recording, status));
+        } catch (Exception e) {
+            logger.error("Error notifying upload status for recording {}", recordingId, e);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.BulkDeleteProgress;
+import com.example.backend.exception.BusinessException;
+import com.example.backend.exception.ResourceNotFoundException;
+import com.example.backend.repository.RecordingSegmentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Xóa toàn bộ object dưới một prefix S3 ở background.
+ * Duyệt hết các trang listObjectsV2, mỗi trang (tối đa 1000 key) là một lô
+ * DeleteObjects; các lô chạy song song, giới hạn bởi app.s3.delete-concurrency.
+ * Sau mỗi lô, các dòng recordings/recording_segments trỏ tới key đã xóa được
+ * xóa bằng hai câu DELETE; phần đóng góp của các recording đó vào
+ * call_stat_rollups được trừ đi trong cùng transaction.
+ */
+@Component
+public class S3BulkDeleteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BulkDeleteService.class);
+
+    // Giới hạn của S3 cho một request DeleteObjects
+    private static final int MAX_KEYS_PER_BATCH = 1000;
+
+    // Job đã xong được giữ lại để client còn xem được kết quả
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(1);
+
+    // Trả về các cột rollup cần để trừ delta của từng recording đã xóa
+    private static final String DELETE_RECORDINGS_SQL =
+            "DELETE FROM recordings WHERE s3_key = ANY(?) RETURNING started_at, duration, rating";
+
+    @Autowired
+    private S3Client s3Client;
+
+    @Autowired
+    private S3ObjectIndex s3ObjectIndex;
+
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CallStatRollupService callStatRollupService;
+
+    @Autowired
+    private RecordingSegmentRepository recordingSegmentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.s3.bucket:openvidurecord}")
+    private String bucketName;
+
+    private final int concurrency;
+    private final ExecutorService coordinatorExecutor;
+    private final ExecutorService deleteExecutor;
+
+    private final Map<String, DeleteJob> jobs = new ConcurrentHashMap<>();
+
+    public S3BulkDeleteService(@Value("${app.s3.delete-concurrency:4}") int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+
+        // Các job xóa chạy lần lượt, mỗi job tự song song hóa các lô
+        this.coordinatorExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "s3-delete-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.deleteExecutor = Executors.newFixedThreadPool(this.concurrency, r -> {
+            Thread thread = new Thread(r, "s3-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinatorExecutor.shutdown();
+        deleteExecutor.shutdown();
+    }
+
+    /**
+     * Tạo job xóa folder và trả về ngay, tiến độ xem qua getProgress
+     */
+    public BulkDeleteProgress startFolderDelete(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            throw BusinessException.invalidOperation("cannot delete the whole bucket");
+        }
+        evictFinishedJobs();
+
+        DeleteJob job = new DeleteJob(UUID.randomUUID().toString(), prefix);
+        jobs.put(job.id, job);
+        coordinatorExecutor.execute(() -> run(job));
+        return job.snapshot();
+    }
+
+    public BulkDeleteProgress getProgress(String jobId) {
+        DeleteJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Delete job not found: " + jobId);
+        }
+        return job.snapshot();
+    }
+
+    private void run(DeleteJob job) {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+
+        try {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(job.prefix)
+                    .maxKeys(MAX_KEYS_PER_BATCH)
+                    .build();
+
+            for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+                List<String> keys = page.contents().stream().map(S3Object::key).toList();
+                if (keys.isEmpty()) {
+                    continue;
+                }
+                job.listedKeys.addAndGet(keys.size());
+
+                // Chờ khi đã đủ số lô đang chạy, tránh liệt kê vượt quá tốc độ xóa
+                inFlight.acquire();
+                batches.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        deleteBatch(job, keys);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, deleteExecutor));
+            }
+
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+            job.status = job.error == null ? "COMPLETED" : "FAILED";
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error = "Interrupted";
+            job.status = "FAILED";
+        } catch (Exception e) {
+            logger.error("Bulk delete of prefix {} failed", job.prefix, e);
+            job.error = e.getMessage();
+            job.status = "FAILED";
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            logger.info("Bulk delete {} of prefix {} {}: {} deleted, {} failed, {} recordings removed",
+                    job.id, job.prefix, job.status, job.deletedKeys.get(), job.failedKeys.get(),
+                    job.deletedRecordings.get());
+        }
+    }
+
+    private void deleteBatch(DeleteJob job, List<String> keys) {
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder()
+                            .objects(keys.stream().map(k -> ObjectIdentifier.builder().key(k).build()).toList())
+                            .quiet(true) // chỉ trả về key lỗi
+                            .build())
+                    .build());
+
+            Set<String> failed = response.errors().stream().map(S3Error::key).collect(Collectors.toSet());
+            List<String> deleted = failed.isEmpty() ? keys
+                    : keys.stream().filter(k -> !failed.contains(k)).toList();
+
+            deleted.forEach(s3ObjectIndex::remove);
+            presignedUrlCache.invalidateAll(deleted);
+            job.deletedKeys.addAndGet(deleted.size());
+            if (!failed.isEmpty()) {
+                job.failedKeys.addAndGet(failed.size());
+                job.error = response.errors().get(0).message();
+            }
+
+            if (!deleted.isEmpty()) {
+                Integer removed = transactionTemplate.execute(status -> {
+                    recordingSegmentRepository.deleteByRecordingS3KeyIn(deleted);
+                    return deleteRecordings(deleted);
+                });
+                job.deletedRecordings.addAndGet(removed == null ? 0 : removed);
+            }
+        } catch (Exception e) {
+            logger.error("Delete batch of {} keys under {} failed", keys.size(), job.prefix, e);
+            job.failedKeys.addAndGet(keys.size());
+            job.error = e.getMessage();
+        }
+    }
+
+    /**
+     * Xóa recordings theo lô key và trừ từng dòng đã xóa khỏi call_stat_rollups
+     *
+     * @return số recording đã xóa
+     */
+    private int deleteRecordings(List<String> keys) {
+        List<RemovedRecording> removed = jdbcTemplate.query(DELETE_RECORDINGS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", keys.toArray())),
+                (rs, rowNum) -> new RemovedRecording(
+                        rs.getObject("started_at", LocalDateTime.class),
+                        rs.getObject("duration", Double.class),
+                        rs.getObject("rating", Integer.class)));
+        for (RemovedRecording recording : removed) {
+            callStatRollupService.recordCallRemoved(recording.startedAt(), recording.duration(), recording.rating());
+        }
+        return removed.size();
+    }
+
+    private record RemovedRecording(LocalDateTime startedAt, Double duration, Integer rating) {
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(FINISHED_JOB_RETENTION);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static final class DeleteJob {
+        private final String id;
+        private final String prefix;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong listedKeys = new AtomicLong();
+        private final AtomicLong deletedKeys = new AtomicLong();
+        private final AtomicLong failedKeys = new AtomicLong();
+        private final AtomicLong deletedRecordings = new AtomicLong();
+        private volatile String status = "RUNNING";
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private DeleteJob(String id, String prefix) {
+            this.id = id;
+            this.prefix = prefix;
+        }
+
+        private BulkDeleteProgress snapshot() {
+            return BulkDeleteProgress.builder()
+                    .jobId(id)
+                    .prefix(prefix)
+                    .status(status)
+                    .listedKeys(listedKeys.get())
+                    .deletedKeys(deletedKeys.get())
+                    .failedKeys(failedKeys.get())
+                    .deletedRecordings(deletedRecordings.get())
+                    .error(error)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
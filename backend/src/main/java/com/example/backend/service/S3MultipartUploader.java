@@ -0,0 +1,242 @@
+package com.example.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload stream lên S3 bằng multipart upload: đọc stream thành các part cố
+ * định, upload song song nhiều part, retry từng part khi lỗi.
+ * Số buffer tồn tại cùng lúc bị giới hạn bởi upload-concurrency nên bộ nhớ
+ * dùng tối đa khoảng part-size * upload-concurrency.
+ */
+@Component
+public class S3MultipartUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+
+    // S3 yêu cầu mỗi part (trừ part cuối) tối thiểu 5MB
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    @Autowired
+    private S3Client s3Client;
+
+    private final int partSize;
+    private final int concurrency;
+    private final int maxPartRetries;
+    private final ExecutorService uploadExecutor;
+
+    public S3MultipartUploader(
+            @Value("${app.s3.part-size-mb:16}") int partSizeMb,
+            @Value("${app.s3.upload-concurrency:4}") int concurrency,
+            @Value("${app.s3.max-part-retries:3}") int maxPartRetries) {
+        this.partSize = Math.max(MIN_PART_SIZE, partSizeMb * 1024 * 1024);
+        this.concurrency = Math.max(1, concurrency);
+        this.maxPartRetries = Math.max(0, maxPartRetries);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(this.concurrency, r -> {
+            Thread thread = new Thread(r, "s3-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
+    /**
+     * Upload toàn bộ stream lên S3
+     *
+     * @return số byte đã upload
+     */
+    public long upload(InputStream inputStream, String bucket, String key, String contentType,
+            Map<String, String> metadata) throws IOException {
+        byte[] firstPart = new byte[partSize];
+        int firstLength = inputStream.readNBytes(firstPart, 0, partSize);
+
+        // File nhỏ hơn một part thì upload một lần
+        if (firstLength < partSize) {
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .metadata(metadata)
+                    .build(), partBody(firstPart, firstLength));
+            return firstLength;
+        }
+
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .metadata(metadata)
+                .build()).uploadId();
+
+        Semaphore buffers = new Semaphore(concurrency);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        long totalBytes = 0;
+
+        try {
+            byte[] buffer = firstPart;
+            int length = firstLength;
+            int partNumber = 1;
+            buffers.acquire();
+
+            while (length > 0) {
+                totalBytes += length;
+                parts.add(submitPart(bucket, key, uploadId, partNumber, buffer, length, buffers));
+
+                if (length < partSize) {
+                    break; // Part cuối
+                }
+
+                // Chờ có buffer trống trước khi đọc part kế tiếp
+                buffers.acquire();
+                failFast(parts);
+                buffer = new byte[partSize];
+                length = inputStream.readNBytes(buffer, 0, partSize);
+                partNumber++;
+                if (length == 0) {
+                    buffers.release();
+                }
+            }
+
+            List<CompletedPart> completedParts = CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> parts.stream()
+                            .map(CompletableFuture::join)
+                            .sorted(Comparator.comparingInt(CompletedPart::partNumber))
+                            .toList())
+                    .join();
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+
+            logger.info("Uploaded {} bytes to s3://{}/{} in {} parts", totalBytes, bucket, key, completedParts.size());
+            return totalBytes;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, parts);
+            throw new IOException("Multipart upload interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            abort(bucket, key, uploadId, parts);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Multipart upload failed for " + key, cause);
+        }
+    }
+
+    private CompletableFuture<CompletedPart> submitPart(String bucket, String key, String uploadId, int partNumber,
+            byte[] buffer, int length, Semaphore buffers) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploadPartWithRetry(bucket, key, uploadId, partNumber, buffer, length);
+            } finally {
+                buffers.release();
+            }
+        }, uploadExecutor);
+    }
+
+    private CompletedPart uploadPartWithRetry(String bucket, String key, String uploadId, int partNumber,
+            byte[] buffer, int length) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                String eTag = s3Client.uploadPart(request, partBody(buffer, length)).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (RuntimeException e) {
+                if (attempt >= maxPartRetries) {
+                    throw e;
+                }
+                long backoffMillis = 200L << attempt;
+                logger.warn("Upload part {} of {} failed (attempt {}), retrying in {}ms: {}",
+                        partNumber, key, attempt + 1, backoffMillis, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Body đọc trực tiếp từ buffer (không copy), tạo stream mới cho mỗi lần retry
+     */
+    private RequestBody partBody(byte[] buffer, int length) {
+        return RequestBody.fromContentProvider(
+                () -> new ByteArrayInputStream(buffer, 0, length), length, "application/octet-stream");
+    }
+
+    /**
+     * Dừng đọc stream sớm nếu đã có part thất bại hẳn
+     */
+    private void failFast(List<CompletableFuture<CompletedPart>> parts) {
+        for (CompletableFuture<CompletedPart> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                part.join();
+            }
+        }
+    }
+
+    private void abort(String bucket, String key, String uploadId, List<CompletableFuture<CompletedPart>> parts) {
+        // Đợi các part đang chạy kết thúc để abort không bị part mới ghi đè
+        for (CompletableFuture<CompletedPart> part : parts) {
+            try {
+                part.join();
+            } catch (Exception ignored) {
+                // Lỗi đã được xử lý ở nơi gọi
+            }
+        }
+
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception e) {
+            logger.error("Failed to abort multipart upload {} for {}", uploadId, key, e);
+        }
+    }
+}
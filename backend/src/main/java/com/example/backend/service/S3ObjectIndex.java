@@ -0,0 +1,197 @@
+package com.example.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Index trong bộ nhớ của các object trong bucket recording, sắp xếp theo key.
+ * - Cập nhật ngay khi upload/xóa qua RecordService.
+ * - Đồng bộ lại toàn bộ bucket theo chu kỳ bằng listObjectsV2 có phân trang.
+ * Folder không được lưu riêng mà suy ra từ dấu "/" trong key, nên liệt kê một
+ * folder chỉ cần duyệt skip list và nhảy qua từng folder con.
+ */
+@Component
+public class S3ObjectIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ObjectIndex.class);
+
+    private static final String DELIMITER = "/";
+
+    // Ký tự liền sau '/' trong bảng mã, dùng để nhảy qua toàn bộ key của một folder con
+    private static final char AFTER_DELIMITER = '/' + 1;
+
+    @Autowired
+    private S3Client s3Client;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.s3.bucket:openvidurecord}")
+    private String bucketName;
+
+    @Value("${app.s3.index-reconcile-minutes:10}")
+    private long reconcileMinutes;
+
+    private final ConcurrentSkipListMap<String, IndexedObject> objects = new ConcurrentSkipListMap<>();
+
+    private final AtomicBoolean reconciling = new AtomicBoolean(false);
+
+    // Chỉ phục vụ từ index sau khi đồng bộ xong lần đầu
+    private volatile boolean ready = false;
+
+    private volatile Instant lastReconciledAt;
+
+    private record IndexedObject(long size, Instant lastModified, long indexedAt) {
+    }
+
+    /**
+     * Một phần tử con trực tiếp của folder: file hoặc folder con (key kết thúc bằng "/")
+     */
+    public record Entry(String key, boolean folder, long size, Instant lastModified) {
+    }
+
+    /**
+     * Một trang kết quả, nextCursor = null nếu đã hết
+     */
+    public record Listing(List<Entry> entries, String nextCursor) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::reconcile, Duration.ofMinutes(reconcileMinutes));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Instant getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    public int size() {
+        return objects.size();
+    }
+
+    public void put(String key, long size, Instant lastModified) {
+        objects.put(key, new IndexedObject(size, lastModified, System.currentTimeMillis()));
+    }
+
+    public void remove(String key) {
+        objects.remove(key);
+    }
+
+    /**
+     * Xóa mọi key bắt đầu bằng prefix
+     */
+    public void removePrefix(String prefix) {
+        objects.subMap(prefix, true, prefix + Character.MAX_VALUE, false).clear();
+    }
+
+    /**
+     * Tất cả key nằm dưới prefix (kể cả trong folder con), theo thứ tự key
+     */
+    public List<String> keysWithPrefix(String prefix) {
+        return new ArrayList<>(objects.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+    }
+
+    /**
+     * Liệt kê con trực tiếp của folder theo thứ tự key, phân trang bằng key
+     *
+     * @param prefix folder cần liệt kê ("" = root, ngược lại kết thúc bằng "/")
+     * @param cursor key cuối cùng của trang trước, null cho trang đầu
+     */
+    public Listing listChildren(String prefix, String cursor, int limit) {
+        List<Entry> entries = new ArrayList<>();
+        String from = cursor == null || cursor.isEmpty() ? prefix : skipPast(cursor);
+        boolean inclusive = cursor == null || cursor.isEmpty() || cursor.endsWith(DELIMITER);
+
+        Map.Entry<String, IndexedObject> current = inclusive ? objects.ceilingEntry(from) : objects.higherEntry(from);
+        while (current != null && current.getKey().startsWith(prefix)) {
+            if (entries.size() == limit) {
+                return new Listing(entries, entries.get(entries.size() - 1).key());
+            }
+
+            String key = current.getKey();
+            String rest = key.substring(prefix.length());
+            int slash = rest.indexOf(DELIMITER);
+
+            if (rest.isEmpty()) {
+                // Object đại diện cho chính folder (key = prefix)
+                current = objects.higherEntry(key);
+            } else if (slash >= 0) {
+                String folderKey = prefix + rest.substring(0, slash + 1);
+                entries.add(new Entry(folderKey, true, 0L, null));
+                current = objects.ceilingEntry(skipPast(folderKey));
+            } else {
+                IndexedObject object = current.getValue();
+                entries.add(new Entry(key, false, object.size(), object.lastModified()));
+                current = objects.higherEntry(key);
+            }
+        }
+        return new Listing(entries, null);
+    }
+
+    /**
+     * Đồng bộ lại toàn bộ bucket. Key không còn trên S3 bị xóa khỏi index, trừ
+     * các key được thêm trong lúc đang đồng bộ.
+     */
+    public void reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long startedAt = System.currentTimeMillis();
+            long listed = 0;
+
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .build();
+            for (S3Object object : s3Client.listObjectsV2Paginator(request).contents()) {
+                put(object.key(), object.size(), object.lastModified());
+                listed++;
+            }
+
+            int removed = 0;
+            for (Map.Entry<String, IndexedObject> entry : objects.entrySet()) {
+                if (entry.getValue().indexedAt() < startedAt && objects.remove(entry.getKey(), entry.getValue())) {
+                    removed++;
+                }
+            }
+
+            ready = true;
+            lastReconciledAt = Instant.now();
+            logger.info("S3 index reconciled: {} objects listed, {} stale removed in {} ms",
+                    listed, removed, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            logger.error("Error reconciling S3 object index", e);
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    // Key nhỏ nhất lớn hơn mọi key nằm trong folder (hoặc bằng chính key file)
+    private static String skipPast(String key) {
+        if (key.endsWith(DELIMITER)) {
+            return key.substring(0, key.length() - 1) + AFTER_DELIMITER;
+        }
+        return key;
+    }
+}
@@ -2,36 +2,50 @@ package com.example.backend.service;
 
 import com.example.backend.dto.response.S3TreeResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 @Service
 public class S3TreeService {
 
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int MAX_PAGE_SIZE = 5000;
+
     @Autowired
     private S3Client s3Client;
 
-    private final String bucketName = "openvidurecord";
+    @Autowired
+    private S3ObjectIndex s3ObjectIndex;
+
+    @Value("${app.s3.bucket:openvidurecord}")
+    private String bucketName;
 
     public S3TreeResponse getSubTree(String folderKey) {
+        return getSubTree(folderKey, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Liệt kê con trực tiếp của folder, phân trang bằng key (cursor = key cuối của trang trước)
+     */
+    public S3TreeResponse getSubTree(String folderKey, String cursor, int limit) {
         // root nếu folderKey rỗng
         boolean isRoot = folderKey == null || folderKey.isEmpty();
 
         // đảm bảo folderKey kết thúc bằng "/" nếu không phải root
         String prefix = isRoot ? "" : (folderKey.endsWith("/") ? folderKey : folderKey + "/");
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
 
-        ListObjectsV2Response res = s3Client.listObjectsV2(
-                ListObjectsV2Request.builder()
-                        .bucket(bucketName)
-                        .prefix(prefix)
-                        .delimiter("/") // chỉ folder con trực tiếp
-                        .build()
-        );
+        // Index chưa đồng bộ xong lần đầu thì đọc trực tiếp từ S3
+        S3ObjectIndex.Listing listing = s3ObjectIndex.isReady()
+                ? s3ObjectIndex.listChildren(prefix, cursor, pageSize)
+                : listFromS3(prefix, cursor, pageSize);
 
         S3TreeResponse folderNode = new S3TreeResponse();
         folderNode.setName(isRoot ? "root" : folderKey.contains("/") ? folderKey.substring(folderKey.lastIndexOf("/") + 1) : folderKey);
@@ -40,40 +54,56 @@ public class S3TreeService {
 //        folderNode.setType("folder"); // thêm type
         folderNode.setSize(0L); // folder không có size
         folderNode.setLastModified(null); // folder không có thời gian
+        folderNode.setNextCursor(listing.nextCursor());
 
-        // Thêm folder con
-        if (res.commonPrefixes() != null) {
-            res.commonPrefixes().forEach(p -> {
-                S3TreeResponse subFolder = new S3TreeResponse();
-                String folderName = p.prefix().substring(prefix.length(), p.prefix().length() - 1); // tên folder trực tiếp
-                subFolder.setName(folderName);
-                subFolder.setKey(p.prefix());
-                subFolder.setFolder(true);
-//                subFolder.setType("folder");
-                subFolder.setSize(0L);
-                subFolder.setLastModified(null);
-                folderNode.getChildren().add(subFolder);
-            });
+        for (S3ObjectIndex.Entry entry : listing.entries()) {
+            S3TreeResponse child = new S3TreeResponse();
+            String key = entry.key();
+            if (entry.folder()) {
+                child.setName(key.substring(prefix.length(), key.length() - 1)); // tên folder trực tiếp
+            } else {
+                child.setName(key.substring(key.lastIndexOf("/") + 1));
+            }
+            child.setKey(key);
+            child.setFolder(entry.folder());
+            child.setSize(entry.size());
+            child.setLastModified(entry.lastModified());
+            folderNode.getChildren().add(child);
         }
 
-        // Thêm file trong folder hiện tại (loại bỏ file trong subfolder)
-        if (res.contents() != null) {
-            res.contents().forEach(obj -> {
-                String key = obj.key();
-                if (!key.equals(prefix) && !key.substring(prefix.length()).contains("/")) {
-                    S3TreeResponse fileNode = new S3TreeResponse();
-                    fileNode.setName(key.substring(key.lastIndexOf("/") + 1));
-                    fileNode.setKey(key);
-                    fileNode.setFolder(false);
-//                    fileNode.setType("file"); // thêm type
-                    fileNode.setSize(obj.size());
-                    fileNode.setLastModified(obj.lastModified());
-                    folderNode.getChildren().add(fileNode);
-                }
-            });
+        return folderNode;
+    }
+
+    /**
+     * Đọc đủ mọi trang listObjectsV2 của folder rồi cắt theo cursor, dùng khi index chưa sẵn sàng
+     */
+    private S3ObjectIndex.Listing listFromS3(String prefix, String cursor, int limit) {
+        List<S3ObjectIndex.Entry> children = new ArrayList<>();
+
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .delimiter("/") // chỉ folder con trực tiếp
+                .build();
+        for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+            page.commonPrefixes().forEach(p -> children.add(new S3ObjectIndex.Entry(p.prefix(), true, 0L, null)));
+            page.contents().stream()
+                    .filter(obj -> !obj.key().equals(prefix))
+                    .forEach(obj -> children.add(
+                            new S3ObjectIndex.Entry(obj.key(), false, obj.size(), obj.lastModified())));
         }
+        children.sort(Comparator.comparing(S3ObjectIndex.Entry::key));
 
-        return folderNode;
+        int start = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            while (start < children.size() && children.get(start).key().compareTo(cursor) <= 0) {
+                start++;
+            }
+        }
+        int end = Math.min(start + limit, children.size());
+        List<S3ObjectIndex.Entry> page = new ArrayList<>(children.subList(start, end));
+        String nextCursor = end < children.size() ? page.get(page.size() - 1).key() : null;
+        return new S3ObjectIndex.Listing(page, nextCursor);
     }
 
 }
@@ -0,0 +1,110 @@
+package com.example.backend.service;
+
+import com.example.backend.enums.MatchOutcome;
+import com.example.backend.model.SupportRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dispatcher ghép agent theo sự kiện: chỉ chạy matching khi có request mới,
+ * agent online hoặc agent được trả lại chỗ. Không có thread nào phải sleep
+ * trong lúc request chờ.
+ */
+@Component
+public class SupportMatchingDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupportMatchingDispatcher.class);
+
+    @Autowired
+    private SupportRequestService supportRequestService;
+
+    @Autowired
+    private AgentAvailabilityIndex agentAvailabilityIndex;
+
+    @Autowired
+    private WaitingRequestQueue waitingRequestQueue;
+
+    @Autowired
+    private WebSocketBroadcastService webSocketBroadcastService;
+
+    // Một thread duy nhất chạy matching, các tín hiệu đến dồn dập được gộp lại
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "matching-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+        agentAvailabilityIndex.addCapacityListener(this::signal);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Đưa request mới vào hàng đợi và kích hoạt matching
+     */
+    public void submit(SupportRequest request) {
+        Set<Long> excludedAgents = supportRequestService.getExcludedAgents(request.getUser().getId());
+        waitingRequestQueue.add(request, excludedAgents);
+
+        webSocketBroadcastService.notifyUserMatchingProgress(request, "Đang tìm kiếm agent...");
+        signal();
+    }
+
+    /**
+     * Báo có thay đổi (request mới, agent online, agent rảnh) để chạy lại matching
+     */
+    public void signal() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        // Reset trước khi duyệt để tín hiệu đến trong lúc duyệt sẽ tạo thêm một lượt
+        drainScheduled.set(false);
+
+        for (WaitingRequestQueue.Entry entry : waitingRequestQueue.entries()) {
+            if (!hasCandidate(entry)) {
+                continue;
+            }
+
+            try {
+                MatchOutcome outcome = supportRequestService.attemptMatching(entry.requestId());
+                if (outcome != MatchOutcome.WAITING) {
+                    waitingRequestQueue.remove(entry.requestId());
+                }
+            } catch (Exception e) {
+                logger.error("Error matching support request {}", entry.requestId(), e);
+            }
+        }
+    }
+
+    /**
+     * Kiểm tra nhanh trên index, chỉ xuống DB khi có khả năng ghép được
+     */
+    private boolean hasCandidate(WaitingRequestQueue.Entry entry) {
+        Long preferredAgentId = entry.preferredAgentId();
+        if (preferredAgentId != null) {
+            // Agent offline vẫn xử lý ngay để báo cho user
+            return !agentAvailabilityIndex.isOnline(preferredAgentId)
+                    || agentAvailabilityIndex.getLoad(preferredAgentId) < SupportRequestService.CHOOSE_AGENT_MAX_LOAD;
+        }
+        return agentAvailabilityIndex.hasCandidate(entry.excludedAgents(), SupportRequestService.QUICK_SUPPORT_MAX_LOAD);
+    }
+}
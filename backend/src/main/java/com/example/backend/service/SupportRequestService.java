@@ -1,6 +1,8 @@
 package com.example.backend.service;
 
 import com.example.backend.dto.response.SupportRequestDTO;
+import com.example.backend.enums.LatencyKind;
+import com.example.backend.enums.MatchOutcome;
 import com.example.backend.enums.ResponseStatus;
 import com.example.backend.enums.UserStatus;
 import com.example.backend.enums.SupportRequestStatus;
@@ -10,24 +12,25 @@ import com.example.backend.model.User;
 import com.example.backend.repository.SupportRequestRepository;
 import com.example.backend.repository.UserRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class SupportRequestService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SupportRequestService.class);
+
     @Autowired
     private SupportRequestRepository supportRequestRepository;
 
@@ -38,31 +41,35 @@ public class SupportRequestService {
     private WebSocketBroadcastService webSocketBroadcastService;
 
     @Autowired
-    private JwtService jwtService;
+    private SupportTimeoutSweeper supportTimeoutSweeper;
+
+    @Autowired
+    private MetricsEventService metricsEventService;
 
     @Autowired
-    private TaskScheduler taskScheduler;
+    private LatencyHistogramService latencyHistogramService;
 
     @Autowired
-    private UserMetricsService userMetricsService;
+    private AgentAvailabilityIndex agentAvailabilityIndex;
 
-    private final Map<Long, ScheduledFuture<?>> timeoutTasks = new ConcurrentHashMap<>();
+    @Autowired
+    private WaitingRequestQueue waitingRequestQueue;
+
+    // Số request MATCHED tối đa của một agent
+    public static final int QUICK_SUPPORT_MAX_LOAD = 3;
+    public static final int CHOOSE_AGENT_MAX_LOAD = 2;
 
     private final Map<Long, Set<Long>> matchingHashtagMap = new ConcurrentHashMap<>();
 
-    public ResponseEntity<?> getSupportRequest(Long requestId, String authHeader) {
+    public ResponseEntity<?> getSupportRequest(Long requestId) {
         try {
-            String token = jwtService.extractTokenFromHeader(authHeader);
-            if (token == null || jwtService.isTokenExpired(token)) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Invalid or expired token"));
-            }
-
             SupportRequest request = supportRequestRepository.findById(requestId)
                     .orElseThrow(() -> new RuntimeException("Support request not found"));
             SupportRequestDTO response = new SupportRequestDTO();
             response.setId(request.getId());
             response.setUserId(request.getUser().getId());
-            response.setAgentId(request.getAgent().getId());
+            // Request đang WAITING chưa có agent
+            response.setAgentId(request.getAgent() != null ? request.getAgent().getId() : null);
             response.setStatus(request.getStatus());
             response.setCreatedAt(request.getCreatedAt() != null ? request.getCreatedAt().toString() : null);
             response.setMatchedAt(request.getMatchedAt() != null ? request.getMatchedAt().toString() : null);
@@ -97,118 +104,124 @@ public class SupportRequestService {
         SupportRequest savedRequest = supportRequestRepository.save(request);
 
         // Schedule timeout task
-        scheduleTimeoutTask(savedRequest);
+        supportTimeoutSweeper.scheduleTimeout(savedRequest);
 
         return savedRequest;
     }
 
     /**
-     * Xử lý matching bất đồng bộ
+     * Thử ghép một request đang WAITING với agent. Được gọi bởi
+     * SupportMatchingDispatcher mỗi khi có thể có agent phù hợp.
      */
-    @Async
-    public void processMatching(Long requestId) {
-        try {
-            // Delay nhỏ để simulate processing time
-            Thread.sleep(2000);
-
-            Optional<SupportRequest> requestOpt = supportRequestRepository.findById(requestId);
-            if (requestOpt.isEmpty() || !requestOpt.get().isWaiting()) {
-                return; // Request đã bị hủy hoặc đã matched
-            }
-
-            SupportRequest request = requestOpt.get();
-            webSocketBroadcastService.notifyUserMatchingProgress(request, "Đang tìm kiếm agent...");
-            if (request.isChooseAgent() && request.hasPreferredAgent()) {
-                // User chọn agent cụ thể
-                processChooseAgentMatching(request);
-            } else {
-                // Quick support - tự động tìm agent
-                processQuickSupportMatching(request);
-            }
+    public MatchOutcome attemptMatching(Long requestId) {
+        Optional<SupportRequest> requestOpt = supportRequestRepository.findById(requestId);
+        if (requestOpt.isEmpty() || !requestOpt.get().isWaiting()) {
+            return MatchOutcome.CLOSED; // Request đã bị hủy hoặc đã matched
+        }
 
-        } catch (Exception e) {
-            System.err.println("Error in matching process: " + e.getMessage());
-            e.printStackTrace();
+        SupportRequest request = requestOpt.get();
+        if (request.isChooseAgent() && request.hasPreferredAgent()) {
+            // User chọn agent cụ thể
+            return processChooseAgentMatching(request);
         }
+        // Quick support - tự động tìm agent
+        return processQuickSupportMatching(request);
     }
 
     /**
      * Xử lý matching cho trường hợp user chọn agent cụ thể
      */
-    private void processChooseAgentMatching(SupportRequest request) {
+    private MatchOutcome processChooseAgentMatching(SupportRequest request) {
         User preferredAgent = userRepository.findById(request.getPreferredAgentId()).orElse(null);
 
         if (preferredAgent == null) {
             // Agent không tồn tại
             handleMatchingTimeout(request, "Agent được chọn không tồn tại");
-            return;
+            return MatchOutcome.CLOSED;
         }
 
         // Kiểm tra agent có online không
-        if (preferredAgent.getStatus() != UserStatus.ONLINE) {
+        if (!agentAvailabilityIndex.isOnline(preferredAgent.getId())) {
             // Agent offline
             handleMatchingTimeout(request, "Agent được chọn hiện không online");
-            return;
+            return MatchOutcome.CLOSED;
         }
 
-        // Kiểm tra agent có quá tải không
-        long activeRequests = supportRequestRepository.countActiveRequestsByAgent(preferredAgent);
-        if (activeRequests >= 2) { // Max 3 requests đồng thời
-            handleMatchingTimeout(request, "Agent được chọn hiện đang bận");
-            return;
+        // Agent đang bận thì chờ đến khi agent được trả lại chỗ hoặc hết thời gian
+        if (!agentAvailabilityIndex.tryReserve(preferredAgent.getId(), CHOOSE_AGENT_MAX_LOAD)) {
+            return MatchOutcome.WAITING;
         }
 
         // Match thành công
-        matchWithAgent(request, preferredAgent);
+        return matchReserved(request, preferredAgent) ? MatchOutcome.MATCHED : MatchOutcome.CLOSED;
     }
 
     /**
      * Xử lý matching cho quick support
      */
-    private void processQuickSupportMatching(SupportRequest request) {
-        // Simulate tìm kiếm agent với multiple attempts
+    private MatchOutcome processQuickSupportMatching(SupportRequest request) {
         Set<Long> matchingHashtagList = matchingHashtagMap.get(request.getUser().getId());
-        for (int attempt = 1; attempt <= 3; attempt++) {
-            try {
-                // Gửi progress update
-                webSocketBroadcastService.notifyUserMatchingProgress(
-                        request,
-                        "Đang tìm agent... (Lần thử " + attempt + "/3)");
-
-                User bestAgent = findBestAvailableAgent(matchingHashtagList);
-
-                if (bestAgent != null) {
-                    matchWithAgent(request, bestAgent);
-                    return;
-                }
 
-                // Wait before next attempt
-                if (attempt < 3) {
-                    Thread.sleep(5000); // 5 giây giữa các lần thử
-                }
+        Long bestAgentId = agentAvailabilityIndex.reserveLeastLoaded(matchingHashtagList,
+                QUICK_SUPPORT_MAX_LOAD);
+        if (bestAgentId == null) {
+            // Request tiếp tục chờ trong hàng đợi cho đến khi timeout
+            return MatchOutcome.WAITING;
+        }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
-            }
+        Optional<User> bestAgent = userRepository.findById(bestAgentId);
+        if (bestAgent.isEmpty()) {
+            agentAvailabilityIndex.release(bestAgentId);
+            return MatchOutcome.WAITING;
         }
 
-        // Không tìm được agent sau 3 lần thử
-        handleMatchingTimeout(request, "Hiện tại không có agent nào khả dụng. Vui lòng thử lại sau.");
+        return matchReserved(request, bestAgent.get()) ? MatchOutcome.MATCHED : MatchOutcome.CLOSED;
     }
 
     /**
-     * Match request với agent
+     * Ghép request với agent đã được giữ chỗ trên index. Chỗ được trả lại nếu
+     * matchWithAgent lỗi, request không còn WAITING hoặc transaction không commit được.
      */
-    private void matchWithAgent(SupportRequest request, User agent) {
+    private boolean matchReserved(SupportRequest request, User agent) {
+        boolean matched;
+        try {
+            matched = matchWithAgent(request, agent);
+        } catch (RuntimeException e) {
+            agentAvailabilityIndex.release(agent.getId());
+            throw e;
+        }
+        if (!matched) {
+            agentAvailabilityIndex.release(agent.getId());
+            return false;
+        }
+        releaseOnRollback(agent.getId());
+        return true;
+    }
+
+    /**
+     * Match request với agent.
+     * Dùng UPDATE có điều kiện status = 'WAITING' thay vì save cả entity, để không
+     * ghi đè TIMEOUT/CANCELLED do sweeper hoặc user vừa cập nhật.
+     *
+     * @return false nếu request đã rời trạng thái WAITING
+     */
+    private boolean matchWithAgent(SupportRequest request, User agent) {
+        LocalDateTime matchedAt = LocalDateTime.now();
+        if (supportRequestRepository.markMatchedIfWaiting(request.getId(), agent, matchedAt) == 0) {
+            logger.debug("Request {} is no longer waiting, skip matching", request.getId());
+            return false;
+        }
+
         // Cancel timeout task
-        cancelTimeoutTask(request.getId());
+        supportTimeoutSweeper.cancelTimeout(request.getId());
+        waitingRequestQueue.remove(request.getId());
 
+        // Đồng bộ entity với dòng vừa cập nhật (dùng cho notification)
         request.setAgent(agent);
         request.setStatus(SupportRequestStatus.MATCHED);
-        request.setMatchedAt(LocalDateTime.now());
-
-        supportRequestRepository.save(request);
+        request.setMatchedAt(matchedAt);
+        latencyHistogramService.record(LatencyKind.MATCH, agent.getId(), request.getCreatedAt(),
+                request.getMatchedAt());
 
         // Notify user và agent qua WebSocket
         if (!request.isChooseAgent()) {
@@ -217,67 +230,31 @@ public class SupportRequestService {
         webSocketBroadcastService.notifyAgentNewRequest(request);
 
         System.out.println("Successfully matched request " + request.getId() + " with agent " + agent.getId());
+        return true;
     }
 
     private void handleMatchingTimeout(SupportRequest request, String reason) {
-        cancelTimeoutTask(request.getId());
+        supportTimeoutSweeper.cancelTimeout(request.getId());
+        waitingRequestQueue.remove(request.getId());
 
+        LocalDateTime timeoutAt = LocalDateTime.now();
+        if (supportRequestRepository.markTimeoutIfWaiting(request.getId(), timeoutAt) == 0) {
+            return; // Sweeper hoặc user đã đóng request
+        }
         request.setStatus(SupportRequestStatus.TIMEOUT);
-        request.setTimeoutAt(LocalDateTime.now());
-        supportRequestRepository.save(request);
+        request.setTimeoutAt(timeoutAt);
 
         webSocketBroadcastService.notifyUserMatchingTimeout(request, reason);
 
         System.out.println("Request " + request.getId() + " timed out: " + reason);
     }
 
-    private void handleRequestTimeout(Long requestId) {
-        Optional<SupportRequest> requestOpt = supportRequestRepository.findById(requestId);
-        if (requestOpt.isEmpty() || !requestOpt.get().isWaiting()) {
-            return;
-        }
-
-        SupportRequest request = requestOpt.get();
-        handleMatchingTimeout(request, "Yêu cầu chưa được phản hồi trong thời gian quy định");
-    }
-
-    /**
-     * Tìm agent tốt nhất cho quick support
-     */
-    private User findBestAvailableAgent(Set<Long> matchingHashtagList) {
-
-        Set<Long> hashtags = (matchingHashtagList != null) ? matchingHashtagList : Collections.emptySet();
-
-        // Lấy tất cả agents online
-        List<User> onlineAgents = getOnlineAgents();
-
-        if (onlineAgents.isEmpty()) {
-            return null;
-        }
-
-        // Tìm agent ít workload nhất
-        return onlineAgents.stream()
-                .filter(agent -> !hashtags.contains(agent.getId()))
-                .filter(agent -> {
-                    long activeRequests = supportRequestRepository.countActiveRequestsByAgent(agent);
-                    return activeRequests < 3; // Max 3 requests
-                })
-                .min((agent1, agent2) -> {
-                    long workload1 = supportRequestRepository.countActiveRequestsByAgent(agent1);
-                    long workload2 = supportRequestRepository.countActiveRequestsByAgent(agent2);
-                    return Long.compare(workload1, workload2);
-                })
-                .orElse(null);
-    }
-
     /**
      * Lấy danh sách agents online
      */
     public List<User> getOnlineAgents() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getStatus() == UserStatus.ONLINE)
-                .filter(user -> "AGENT".equalsIgnoreCase(user.getRole()))
-                .collect(Collectors.toList());
+        // Trạng thái trong DB được ghi theo batch nên có thể trễ, đọc từ index in-memory
+        return userRepository.findAllById(agentAvailabilityIndex.onlineAgentIds());
     }
 
     /**
@@ -295,10 +272,17 @@ public class SupportRequestService {
             throw new RuntimeException("Unauthorized to complete this request");
         }
 
-        request.setStatus(SupportRequestStatus.COMPLETED);
-        request.setCompletedAt(LocalDateTime.now());
+        // UPDATE có điều kiện: complete và respond chạy song song chỉ một bên
+        // chuyển được request khỏi MATCHED và trả chỗ cho agent
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (!request.isMatched()
+                || supportRequestRepository.markCompletedIfMatched(requestId, completedAt) == 0) {
+            throw new RuntimeException("Request is not in a state that can be completed");
+        }
+        releaseAfterCommit(request.getAgent().getId());
 
-        supportRequestRepository.save(request);
+        request.setStatus(SupportRequestStatus.COMPLETED);
+        request.setCompletedAt(completedAt);
 
         // Notify both parties
         webSocketBroadcastService.notifyRequestCompleted(request);
@@ -318,34 +302,40 @@ public class SupportRequestService {
             throw new RuntimeException("Agent is not assigned to this request");
         }
 
-        // Chỉ có thể respond nếu request đang ở trạng thái MATCHED
-        if (request.getStatus() != SupportRequestStatus.MATCHED) {
+        // Chỉ có thể respond nếu request đang ở trạng thái MATCHED; UPDATE có điều kiện
+        // để complete chạy song song không làm agent được trả chỗ hai lần
+        ResponseStatus response = isAccepted ? ResponseStatus.ACCEPT : ResponseStatus.REJECT;
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (supportRequestRepository.markRespondedIfMatched(requestId, agentId, response, completedAt) == 0) {
             throw new RuntimeException("Request is not in a state that can be responded to");
         }
 
+        // Request rời trạng thái MATCHED nên agent được trả lại một chỗ
+        releaseAfterCommit(agentId);
+
+        // Đồng bộ entity với dòng vừa cập nhật
+        request.setStatus(SupportRequestStatus.COMPLETED);
+        request.setResponse(response);
+        request.setCompletedAt(completedAt);
+
         if (isAccepted) {
             // Agent chấp nhận
-            request.setStatus(SupportRequestStatus.COMPLETED);
-            request.setResponse(ResponseStatus.ACCEPT);
-            request.setCompletedAt(LocalDateTime.now());
-
             matchingHashtagMap.remove(request.getUser().getId());
             // Notify user that agent accepted
             webSocketBroadcastService.notifyAgentAccepted(request);
 
-            userMetricsService.updateCallStarted(agentId, request.getCreatedAt(),
+            metricsEventService.recordCallAccepted(agentId, request.getCreatedAt(),
+                    request.getCompletedAt());
+            latencyHistogramService.record(LatencyKind.RESPONSE, agentId, request.getCreatedAt(),
                     request.getCompletedAt());
 
         } else {
             // Agent từ chối
-            request.setStatus(SupportRequestStatus.COMPLETED);
-            request.setResponse(ResponseStatus.REJECT);
-            request.setCompletedAt(LocalDateTime.now());
             if (request.getType().equals("quick_support")) {
                 Set<Long> matchingHashtagList = matchingHashtagMap.get(request.getUser().getId());
 
                 if (matchingHashtagList == null) {
-                    matchingHashtagList = new HashSet<>();
+                    matchingHashtagList = ConcurrentHashMap.newKeySet();
                 }
                 matchingHashtagList.add(agentId);
                 matchingHashtagMap.put(request.getUser().getId(), matchingHashtagList);
@@ -354,9 +344,11 @@ public class SupportRequestService {
             // Notify user that agent rejected
             webSocketBroadcastService.notifyAgentRejected(request);
 
-            userMetricsService.updateCallRejected(agentId,
+            metricsEventService.recordCallRejected(agentId,
                     request.getCreatedAt(),
                     request.getCompletedAt());
+            latencyHistogramService.record(LatencyKind.RESPONSE, agentId, request.getCreatedAt(),
+                    request.getCompletedAt());
 
             // // Broadcast to user
             // webSocketBroadcastService.broadcastSupportUpdate(
@@ -370,23 +362,54 @@ public class SupportRequestService {
             // "REQUEST_REJECTED",
             // "Bạn đã từ chối yêu cầu hỗ trợ từ user " + request.getUser().getFullName());
 
-            // TODO: Có thể trigger lại matching process để tìm agent khác
-            // processMatching(request.getId());
         }
 
-        return supportRequestRepository.save(request);
+        return request;
+    }
+
+    /**
+     * Trả chỗ của agent trên index sau khi transaction commit, để index không lệch
+     * với DB nếu transaction rollback
+     */
+    private void releaseAfterCommit(Long agentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            agentAvailabilityIndex.release(agentId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                agentAvailabilityIndex.release(agentId);
+            }
+        });
+    }
+
+    /**
+     * Chỗ đã giữ trên index được trả lại nếu transaction ghi match không commit
+     */
+    private void releaseOnRollback(Long agentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    agentAvailabilityIndex.release(agentId);
+                }
+            }
+        });
     }
 
     private long getOnlineAgentsCount() {
-        return userRepository.countByRoleAndStatusNot("AGENT", UserStatus.ONLINE);
+        return agentAvailabilityIndex.onlineCount();
     }
 
     // Helper methods để hỗ trợ frontend timer
     public int getEstimatedWaitTime(String type, Long agentId) {
         if ("choose_agent".equals(type)) {
             // Kiểm tra agent có online không
-            User agent = userRepository.findById(agentId).orElse(null);
-            if (agent != null && agent.getStatus() == UserStatus.ONLINE) {
+            if (agentId != null && agentAvailabilityIndex.isOnline(agentId)) {
                 return 30; // 30 giây nếu agent online
             }
             return 120; // 2 phút nếu agent offline
@@ -417,18 +440,20 @@ public class SupportRequestService {
             throw new RuntimeException("Unauthorized to cancel this request");
         }
 
-        // Chỉ có thể hủy khi đang WAITING
-        if (!request.isWaiting()) {
+        // Chỉ hủy được khi đang WAITING; UPDATE có điều kiện để không ghi đè
+        // MATCHED/TIMEOUT do dispatcher hoặc sweeper vừa cập nhật
+        LocalDateTime completedAt = LocalDateTime.now();
+        if (supportRequestRepository.markCancelledIfWaiting(requestId, userId, completedAt) == 0) {
             return false;
         }
 
         // Cancel timeout task
-        cancelTimeoutTask(requestId);
+        supportTimeoutSweeper.cancelTimeout(requestId);
+        waitingRequestQueue.remove(requestId);
 
-        // Update status
+        // Đồng bộ entity với dòng vừa cập nhật (dùng cho notification)
         request.setStatus(SupportRequestStatus.CANCELLED);
-        request.setCompletedAt(LocalDateTime.now());
-        supportRequestRepository.save(request);
+        request.setCompletedAt(completedAt);
 
         // Notify via WebSocket
         webSocketBroadcastService.notifyUserRequestCancelled(request);
@@ -436,25 +461,12 @@ public class SupportRequestService {
         return true;
     }
 
-    private void scheduleTimeoutTask(SupportRequest request) {
-        int timeoutSeconds = getTimeoutForType(request.getType());
-
-        ScheduledFuture<?> timeoutTask = taskScheduler.schedule(() -> {
-            handleRequestTimeout(request.getId());
-        }, Instant.now().plusSeconds(timeoutSeconds));
-
-        timeoutTasks.put(request.getId(), timeoutTask);
-    }
-
-    private void cancelTimeoutTask(Long requestId) {
-        ScheduledFuture<?> task = timeoutTasks.remove(requestId);
-        if (task != null && !task.isDone()) {
-            task.cancel(false);
-        }
-    }
-
-    private int getTimeoutForType(String type) {
-        return "choose_agent".equals(type) ? 300 : 600; // 5 phút vs 10 phút
+    /**
+     * Danh sách agent đã từ chối user (không ghép lại trong quick support)
+     */
+    public Set<Long> getExcludedAgents(Long userId) {
+        Set<Long> excluded = matchingHashtagMap.get(userId);
+        return excluded == null ? Set.of() : Set.copyOf(excluded);
     }
 
     public void removeUserHashtags(Long userId) {
@@ -0,0 +1,162 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SupportRequest;
+import com.example.backend.repository.SupportRequestRepository;
+import com.example.backend.scheduling.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Quản lý timeout của các support request WAITING.
+ * - Khi khởi động: timeout các request đã quá hạn, dựng lại timer và đưa các
+ * request còn hạn vào hàng đợi matching.
+ * - Khi timer đến hạn (hoặc theo chu kỳ): chuyển toàn bộ request quá hạn sang
+ * TIMEOUT bằng một câu UPDATE rồi gửi thông báo theo lô.
+ */
+@Component
+public class SupportTimeoutSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupportTimeoutSweeper.class);
+
+    private static final int CHOOSE_AGENT_TIMEOUT_SECONDS = 300; // 5 phút
+    private static final int DEFAULT_TIMEOUT_SECONDS = 600; // 10 phút
+
+    // Quét dự phòng cho trường hợp timer bị mất (VD: lỗi executor)
+    private static final Duration SWEEP_INTERVAL = Duration.ofSeconds(30);
+
+    private static final String TIMEOUT_REASON = "Yêu cầu chưa được phản hồi trong thời gian quy định";
+
+    @Autowired
+    private SupportRequestRepository supportRequestRepository;
+
+    @Autowired
+    private WaitingRequestQueue waitingRequestQueue;
+
+    @Autowired
+    private WebSocketBroadcastService webSocketBroadcastService;
+
+    @Autowired
+    private HashedWheelTimer hashedWheelTimer;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private final Map<Long, HashedWheelTimer.Timeout> timeoutTasks = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean sweepRequested = new AtomicBoolean(false);
+
+    /**
+     * Chạy trước AgentAvailabilityIndex để hàng đợi đã có request khi index báo
+     * có agent online
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void recoverWaitingRequests() {
+        sweep();
+
+        List<SupportRequest> waitingRequests = supportRequestRepository.findWaitingRequests();
+        for (SupportRequest request : waitingRequests) {
+            scheduleTimeout(request);
+            // Danh sách agent đã từ chối chỉ nằm trong bộ nhớ nên không khôi phục được
+            waitingRequestQueue.add(request, Set.of());
+        }
+
+        taskScheduler.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL);
+
+        logger.info("Recovered {} waiting support requests", waitingRequests.size());
+    }
+
+    /**
+     * Lên lịch timeout cho request, tính theo thời điểm tạo request
+     */
+    public void scheduleTimeout(SupportRequest request) {
+        LocalDateTime deadline = request.getCreatedAt() != null
+                ? request.getCreatedAt().plusSeconds(getTimeoutForType(request.getType()))
+                : LocalDateTime.now().plusSeconds(getTimeoutForType(request.getType()));
+        long delayMillis = Math.max(0, Duration.between(LocalDateTime.now(), deadline).toMillis());
+
+        HashedWheelTimer.Timeout timeout = hashedWheelTimer.schedule(() -> {
+            timeoutTasks.remove(request.getId());
+            requestSweep();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+
+        HashedWheelTimer.Timeout previous = timeoutTasks.put(request.getId(), timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    public void cancelTimeout(Long requestId) {
+        HashedWheelTimer.Timeout timeout = timeoutTasks.remove(requestId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Gộp nhiều timer đến hạn cùng lúc thành một lần quét
+     */
+    public void requestSweep() {
+        if (sweepRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(() -> {
+                sweepRequested.set(false);
+                sweep();
+            }, Instant.now());
+        }
+    }
+
+    /**
+     * Timeout toàn bộ request WAITING đã quá hạn bằng một câu UPDATE
+     */
+    public void sweep() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Object[]> expired = supportRequestRepository.timeoutExpiredWaitingRequests(
+                    now,
+                    now.minusSeconds(CHOOSE_AGENT_TIMEOUT_SECONDS),
+                    now.minusSeconds(DEFAULT_TIMEOUT_SECONDS));
+
+            if (expired.isEmpty()) {
+                return;
+            }
+
+            Map<Long, Long> requestIdsByUser = new LinkedHashMap<>();
+            for (Object[] row : expired) {
+                Long requestId = ((Number) row[0]).longValue();
+                Long userId = ((Number) row[1]).longValue();
+
+                cancelTimeout(requestId);
+                waitingRequestQueue.remove(requestId);
+                requestIdsByUser.put(userId, requestId);
+            }
+
+            webSocketBroadcastService.notifyUsersMatchingTimeout(requestIdsByUser, TIMEOUT_REASON);
+
+            logger.info("Timed out {} waiting support requests", expired.size());
+        } catch (Exception e) {
+            logger.error("Error sweeping expired support requests", e);
+        }
+    }
+
+    public static int getTimeoutForType(String type) {
+        return "choose_agent".equals(type) ? CHOOSE_AGENT_TIMEOUT_SECONDS : DEFAULT_TIMEOUT_SECONDS;
+    }
+}
@@ -4,20 +4,23 @@ import com.example.backend.dto.response.AgentStaticResponse;
 import com.example.backend.dto.response.UserMetricResponse;
 import com.example.backend.model.User;
 import com.example.backend.dto.response.TopEfficiencyAgentsResponse;
+import com.example.backend.enums.LeaderboardDimension;
+import com.example.backend.exception.ValidationException;
 import com.example.backend.model.UserMetric;
 import com.example.backend.repository.UserMetricRepository;
 import com.example.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import java.time.LocalDateTime;
-
 @Service
 @Transactional
 public class UserMetricsService {
@@ -28,6 +31,12 @@ public class UserMetricsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AgentLeaderboard agentLeaderboard;
+
+    @Autowired
+    private LatencyHistogramService latencyHistogramService;
+
     public UserMetric findByUserId(Long userId) {
         return userMetricRepository.findByUserId(userId).orElse(null);
     }
@@ -89,14 +98,22 @@ public class UserMetricsService {
         return distribution;
     }
 
+    /**
+     * Top agent theo hiệu suất. Lấy từ bảng xếp hạng trong bộ nhớ; truy vấn DB khi
+     * bảng chưa đồng bộ lần đầu hoặc topN lớn hơn số agent bảng giữ (app.leaderboard.size)
+     */
     public List<TopEfficiencyAgentsResponse> getTopEfficiencyUsers(int topN) {
-        return userMetricRepository.findAllWithCalls().stream()
-                .map(u -> {
-                    Double efficiency = (u.getRating() * u.getTotalCalls()) / (u.getTotalCallTime() / 30 + 1);
-                    return new TopEfficiencyAgentsResponse(u.getUser().getId(), u.getUser().getFullName(), efficiency);
-                })
-                .sorted((a, b) -> Double.compare((Double) b.getEfficiency(), (Double) a.getEfficiency()))
-                .limit(topN)
+        if (topN < 1) {
+            throw new ValidationException("topN must be at least 1");
+        }
+        if (agentLeaderboard.isReady() && topN <= agentLeaderboard.capacity()) {
+            return agentLeaderboard.top(LeaderboardDimension.EFFICIENCY, topN).stream()
+                    .map(e -> new TopEfficiencyAgentsResponse(e.agentId(), e.fullName(), e.score()))
+                    .toList();
+        }
+        return userMetricRepository.findTopAgentsByEfficiency(PageRequest.of(0, topN)).stream()
+                .map(m -> new TopEfficiencyAgentsResponse(m.getUser().getId(), m.getUser().getFullName(),
+                        AgentLeaderboard.score(LeaderboardDimension.EFFICIENCY, m)))
                 .toList();
     }
 
@@ -122,6 +139,7 @@ public class UserMetricsService {
             userMetric.setTwoStarRatings(0);
             userMetric.setOneStarRatings(0);
             userMetric.setAverageResponseTime(0.0);
+            userMetric.setTotalResponseTime(0.0);
             userMetric.setTotalAcceptedCalls(0);
             userMetric.setTotalRejectedCalls(0);
             userMetric.setRating(0.00);
@@ -134,160 +152,19 @@ public class UserMetricsService {
     }
 
     /**
-     * Cập nhật metrics khi cuộc gọi bắt đầu
+     * Cập nhật bảng xếp hạng sau khi transaction commit, để đọc được giá trị mới
      */
-    public void updateCallStarted(Long agentId, LocalDateTime requestTime, LocalDateTime completedTime) {
-        // Cập nhật metrics cho agent
-        if (agentId != null) {
-            UserMetric agentMetric = getOrCreateUserMetric(agentId);
-            agentMetric.setTotalAcceptedCalls(agentMetric.getTotalAcceptedCalls() + 1);
-
-            // Tính toán response time (thời gian từ khi request đến khi completed)
-            if (requestTime != null && completedTime != null) {
-                Double responseTimeSeconds = java.time.Duration.between(requestTime, completedTime).toMillis() / 1000.0;
-                updateAverageResponseTime(agentMetric, responseTimeSeconds);
-            }
-
-            userMetricRepository.save(agentMetric);
+    private void refreshLeaderboardAfterCommit(Long agentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            agentLeaderboard.refreshAgents(List.of(agentId));
+            return;
         }
-    }
-
-    public void updateCallRejected(Long agentId, LocalDateTime requestTime, LocalDateTime rejectedTime) {
-        if (agentId != null) {
-            UserMetric agentMetric = getOrCreateUserMetric(agentId);
-            agentMetric.setTotalRejectedCalls(agentMetric.getTotalRejectedCalls() + 1);
-            userMetricRepository.save(agentMetric);
-
-            // Tính toán response time (thời gian từ khi request đến khi rejected)
-            if (requestTime != null && rejectedTime != null) {
-                Double responseTimeSeconds = java.time.Duration.between(requestTime, rejectedTime).toMillis() / 1000.0;
-                updateAverageResponseTime(agentMetric, responseTimeSeconds);
-            }
-        }
-    }
-
-    /**
-     * Cập nhật metrics khi cuộc gọi kết thúc
-     */
-    public void updateCallCompleted(Long agentId, Double callDurationSeconds, boolean isSuccessful) {
-        if (agentId != null) {
-
-            if (callDurationSeconds == null) {
-                callDurationSeconds = 0.0;
-            }
-            UserMetric agentMetric = getOrCreateUserMetric(agentId);
-
-            // Cập nhật tổng thời gian gọi
-            agentMetric.setTotalCallTime(agentMetric.getTotalCallTime() + callDurationSeconds);
-
-            // Cập nhật successful/failed calls
-            if (isSuccessful) {
-                agentMetric.setSuccessfulCalls(agentMetric.getSuccessfulCalls() + 1);
-            } else {
-                agentMetric.setFailedCalls(agentMetric.getFailedCalls() + 1);
-            }
-
-            // Cập nhật average call duration
-            updateAverageCallDuration(agentMetric);
-
-            userMetricRepository.save(agentMetric);
-        }
-    }
-
-    public void updateTotalCalls(Long agentId) {
-        UserMetric agentMetric = getOrCreateUserMetric(agentId);
-        agentMetric.setTotalCalls(agentMetric.getTotalCalls() + 1);
-        userMetricRepository.save(agentMetric);
-    }
-
-    /**
-     * Cập nhật metrics khi có rating từ user
-     */
-    public void updateRating(Long agentId, int rating) {
-        if (agentId != null && rating >= 1 && rating <= 5) {
-            UserMetric agentMetric = getOrCreateUserMetric(agentId);
-
-            // Cập nhật tổng số ratings
-            agentMetric.setTotalRatings(agentMetric.getTotalRatings() + 1);
-
-            // Cập nhật rating theo từng sao
-            switch (rating) {
-                case 5:
-                    agentMetric.setFiveStarRatings(agentMetric.getFiveStarRatings() + 1);
-                    break;
-                case 4:
-                    agentMetric.setFourStarRatings(agentMetric.getFourStarRatings() + 1);
-                    break;
-                case 3:
-                    agentMetric.setThreeStarRatings(agentMetric.getThreeStarRatings() + 1);
-                    break;
-                case 2:
-                    agentMetric.setTwoStarRatings(agentMetric.getTwoStarRatings() + 1);
-                    break;
-                case 1:
-                    agentMetric.setOneStarRatings(agentMetric.getOneStarRatings() + 1);
-                    break;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                agentLeaderboard.refreshAgents(List.of(agentId));
             }
-
-            // Tính toán lại average rating
-            updateAverageRating(agentMetric);
-
-            userMetricRepository.save(agentMetric);
-        }
-    }
-
-    /**
-     * Cập nhật response time khi agent phản hồi request
-     */
-    public void updateResponseTime(Long agentId, Double responseTimeSeconds) {
-        if (agentId != null) {
-            UserMetric agentMetric = getOrCreateUserMetric(agentId);
-            updateAverageResponseTime(agentMetric, responseTimeSeconds);
-            userMetricRepository.save(agentMetric);
-        }
-    }
-
-    /**
-     * Tính toán lại average rating
-     */
-    private void updateAverageRating(UserMetric userMetric) {
-        if (userMetric.getTotalRatings() > 0) {
-            double totalScore = (userMetric.getFiveStarRatings() * 5) +
-                    (userMetric.getFourStarRatings() * 4) +
-                    (userMetric.getThreeStarRatings() * 3) +
-                    (userMetric.getTwoStarRatings() * 2) +
-                    (userMetric.getOneStarRatings() * 1);
-
-            double averageRating = totalScore / userMetric.getTotalRatings();
-            userMetric.setRating(Math.round(averageRating * 100.0) / 100.0); // Làm tròn 2 chữ số
-        }
-    }
-
-    /**
-     * Tính toán lại average call duration
-     */
-    private void updateAverageCallDuration(UserMetric userMetric) {
-        if (userMetric.getTotalCalls() > 0) {
-            double averageDuration = (double) userMetric.getTotalCallTime() / userMetric.getTotalCalls();
-            userMetric.setAverageCallDuration(Math.round(averageDuration * 100.0) / 100.0);
-        }
-    }
-
-    /**
-     * Cập nhật average response time
-     */
-    private void updateAverageResponseTime(UserMetric userMetric, Double newResponseTime) {
-        if (userMetric.getTotalAcceptedCalls() + userMetric.getTotalRejectedCalls() > 0) {
-            // Tính weighted average dựa trên số cuộc gọi
-            Double currentAverage = userMetric.getAverageResponseTime();
-            long totalCalls = userMetric.getTotalAcceptedCalls() + userMetric.getTotalRejectedCalls();
-
-            // Công thức: new_avg = (old_avg * (n-1) + new_value) / n
-            Double newAverage = (currentAverage * (totalCalls - 1) + newResponseTime) / totalCalls;
-            userMetric.setAverageResponseTime(newAverage);
-        } else {
-            userMetric.setAverageResponseTime(newResponseTime);
-        }
+        });
     }
 
     /**
@@ -309,8 +186,11 @@ public class UserMetricsService {
             userMetric.setTwoStarRatings(0);
             userMetric.setOneStarRatings(0);
             userMetric.setAverageResponseTime(0.00);
+            userMetric.setTotalResponseTime(0.00);
 
             userMetricRepository.save(userMetric);
+            latencyHistogramService.resetAgent(userId);
+            refreshLeaderboardAfterCommit(userId);
         }
     }
 }
@@ -1,12 +1,15 @@
 package com.example.backend.service;
 
+import com.example.backend.dto.projection.AgentMetricView;
 import com.example.backend.dto.request.UserRequest;
 import com.example.backend.dto.response.AgentResponse;
 import com.example.backend.dto.response.TotalResponse;
 import com.example.backend.dto.response.UserResponse;
+import com.example.backend.enums.LeaderboardDimension;
 import com.example.backend.enums.UserStatus;
 //import com.example.backend.mapper.UserMapper;
 import com.example.backend.exception.BusinessException;
+import com.example.backend.exception.ValidationException;
 import com.example.backend.mapper.UserMapper;
 import com.example.backend.model.User;
 import com.example.backend.model.UserMetric;
@@ -17,16 +20,35 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService {
+
+    // Trường sort mà API nhận -> biểu thức JPQL trong findAgentsWithMetrics
+    // (agent chưa có user_metrics được coi như 0 để không bị NULLS FIRST khi DESC)
+    private static final Map<String, String> AGENT_SORT_COLUMNS = Map.of(
+            "id", "u.id",
+            "email", "u.email",
+            "fullName", "u.fullName",
+            "status", "u.status",
+            "rating", "COALESCE(m.rating, 0)",
+            "totalCall", "COALESCE(m.totalCalls, 0)",
+            "totalCalls", "COALESCE(m.totalCalls, 0)",
+            "totalCallTime", "COALESCE(m.totalCallTime, 0)");
+
+    private static final Set<UserStatus> NOT_OFFLINE = EnumSet.complementOf(EnumSet.of(UserStatus.OFFLINE));
+
     @Autowired
     private UserMapper userMapper;
     @Autowired
@@ -35,28 +57,29 @@ public class UserService {
     private WebSocketBroadcastService webSocketBroadcastService;
     @Autowired
     private UserMetricRepository userMetricRepository;
+    @Autowired
+    private AgentAvailabilityIndex agentAvailabilityIndex;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    @Autowired
+    private AgentLeaderboard agentLeaderboard;
 
-    @Transactional
+    /**
+     * Đổi trạng thái presence, DB và broadcast được PresenceRegistry xử lý theo batch
+     */
     public void updateUserStatus(Long userId, UserStatus status) {
-        Optional<User> userOpt = userRepository.findById(userId);
-
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            UserStatus oldStatus = user.getStatus();
-
-            if (oldStatus != status) {
-                user.setStatus(status);
-                userRepository.save(user);
+        presenceRegistry.setStatus(userId, status);
+    }
 
-                webSocketBroadcastService.broadcastUserStatusChange(user, status);
-            }
-        }
+    /**
+     * Đổi trạng thái chỉ khi trạng thái hiện tại bằng expected
+     */
+    public boolean updateUserStatusIfCurrent(Long userId, UserStatus expected, UserStatus status) {
+        return presenceRegistry.compareAndSetStatus(userId, expected, status);
     }
 
     public UserStatus getUserStatus(Long userId) {
-        return userRepository.findById(userId)
-                .map(User::getStatus)
-                .orElse(UserStatus.OFFLINE);
+        return presenceRegistry.getStatus(userId);
     }
 //
     public UserResponse createUser(UserRequest userRequest){
@@ -120,21 +143,22 @@ public class UserService {
         return userMapper.toResponse(savedUser);
     }
 
+    // Đếm từ PresenceRegistry thay vì cột users.status (chỉ được ghi theo chu kỳ flush)
     public TotalResponse getTotalUsers(){
-        Long totalUser = userRepository.countByRoleAndStatusNot("USER", UserStatus.OFFLINE);
+        Long totalUser = presenceRegistry.countByRole("USER", NOT_OFFLINE);
 
         return new TotalResponse(totalUser);
 
     }
 
     public TotalResponse getTotalAgents(){
-        Long totalUser = userRepository.countByRoleAndStatusNot("AGENT", UserStatus.OFFLINE);
+        Long totalUser = presenceRegistry.countByRole("AGENT", NOT_OFFLINE);
 
         return new TotalResponse(totalUser);
     }
 
     public TotalResponse getTotalCall(){
-        Long totalUser = userRepository.countByRoleAndStatus("AGENT", UserStatus.CALLING);
+        Long totalUser = presenceRegistry.countByRole("AGENT", EnumSet.of(UserStatus.CALLING));
         return new TotalResponse(totalUser);
     }
 
@@ -144,22 +168,24 @@ public class UserService {
         Sort.Direction direction = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc")
                 ? Sort.Direction.DESC : Sort.Direction.ASC;
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, field));
+        // Chỉ cho sort theo các cột trong whitelist (biểu thức được đưa thẳng vào ORDER BY)
+        String column = AGENT_SORT_COLUMNS.get(field);
+        if (column == null) {
+            throw new ValidationException("Invalid sort field: " + field);
+        }
+        Pageable pageable = PageRequest.of(page, size,
+                JpaSort.unsafe(direction, column).and(JpaSort.unsafe(Sort.Direction.ASC, "u.id")));
 
-        Page<User> agentPage;
+        Page<AgentMetricView> agentPage;
         if (keyword == null || keyword.isEmpty()) {
             // không search → lấy toàn bộ agent
-            agentPage = userRepository.findByRoleIn(Arrays.asList("AGENT"), pageable);
+            agentPage = userRepository.findAgentsWithMetrics(pageable);
         } else {
             // search theo fullName
-            agentPage = userRepository.findByRoleInAndFullNameContainingIgnoreCase(Arrays.asList("AGENT"), keyword, pageable);
+            agentPage = userRepository.searchAgentsWithMetrics(keyword, pageable);
         }
 
-        return agentPage.map(user -> {
-            UserMetric metric = userMetricRepository.findByUserId(user.getId())
-                    .orElseThrow(() -> BusinessException.userNotFound(user.getId()));
-            return userMapper.toAgentResponse(metric);
-        });
+        return agentPage.map(userMapper::toAgentResponse);
     }
 
     public Page<UserResponse> getAllUser(String keyword, int page, int size, String sort) {
@@ -184,27 +210,46 @@ public class UserService {
 
 
     public AgentResponse getDetailAgentById(Long id){
-        User user = userRepository.findByIdAndRole(id, "AGENT")
-                .orElseThrow(() -> BusinessException.userNotFound(id));
-        UserMetric userMetric = userMetricRepository.findByUserId(user.getId())
+        AgentMetricView agent = userRepository.findAgentWithMetricsById(id)
                 .orElseThrow(() -> BusinessException.userNotFound(id));
 
-        return userMapper.toAgentResponse(userMetric);
+        return userMapper.toAgentResponse(agent);
     }
 
     public AgentResponse getTopByRating(){
-        UserMetric userMetric = userMetricRepository.findTopByOrderByRatingDesc();
-        return userMapper.toAgentResponse(userMetric);
+        return getTopAgentBy(LeaderboardDimension.RATING, "COALESCE(m.rating, 0)");
     }
 
     public AgentResponse getTopByTotalCalls(){
-        UserMetric userMetric = userMetricRepository.findTopByOrderByTotalCallsDesc();
-        return userMapper.toAgentResponse(userMetric);
+        return getTopAgentBy(LeaderboardDimension.TOTAL_CALLS, "COALESCE(m.totalCalls, 0)");
     }
 
     public AgentResponse getTopByTotalCallTimes(){
-        UserMetric userMetric = userMetricRepository.findTopByOrderByTotalCallTimeDesc();
-        return userMapper.toAgentResponse(userMetric);
+        return getTopAgentBy(LeaderboardDimension.TOTAL_CALL_TIME, "COALESCE(m.totalCallTime, 0)");
+    }
+
+    /**
+     * Agent đứng đầu lấy từ bảng xếp hạng trong bộ nhớ, chỉ truy vấn sắp xếp trên DB
+     * khi bảng chưa đồng bộ lần đầu
+     */
+    private AgentResponse getTopAgentBy(LeaderboardDimension dimension, String column) {
+        if (agentLeaderboard.isReady()) {
+            List<AgentLeaderboard.Entry> leaders = agentLeaderboard.top(dimension, 1);
+            if (leaders.isEmpty()) {
+                return null;
+            }
+            Optional<AgentMetricView> agent = userRepository.findAgentWithMetricsById(leaders.get(0).agentId());
+            if (agent.isPresent()) {
+                return userMapper.toAgentResponse(agent.get());
+            }
+        }
+
+        Pageable top = PageRequest.of(0, 1, JpaSort.unsafe(Sort.Direction.DESC, column)
+                .and(JpaSort.unsafe(Sort.Direction.ASC, "u.id")));
+        return userRepository.findAgentsWithMetrics(top).stream()
+                .findFirst()
+                .map(userMapper::toAgentResponse)
+                .orElse(null);
     }
 
 //    public List<AgentResponse> getAllDetailAgent(){
@@ -236,6 +281,11 @@ public class UserService {
                 .orElseThrow(() -> BusinessException.userNotFound(id));
 
         user.setRole(role);
+        presenceRegistry.updateRole(id, role);
+
+        if (!role.equals("AGENT")) {
+            agentAvailabilityIndex.markOffline(id);
+        }
 
         if (role.equals("AGENT")) {
             if (!userMetricRepository.existsByUserId(user.getId())) {
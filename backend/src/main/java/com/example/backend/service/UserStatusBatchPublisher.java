@@ -0,0 +1,75 @@
+package com.example.backend.service;
+
+import com.example.backend.dto.response.UserStatusEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gộp các thay đổi trạng thái user trong một cửa sổ ngắn
+ * (app.presence.broadcast-window-ms) thành một frame USER_STATUS_BATCH.
+ * Topic công khai /topic/users/status-changes chỉ nhận thay đổi của AGENT;
+ * batch đầy đủ (mọi role) chỉ gửi tới admin qua AdminMonitorTap.
+ * Trong cùng cửa sổ, mỗi user chỉ giữ trạng thái cuối cùng. Không có thay đổi
+ * thì không có task nào chạy.
+ */
+@Component
+public class UserStatusBatchPublisher {
+
+    @Autowired
+    private WebSocketBroadcastService webSocketBroadcastService;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.presence.broadcast-window-ms:200}")
+    private long windowMs;
+
+    private final Map<Long, PendingChange> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private record PendingChange(boolean agent, UserStatusEntry entry) {
+    }
+
+    /**
+     * @param role role của user, quyết định thay đổi có lên topic công khai không
+     */
+    public void publish(String role, UserStatusEntry entry) {
+        pending.put(entry.getUserId(), new PendingChange("AGENT".equalsIgnoreCase(role), entry));
+        if (flushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now().plusMillis(windowMs));
+        }
+    }
+
+    private void flush() {
+        // Cho phép lên lịch lần sau trước khi lấy dữ liệu, thay đổi đến trong lúc gửi không bị bỏ sót
+        flushScheduled.set(false);
+
+        List<UserStatusEntry> changes = new ArrayList<>(pending.size());
+        List<UserStatusEntry> agentChanges = new ArrayList<>();
+        Iterator<Long> iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            PendingChange change = pending.remove(iterator.next());
+            if (change != null) {
+                changes.add(change.entry());
+                if (change.agent()) {
+                    agentChanges.add(change.entry());
+                }
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            webSocketBroadcastService.broadcastUserStatusBatch(agentChanges, changes);
+        }
+    }
+}
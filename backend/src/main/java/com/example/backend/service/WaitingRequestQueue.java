@@ -0,0 +1,80 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SupportRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Hàng đợi ưu tiên các support request đang WAITING (request đến trước được
+ * ghép trước)
+ */
+@Component
+public class WaitingRequestQueue {
+
+    public record Entry(Long requestId, Long userId, Long preferredAgentId, Set<Long> excludedAgents,
+            long enqueuedAt) {
+    }
+
+    private static final Comparator<Entry> BY_ARRIVAL = Comparator
+            .comparingLong(Entry::enqueuedAt)
+            .thenComparingLong(Entry::requestId);
+
+    private final NavigableSet<Entry> queue = new ConcurrentSkipListSet<>(BY_ARRIVAL);
+
+    private final Map<Long, Entry> byRequestId = new ConcurrentHashMap<>();
+
+    /**
+     * Thêm request vào hàng đợi, thứ tự ưu tiên theo thời điểm tạo request
+     */
+    public void add(SupportRequest request, Set<Long> excludedAgents) {
+        long enqueuedAt = request.getCreatedAt() != null
+                ? request.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+
+        add(new Entry(
+                request.getId(),
+                request.getUser().getId(),
+                request.isChooseAgent() ? request.getPreferredAgentId() : null,
+                excludedAgents,
+                enqueuedAt));
+    }
+
+    public void add(Entry entry) {
+        Entry previous = byRequestId.put(entry.requestId(), entry);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        queue.add(entry);
+    }
+
+    public void remove(Long requestId) {
+        Entry entry = byRequestId.remove(requestId);
+        if (entry != null) {
+            queue.remove(entry);
+        }
+    }
+
+    public boolean contains(Long requestId) {
+        return byRequestId.containsKey(requestId);
+    }
+
+    /**
+     * View theo thứ tự ưu tiên, iterator weakly consistent nên có thể duyệt trong
+     * khi request khác được thêm/xóa
+     */
+    public Set<Entry> entries() {
+        return Collections.unmodifiableSet(queue);
+    }
+
+    public int size() {
+        return byRequestId.size();
+    }
+}
@@ -1,35 +1,62 @@
 package com.example.backend.service;
 
-import com.example.backend.enums.UserStatus;
+import com.example.backend.dto.notification.CallEndedNotification;
+import com.example.backend.dto.notification.PermissionCancelledNotification;
+import com.example.backend.dto.notification.RecordingUploadNotification;
+import com.example.backend.dto.notification.RequestEventNotification;
+import com.example.backend.dto.notification.RequestSnapshot;
+import com.example.backend.dto.notification.SupportUpdateNotification;
+import com.example.backend.dto.notification.SystemNotification;
+import com.example.backend.dto.notification.UserStatusBatchNotification;
+import com.example.backend.dto.response.UserStatusEntry;
+import com.example.backend.enums.RecordingStatus;
+import com.example.backend.model.Recording;
 import com.example.backend.model.SupportRequest;
-import com.example.backend.model.User;
+import com.example.backend.websocket.NotificationSender;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Gửi notification qua WebSocket.
+ * Mỗi notification là một record bất biến, được serialize một lần bằng
+ * NotificationSender và dùng chung payload cho mọi người nhận (kể cả luồng
+ * giám sát của admin).
+ */
 @Service
 public class WebSocketBroadcastService {
 
+    private static final String SUPPORT_UPDATES = "/topic/support-updates";
+    private static final String PERMISSION_UPDATES = "/topic/permission-updates";
+    private static final String CALL_UPDATES = "/topic/call-updates";
+
+    @Autowired
+    private NotificationSender notificationSender;
+
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private AdminMonitorTap adminMonitorTap;
 
     public void notifyRequestMatched(SupportRequest request) {
+        // User và agent nhận hai notification khác type nhưng dùng chung phần request
+        String requestJson = serializeRequest(request);
+
         // Notify user
-        this.broadcastToUser(
-                request.getUser().getId(),
+        this.sendSupportUpdate(
                 "request_matched",
                 "Đã tìm thấy agent! Agent " + request.getAgent().getFullName() + " sẽ hỗ trợ bạn.",
-                request);
+                request,
+                requestJson,
+                request.getUser().getId());
 
         // Notify agent
-        this.broadcastToUser(
-                request.getAgent().getId(),
+        this.sendSupportUpdate(
                 "request_assigned",
                 "Bạn đã được phân công hỗ trợ user " + request.getUser().getFullName(),
-                request);
+                request,
+                requestJson,
+                request.getAgent().getId());
 
         System.out.println("Notified user " + request.getUser().getId() + " and agent "
                 + request.getAgent().getId()
@@ -65,20 +92,17 @@ public class WebSocketBroadcastService {
      * Notify khi request completed
      */
     public void notifyRequestCompleted(SupportRequest request) {
-        // Notify both user and agent
-        this.broadcastToUser(
-                request.getUser().getId(),
+        // Notify both user and agent (cùng một payload)
+        Long[] recipients = request.getAgent() != null
+                ? new Long[] { request.getUser().getId(), request.getAgent().getId() }
+                : new Long[] { request.getUser().getId() };
+
+        this.sendSupportUpdate(
                 "request_completed",
                 "Yêu cầu hỗ trợ đã hoàn thành",
-                request);
-
-        if (request.getAgent() != null) {
-            this.broadcastToUser(
-                    request.getAgent().getId(),
-                    "request_completed",
-                    "Yêu cầu hỗ trợ đã hoàn thành",
-                    request);
-        }
+                request,
+                serializeRequest(request),
+                recipients);
     }
 
     /**
@@ -110,86 +134,64 @@ public class WebSocketBroadcastService {
         System.out.println("Notified user " + request.getUser().getId() + " that agent rejected the request: ");
     }
 
-    public void broadcastUserStatusChange(User user, UserStatus status) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("userId", user.getId());
-        message.put("fullName", user.getFullName());
-        message.put("status", status);
-        message.put("timestamp", System.currentTimeMillis());
-        message.put("type", "USER_STATUS_CHANGE");
-
-        messagingTemplate.convertAndSend("/topic/users/status-changes", message);
+    /**
+     * Gửi một batch thay đổi trạng thái user (xem UserStatusBatchPublisher):
+     * thay đổi của agent lên topic công khai, toàn bộ thay đổi chỉ tới admin
+     */
+    public void broadcastUserStatusBatch(List<UserStatusEntry> agentChanges, List<UserStatusEntry> changes) {
+        long now = System.currentTimeMillis();
+        if (!agentChanges.isEmpty()) {
+            notificationSender.send("/topic/users/status-changes", notificationSender.serialize(
+                    new UserStatusBatchNotification("USER_STATUS_BATCH", agentChanges, now)));
+        }
+        if (adminMonitorTap.hasSubscribers()) {
+            adminMonitorTap.publishToAll(notificationSender.serialize(
+                    new UserStatusBatchNotification("USER_STATUS_BATCH", changes, now)));
+        }
     }
 
     /**
      * Broadcast message to specific user
      */
     public void broadcastToUser(Long userId, String type, String message, SupportRequest request) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", type);
-        notification.put("message", message);
-        notification.put("timestamp", System.currentTimeMillis());
-
-        if (request != null) {
-            Map<String, Object> requestData = new HashMap<>();
-            requestData.put("id", request.getId());
-            requestData.put("status", request.getStatus());
-            requestData.put("type", request.getType());
-            requestData.put("createdAt", request.getCreatedAt());
-            requestData.put("response", request.getResponse());
-            if (request.getAgent() != null) {
-                Map<String, Object> agentData = new HashMap<>();
-                agentData.put("id", request.getAgent().getId());
-                agentData.put("fullName", request.getAgent().getFullName());
-                agentData.put("email", request.getAgent().getEmail());
-                requestData.put("agent", agentData);
-            }
-
-            if (request.getUser() != null) {
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("id", request.getUser().getId());
-                userData.put("fullName", request.getUser().getFullName());
-                userData.put("email", request.getUser().getEmail());
-                requestData.put("user", userData);
-            }
+        this.sendSupportUpdate(type, message, request, request != null ? serializeRequest(request) : null, userId);
+    }
 
-            notification.put("request", requestData);
+    /**
+     * Serialize notification một lần rồi gửi cho tất cả người nhận và luồng giám sát
+     */
+    private void sendSupportUpdate(String type, String message, SupportRequest request, String requestJson,
+            Long... recipients) {
+        byte[] payload = notificationSender.serialize(
+                new SupportUpdateNotification(type, message, System.currentTimeMillis(), requestJson));
+
+        for (Long userId : recipients) {
+            // Send to user-specific topic
+            notificationSender.sendToUser(userId, SUPPORT_UPDATES, payload);
+            System.out.println("Sent WebSocket message to user " + userId + ": " + type);
         }
+        adminMonitorTap.publish(type,
+                request != null && request.getAgent() != null ? request.getAgent().getId() : null,
+                request != null ? request.getType() : null,
+                payload);
+    }
 
-        // Send to user-specific topic
-        messagingTemplate.convertAndSendToUser(
-                userId.toString(),
-                "/topic/support-updates",
-                notification);
-        messagingTemplate.convertAndSendToUser(
-                "1",
-                "/topic/support-updates",
-                notification);
-
-        System.out.println("notification: " + notification);
-        System.out.println("Sent WebSocket message to user " + userId + ": " + type);
+    private String serializeRequest(SupportRequest request) {
+        return notificationSender.serializeToString(RequestSnapshot.of(request));
     }
 
     /**
      * Broadcast system-wide messages
      */
     public void broadcastSystemMessage(String message, String type) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("type", type);
-        data.put("message", message);
-        data.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSend("/topic/system", data);
+        notificationSender.send("/topic/system", notificationSender.serialize(
+                new SystemNotification(type, message, System.currentTimeMillis())));
     }
 
     public void broadcastBlockUserMessage(Long id, String message) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("type", "FORCE_LOGOUT");
-        data.put("message", message);
-        data.put("timestamp", System.currentTimeMillis());
-        messagingTemplate.convertAndSend(
+        notificationSender.send(
                 "/topic/" + id + "/force-logout", // queue dành riêng cho user đó
-                data);
+                notificationSender.serialize(new SystemNotification("FORCE_LOGOUT", message, System.currentTimeMillis())));
         System.out.println("Block user " + id);
     }
 
@@ -197,16 +199,7 @@ public class WebSocketBroadcastService {
      * Broadcast notification (placeholder for compatibility)
      */
     public void notifyUserMatchingProgress(SupportRequest request, String message) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "MATCHING_PROGRESS");
-        notification.put("requestId", request.getId());
-        notification.put("message", message);
-        notification.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSendToUser(
-                request.getUser().getId().toString(),
-                "/topic/support-updates",
-                notification);
+        sendRequestEvent(request.getUser().getId(), "MATCHING_PROGRESS", request.getId(), message);
     }
 
     public void notifyUserMatched(SupportRequest request) {
@@ -220,42 +213,32 @@ public class WebSocketBroadcastService {
     }
 
     public void notifyUserMatchingTimeout(SupportRequest request, String reason) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "request_timeout");
-        notification.put("requestId", request.getId());
-        notification.put("message", reason);
-        notification.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSendToUser(
-                request.getUser().getId().toString(),
-                "/topic/support-updates",
-                notification);
+        sendRequestEvent(request.getUser().getId(), "request_timeout", request.getId(), reason);
+    }
+
+    /**
+     * Notify timeout cho nhiều user cùng lúc (sau một lần quét timeout theo lô)
+     */
+    public void notifyUsersMatchingTimeout(Map<Long, Long> requestIdsByUser, String reason) {
+        long timestamp = System.currentTimeMillis();
+
+        requestIdsByUser.forEach((userId, requestId) -> notificationSender.sendToUser(
+                userId,
+                SUPPORT_UPDATES,
+                notificationSender.serialize(new RequestEventNotification("request_timeout", requestId, reason, timestamp))));
     }
 
     public void notifyUserRequestCancelled(SupportRequest request) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "REQUEST_CANCELLED");
-        notification.put("requestId", request.getId());
-        notification.put("message", "Yêu cầu hỗ trợ đã được hủy");
-        notification.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSendToUser(
-                request.getUser().getId().toString(),
-                "/topic/support-updates",
-                notification);
+        sendRequestEvent(request.getUser().getId(), "REQUEST_CANCELLED", request.getId(), "Yêu cầu hỗ trợ đã được hủy");
     }
 
     public void notifyUserMatchingError(SupportRequest request, String error) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "REQUEST_ERROR");
-        notification.put("requestId", request.getId());
-        notification.put("message", "Có lỗi xảy ra: " + error);
-        notification.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSendToUser(
-                request.getUser().getId().toString(),
-                "/topic/support-updates",
-                notification);
+        sendRequestEvent(request.getUser().getId(), "REQUEST_ERROR", request.getId(), "Có lỗi xảy ra: " + error);
+    }
+
+    private void sendRequestEvent(Long userId, String type, Long requestId, String message) {
+        notificationSender.sendToUser(userId, SUPPORT_UPDATES, notificationSender.serialize(
+                new RequestEventNotification(type, requestId, message, System.currentTimeMillis())));
     }
 
     public void notifyAgentNewRequest(SupportRequest request) {
@@ -272,24 +255,17 @@ public class WebSocketBroadcastService {
      * Notify khi một bên thoát/hủy trong quá trình preparing
      */
     public void notifyPermissionCancelled(Long requestId, Long cancelledBy, Long notifyTo, boolean isUser) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "permission_cancelled");
-        notification.put("requestId", requestId);
-        notification.put("cancelledBy", cancelledBy);
-        notification.put("isUserCancelled", isUser);
-        notification.put("message",
-                isUser ? "User đã hủy bỏ quá trình cấp quyền" : "Agent đã hủy bỏ quá trình cấp quyền");
-        notification.put("timestamp", System.currentTimeMillis());
-
-        messagingTemplate.convertAndSendToUser(
-                notifyTo.toString(),
-                "/topic/permission-updates",
-                notification);
-
-        messagingTemplate.convertAndSendToUser(
-                "1",
-                "/topic/permission-updates",
-                notification);
+        byte[] payload = notificationSender.serialize(new PermissionCancelledNotification(
+                "permission_cancelled",
+                requestId,
+                cancelledBy,
+                isUser,
+                isUser ? "User đã hủy bỏ quá trình cấp quyền" : "Agent đã hủy bỏ quá trình cấp quyền",
+                System.currentTimeMillis()));
+
+        notificationSender.sendToUser(notifyTo, PERMISSION_UPDATES, payload);
+
+        adminMonitorTap.publish("permission_cancelled", isUser ? null : cancelledBy, null, payload);
 
         System.out.println("Notified user " + notifyTo + " that permission was cancelled by " +
                 (isUser ? "user" : "agent") + " " + cancelledBy);
@@ -299,42 +275,48 @@ public class WebSocketBroadcastService {
      * Notify khi một bên rời cuộc gọi (call ended)
      */
     public void notifyCallEnded(Long requestId, Long endedBy, Long notifyTo, boolean isUser) {
-        Map<String, Object> notification = new HashMap<>();
-        notification.put("type", "call_ended");
-        notification.put("requestId", requestId);
-        notification.put("endedBy", endedBy);
-        notification.put("isUserEnded", isUser);
-        notification.put("message",
-                isUser ? "User đã rời khỏi cuộc gọi" : "Agent đã rời khỏi cuộc gọi");
-        notification.put("timestamp", System.currentTimeMillis());
+        byte[] payload = notificationSender.serialize(new CallEndedNotification(
+                "call_ended",
+                requestId,
+                endedBy,
+                isUser,
+                isUser ? "User đã rời khỏi cuộc gọi" : "Agent đã rời khỏi cuộc gọi",
+                System.currentTimeMillis()));
 
         // Gửi tới call-updates topic (cho người trong VideoCallRoom)
-        messagingTemplate.convertAndSendToUser(
-                notifyTo.toString(),
-                "/topic/call-updates",
-                notification);
+        notificationSender.sendToUser(notifyTo, CALL_UPDATES, payload);
 
         // Gửi tới permission-updates topic (cho người có thể đang ở
         // PermissionRequestPage)
-        messagingTemplate.convertAndSendToUser(
-                notifyTo.toString(),
-                "/topic/permission-updates",
-                notification);
-
-        messagingTemplate.convertAndSendToUser(
-                "1",
-                "/topic/call-updates",
-                notification);
+        notificationSender.sendToUser(notifyTo, PERMISSION_UPDATES, payload);
 
-        // Gửi tới permission-updates topic (cho người có thể đang ở
-        // PermissionRequestPage)
-        messagingTemplate.convertAndSendToUser(
-                "1",
-                "/topic/permission-updates",
-                notification);
+        adminMonitorTap.publish("call_ended", isUser ? null : endedBy, null, payload);
 
         System.out.println("Notified user " + notifyTo + " that call was ended by " +
                 (isUser ? "user" : "agent") + " " + endedBy + " on both call-updates and permission-updates topics");
     }
 
-}
\ No newline at end of file
+    /**
+     * Notify agent và user khi upload recording lên S3 hoàn tất hoặc thất bại
+     */
+    public void notifyRecordingUploadStatus(Recording recording, RecordingStatus status) {
+        boolean uploaded = status == RecordingStatus.UPLOADED;
+
+        byte[] payload = notificationSender.serialize(new RecordingUploadNotification(
+                uploaded ? "recording_uploaded" : "recording_failed",
+                recording.getRecordingId(),
+                recording.getId(),
+                recording.getSessionId(),
+                recording.getRequestId(),
+                status.toString(),
+                uploaded ? "Bản ghi cuộc gọi đã được lưu" : "Không thể lưu bản ghi cuộc gọi",
+                System.currentTimeMillis()));
+
+        for (Long recipient : new Long[] { recording.getAgentId(), recording.getUserId() }) {
+            if (recipient != null) {
+                notificationSender.sendToUser(recipient, SUPPORT_UPDATES, payload);
+            }
+        }
+    }
+
+}
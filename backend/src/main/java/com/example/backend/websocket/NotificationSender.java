@@ -0,0 +1,123 @@
+package com.example.backend.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Gửi notification đã serialize sẵn thành JSON.
+ * Payload được serialize một lần (serialize) rồi dùng chung cho mọi người nhận;
+ * mỗi lần gửi chỉ tạo header mới, không chạy lại Jackson như convertAndSend.
+ * Mảng byte trả về từ serialize được dùng chung nên không được sửa.
+ * Notification gửi tới từng user được gắn header seq và giữ trong
+ * UserNotificationBuffer để replay khi client kết nối lại.
+ */
+@Component
+public class NotificationSender {
+
+    public static final String SEQ_HEADER = "seq";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private UserNotificationBuffer notificationBuffer;
+
+    public byte[] serialize(Object notification) {
+        try {
+            return objectMapper.writeValueAsBytes(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize notification " + notification.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Serialize thành chuỗi JSON để nhúng vào notification khác (field @JsonRawValue)
+     */
+    public String serializeToString(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    public void send(String destination, byte[] payload) {
+        send(destination, payload, Map.of());
+    }
+
+    /**
+     * Gửi payload kèm các STOMP header tùy chọn
+     */
+    public void send(String destination, byte[] payload, Map<String, String> nativeHeaders) {
+        messagingTemplate.send(destination, createMessage(payload, nativeHeaders, null));
+    }
+
+    /**
+     * Tương đương convertAndSendToUser: gửi tới /user/{userId}{destination},
+     * kèm header seq của user
+     */
+    public void sendToUser(Long userId, String destination, byte[] payload) {
+        notificationBuffer.append(userId, destination, payload, frame -> sendFrame(userId, frame, null));
+    }
+
+    /**
+     * Gửi lại cho một session các frame của user có seq > lastSeq.
+     * lastSeq = null (client chưa nhận frame nào): không gửi gì, chỉ trả về seq hiện tại.
+     */
+    public UserNotificationBuffer.Replay replay(Long userId, String sessionId, Long lastSeq) {
+        if (lastSeq == null) {
+            return new UserNotificationBuffer.Replay(0, true, notificationBuffer.latestSeq(userId));
+        }
+        return notificationBuffer.replay(userId, lastSeq, frame -> sendFrame(userId, frame, sessionId));
+    }
+
+    /**
+     * Gửi tới một session của user (không đánh seq, không lưu buffer)
+     */
+    public void sendToSession(Long userId, String sessionId, String destination, byte[] payload) {
+        sendToSession(userId, sessionId, destination, payload, Map.of());
+    }
+
+    public void sendToSession(Long userId, String sessionId, String destination, byte[] payload,
+            Map<String, String> nativeHeaders) {
+        messagingTemplate.send(userDestination(userId, destination), createMessage(payload, nativeHeaders, sessionId));
+    }
+
+    private void sendFrame(Long userId, UserNotificationBuffer.Frame frame, String sessionId) {
+        messagingTemplate.send(userDestination(userId, frame.destination()),
+                createMessage(frame.payload(), Map.of(SEQ_HEADER, Long.toString(frame.seq())), sessionId));
+    }
+
+    private String userDestination(Long userId, String destination) {
+        String prefix = messagingTemplate.getUserDestinationPrefix();
+        return prefix + userId + (destination.startsWith("/") ? destination : "/" + destination);
+    }
+
+    /**
+     * @param sessionId chỉ gửi tới session này của user, null = mọi session
+     */
+    private static Message<byte[]> createMessage(byte[] payload, Map<String, String> nativeHeaders, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        nativeHeaders.forEach(accessor::setNativeHeader);
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+        }
+        // Để template còn gán được destination trước khi gửi
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
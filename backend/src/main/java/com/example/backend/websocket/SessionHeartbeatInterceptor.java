@@ -0,0 +1,27 @@
+package com.example.backend.websocket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cập nhật thời điểm cuối nhận được frame (kể cả heartbeat) của mỗi session
+ */
+@Component
+public class SessionHeartbeatInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private UserSessionRegistry userSessionRegistry;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            userSessionRegistry.touch(sessionId);
+        }
+        return message;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.backend.websocket;
 
+import com.example.backend.security.JwtPrincipal;
 import com.example.backend.service.JwtService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,10 +59,11 @@ public class UserHandshakeInterceptor implements HandshakeInterceptor {
 
             if (token != null) {
                 try {
-                    if (!jwtService.isTokenExpired(token)) {
-                        Long userId = jwtService.extractUserId(token);
-                        String username = jwtService.extractUsername(token);
-                        String role = jwtService.extractRole(token);
+                    JwtPrincipal principal = jwtService.parseToken(token);
+                    if (!principal.isExpired()) {
+                        Long userId = principal.userId();
+                        String username = principal.email();
+                        String role = principal.role();
 
                         // Lưu thông tin user vào session attributes
                         attributes.put("userId", userId);
@@ -0,0 +1,156 @@
+package com.example.backend.websocket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Ring buffer có giới hạn chứa các notification gửi tới từng user, để client
+ * kết nối lại lấy được các frame bị lỡ thay vì tải lại toàn bộ trạng thái.
+ *
+ * Mỗi frame được đánh số seq tăng dần theo user. Seq bắt đầu từ thời điểm
+ * (ms) tạo buffer, nên vẫn tăng sau khi buffer bị dọn hoặc server khởi động
+ * lại; client giữ seq cũ sẽ nhận complete = false và tự tải lại trạng thái.
+ * Buffer của user không nhận notification mới trong
+ * app.websocket.replay-retention-minutes bị xóa.
+ */
+@Component
+public class UserNotificationBuffer {
+
+    private static final Duration CLEANUP_INTERVAL = Duration.ofMinutes(1);
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Value("${app.websocket.replay-buffer-size:100}")
+    private int capacity;
+
+    @Value("${app.websocket.replay-retention-minutes:10}")
+    private long retentionMinutes;
+
+    private final Map<Long, Ring> rings = new ConcurrentHashMap<>();
+
+    public record Frame(long seq, String destination, byte[] payload) {
+    }
+
+    /**
+     * Kết quả replay. complete = false nếu có frame sau lastSeq đã bị ghi đè/dọn,
+     * khi đó client phải tự tải lại trạng thái.
+     */
+    public record Replay(int replayed, boolean complete, long latestSeq) {
+    }
+
+    /**
+     * Việc gửi frame được gọi trong lock của user, nên frame của một user luôn
+     * đi ra theo đúng thứ tự seq (kể cả khi xen với replay)
+     */
+    private static final class Ring {
+        private final Frame[] frames;
+        private long nextSeq;
+        private int count;
+        private long lastAppendMillis;
+        private boolean evicted;
+
+        private Ring(int capacity) {
+            this.frames = new Frame[capacity];
+            this.nextSeq = System.currentTimeMillis();
+            this.lastAppendMillis = System.currentTimeMillis();
+        }
+
+        private synchronized Frame append(String destination, byte[] payload, Consumer<Frame> deliver) {
+            if (evicted) {
+                return null;
+            }
+            Frame frame = new Frame(nextSeq++, destination, payload);
+            frames[(int) (frame.seq() % frames.length)] = frame;
+            count = Math.min(count + 1, frames.length);
+            lastAppendMillis = System.currentTimeMillis();
+            deliver.accept(frame);
+            return frame;
+        }
+
+        private synchronized Replay replay(long lastSeq, Consumer<Frame> deliver) {
+            long latestSeq = nextSeq - 1;
+            long oldestSeq = nextSeq - count;
+
+            // Seq lớn hơn seq mới nhất chỉ xảy ra khi client giữ seq của buffer cũ
+            boolean complete = !evicted && lastSeq >= oldestSeq - 1 && lastSeq <= latestSeq;
+
+            int replayed = 0;
+            for (long seq = Math.max(lastSeq + 1, oldestSeq); seq <= latestSeq; seq++) {
+                deliver.accept(frames[(int) (seq % frames.length)]);
+                replayed++;
+            }
+            return new Replay(replayed, complete, latestSeq);
+        }
+
+        private synchronized long latestSeq() {
+            return nextSeq - 1;
+        }
+
+        private synchronized boolean evictIfIdle(long cutoffMillis) {
+            if (lastAppendMillis < cutoffMillis) {
+                evicted = true;
+            }
+            return evicted;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::evictIdle, CLEANUP_INTERVAL);
+    }
+
+    /**
+     * Gán seq cho frame, lưu vào buffer của user rồi gọi deliver để gửi đi
+     */
+    public Frame append(Long userId, String destination, byte[] payload, Consumer<Frame> deliver) {
+        while (true) {
+            Ring ring = rings.computeIfAbsent(userId, id -> new Ring(Math.max(1, capacity)));
+            Frame frame = ring.append(destination, payload, deliver);
+            if (frame != null) {
+                return frame;
+            }
+            // Ring vừa bị evictIdle dọn, tạo ring mới
+            rings.remove(userId, ring);
+        }
+    }
+
+    /**
+     * Gửi lại (qua deliver) các frame có seq > lastSeq còn trong buffer
+     */
+    public Replay replay(Long userId, long lastSeq, Consumer<Frame> deliver) {
+        Ring ring = rings.get(userId);
+        if (ring == null) {
+            // Không còn buffer (đã dọn hoặc server khởi động lại): không biết client lỡ gì
+            return new Replay(0, false, 0L);
+        }
+        return ring.replay(lastSeq, deliver);
+    }
+
+    /**
+     * Seq mới nhất đã gửi cho user. Nếu user chưa có buffer thì trả về một giá trị
+     * nhỏ hơn mọi seq sẽ được cấp sau này (seq khởi đầu theo thời điểm tạo buffer).
+     */
+    public long latestSeq(Long userId) {
+        Ring ring = rings.get(userId);
+        return ring != null ? ring.latestSeq() : System.currentTimeMillis() - 1;
+    }
+
+    public int size() {
+        return rings.size();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - Duration.ofMinutes(retentionMinutes).toMillis();
+        rings.values().removeIf(ring -> ring.evictIfIdle(cutoff));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.backend.websocket;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Gán Principal có name = userId cho WebSocket session (userId do
+ * UserHandshakeInterceptor lấy từ JWT). Nhờ đó convertAndSendToUser(userId, ...)
+ * được UserDestinationMessageHandler resolve qua SimpUserRegistry.
+ */
+@Component
+public class UserPrincipalHandshakeHandler extends DefaultHandshakeHandler {
+
+    public record UserPrincipal(String name) implements Principal {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    @Override
+    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+            Map<String, Object> attributes) {
+        Object userId = attributes.get("userId");
+        if (userId != null) {
+            return new UserPrincipal(userId.toString());
+        }
+        return super.determineUser(request, wsHandler, attributes);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.backend.websocket;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Các STOMP session đang mở của từng user (nhiều tab/thiết bị cùng lúc).
+ * User chỉ được coi là ngắt kết nối khi session cuối cùng đóng.
+ * Đọc (isConnected, touch, ...) không cần lock; thêm/bớt session dùng
+ * ConcurrentHashMap.compute nên chỉ khóa theo từng user.
+ */
+@Component
+public class UserSessionRegistry {
+
+    private final Map<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+    private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+
+    private static final class SessionInfo {
+        private final String sessionId;
+        private final Long userId;
+        private final Instant connectedAt;
+        // Chu kỳ heartbeat client cam kết gửi (ms), 0 = không gửi
+        private final long clientHeartbeatMs;
+        private volatile long lastSeenMillis;
+
+        private SessionInfo(String sessionId, Long userId, long clientHeartbeatMs) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.connectedAt = Instant.now();
+            this.clientHeartbeatMs = clientHeartbeatMs;
+            this.lastSeenMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Thông tin một session, lastHeartbeatAt là lần cuối nhận frame bất kỳ từ client
+     */
+    public record SessionView(String sessionId, Long userId, Instant connectedAt, Instant lastHeartbeatAt,
+            long clientHeartbeatMs) {
+    }
+
+    /**
+     * Kết quả khi bỏ một session, lastSession = true nếu user không còn session nào
+     */
+    public record Removal(Long userId, boolean lastSession) {
+    }
+
+    /**
+     * Thêm session cho user
+     *
+     * @return true nếu đây là session đầu tiên (user vừa kết nối)
+     */
+    public boolean register(Long userId, String sessionId, long clientHeartbeatMs) {
+        sessions.put(sessionId, new SessionInfo(sessionId, userId, clientHeartbeatMs));
+
+        boolean[] first = { false };
+        sessionsByUser.compute(userId, (id, userSessions) -> {
+            if (userSessions == null) {
+                userSessions = ConcurrentHashMap.newKeySet();
+                first[0] = true;
+            }
+            userSessions.add(sessionId);
+            return userSessions;
+        });
+        return first[0];
+    }
+
+    /**
+     * Bỏ session, trả về null nếu session không được đăng ký
+     */
+    public Removal unregister(String sessionId) {
+        SessionInfo info = sessions.remove(sessionId);
+        if (info == null) {
+            return null;
+        }
+
+        boolean[] last = { false };
+        sessionsByUser.computeIfPresent(info.userId, (id, userSessions) -> {
+            userSessions.remove(sessionId);
+            if (userSessions.isEmpty()) {
+                last[0] = true;
+                return null;
+            }
+            return userSessions;
+        });
+        return new Removal(info.userId, last[0]);
+    }
+
+    /**
+     * Bỏ mọi session của user (VD: logout), trả về các sessionId đã bỏ
+     */
+    public Set<String> unregisterUser(Long userId) {
+        Set<String> removed = sessionsByUser.remove(userId);
+        if (removed == null) {
+            return Set.of();
+        }
+        removed.forEach(sessions::remove);
+        return removed;
+    }
+
+    /**
+     * Ghi nhận client còn sống (heartbeat hoặc frame bất kỳ)
+     */
+    public void touch(String sessionId) {
+        SessionInfo info = sessions.get(sessionId);
+        if (info != null) {
+            info.lastSeenMillis = System.currentTimeMillis();
+        }
+    }
+
+    public boolean isConnected(Long userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public int sessionCount(Long userId) {
+        Set<String> userSessions = sessionsByUser.get(userId);
+        return userSessions == null ? 0 : userSessions.size();
+    }
+
+    public int connectedUserCount() {
+        return sessionsByUser.size();
+    }
+
+    public List<SessionView> getSessions(Long userId) {
+        Set<String> userSessions = sessionsByUser.getOrDefault(userId, Set.of());
+        List<SessionView> views = new ArrayList<>(userSessions.size());
+        for (String sessionId : userSessions) {
+            SessionInfo info = sessions.get(sessionId);
+            if (info != null) {
+                views.add(toView(info));
+            }
+        }
+        views.sort(Comparator.comparing(SessionView::connectedAt));
+        return views;
+    }
+
+    /**
+     * Các session có gửi heartbeat nhưng đã im lặng quá lâu: quá maxMissedHeartbeats
+     * chu kỳ heartbeat của chính session đó. Session không dùng heartbeat không
+     * bao giờ bị coi là stale.
+     */
+    public List<SessionView> findStaleSessions(int maxMissedHeartbeats) {
+        long now = System.currentTimeMillis();
+        List<SessionView> stale = new ArrayList<>();
+        for (SessionInfo info : sessions.values()) {
+            if (info.clientHeartbeatMs > 0
+                    && now - info.lastSeenMillis > info.clientHeartbeatMs * maxMissedHeartbeats) {
+                stale.add(toView(info));
+            }
+        }
+        return stale;
+    }
+
+    private static SessionView toView(SessionInfo info) {
+        return new SessionView(info.sessionId, info.userId, info.connectedAt,
+                Instant.ofEpochMilli(info.lastSeenMillis), info.clientHeartbeatMs);
+    }
+}
@@ -1,26 +1,33 @@
 package com.example.backend.websocket;
 
+import com.example.backend.config.WebSocketConfig;
 import com.example.backend.enums.UserStatus;
+import com.example.backend.scheduling.HashedWheelTimer;
 import com.example.backend.service.SupportRequestService;
 import com.example.backend.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
-import java.time.Instant;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocketPresenceHandler xử lý các sự kiện kết nối và ngắt kết nối WebSocket
- * để quản lý trạng thái online/offline của agents
+ * để quản lý trạng thái online/offline của agents.
+ * Một user có thể mở nhiều session (UserSessionRegistry), chỉ chuyển OFFLINE khi
+ * session cuối cùng đóng hoặc bị coi là chết do mất heartbeat.
  */
 @Component
 public class WebSocketPresenceHandler {
@@ -28,19 +35,35 @@ public class WebSocketPresenceHandler {
     private static final Logger logger = LoggerFactory.getLogger(WebSocketPresenceHandler.class);
     private static final long OFFLINE_DELAY_SECONDS = 1; // Có thể set = 0 nếu muốn offline ngay
 
+    // Session bỏ lỡ quá số heartbeat này bị coi là đã chết (mất sự kiện DISCONNECT)
+    private static final int MAX_MISSED_HEARTBEATS = 3;
+    private static final Duration STALE_SESSION_CHECK_INTERVAL = Duration.ofSeconds(15);
+
     @Autowired
     private UserService userService;
 
     @Autowired
-    private TaskScheduler taskScheduler;
+    private SupportRequestService supportRequestService;
 
     @Autowired
-    private SupportRequestService supportRequestService;
-    // Chỉ cần track user nào đang online, không cần đếm session
-    private final ConcurrentHashMap<Long, String> onlineUsers = new ConcurrentHashMap<>();
+    private HashedWheelTimer hashedWheelTimer;
+
+    @Autowired
+    private UserSessionRegistry userSessionRegistry;
+
+    @Autowired
+    private WebSocketSessionCloser webSocketSessionCloser;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
 
     // Map để track các tác vụ offline đã được lên lịch
-    private final ConcurrentHashMap<Long, ScheduledFuture<?>> scheduledOfflineTasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, HashedWheelTimer.Timeout> scheduledOfflineTasks = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::reapStaleSessions, STALE_SESSION_CHECK_INTERVAL);
+    }
 
     /**
      * Xử lý sự kiện khi WebSocket session được kết nối
@@ -50,6 +73,9 @@ public class WebSocketPresenceHandler {
         try {
             StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
             String sessionId = headerAccessor.getSessionId();
+            // Chu kỳ heartbeat thực tế của client = max(client đề nghị, server mong nhận)
+            long clientHeartbeat = headerAccessor.getHeartbeat()[0];
+            long clientHeartbeatMs = clientHeartbeat > 0 ? Math.max(clientHeartbeat, WebSocketConfig.HEARTBEAT_MS) : 0;
 
             logger.info("🔌 STOMP CONNECT event - Session: {}", sessionId);
 
@@ -58,36 +84,40 @@ public class WebSocketPresenceHandler {
 
             if (userId == null) {
                 logger.warn("⏰ UserId is null, scheduling retry in 100ms for session: {}", sessionId);
-                taskScheduler.schedule(() -> {
+                hashedWheelTimer.schedule(() -> {
                     try {
                         Long retryUserId = getUserIdFromSession(headerAccessor);
                         if (retryUserId != null) {
                             logger.info("✅ Retry successful - Found userId: {} for session: {}", retryUserId,
                                     sessionId);
-                            handleUserConnection(retryUserId, sessionId);
+                            handleUserConnection(retryUserId, sessionId, clientHeartbeatMs);
                         } else {
                             logger.warn("❌ Retry failed - Still no userId for session: {}", sessionId);
                         }
                     } catch (Exception e) {
                         logger.error("Error in retry for session: {}", sessionId, e);
                     }
-                }, Instant.now().plusMillis(100));
+                }, 100, TimeUnit.MILLISECONDS);
                 return;
             }
 
-            handleUserConnection(userId, sessionId);
+            handleUserConnection(userId, sessionId, clientHeartbeatMs);
         } catch (Exception e) {
             logger.error("Error handling WebSocket connect event", e);
         }
     }
 
-    private void handleUserConnection(Long userId, String sessionId) {
+    private void handleUserConnection(Long userId, String sessionId, long clientHeartbeatMs) {
         try {
             // Hủy task offline nếu có (trường hợp reconnect)
             cancelOfflineTask(userId);
 
-            // Track user và session
-            onlineUsers.put(userId, sessionId);
+            // Tab/thiết bị thứ hai không đổi trạng thái (user có thể đang CALLING)
+            if (!userSessionRegistry.register(userId, sessionId, clientHeartbeatMs)) {
+                logger.info("🟢 User {} opened another session: {} ({} sessions)", userId, sessionId,
+                        userSessionRegistry.sessionCount(userId));
+                return;
+            }
 
             // Set status thành ONLINE
             userService.updateUserStatus(userId, UserStatus.ONLINE);
@@ -111,26 +141,54 @@ public class WebSocketPresenceHandler {
 
             logger.info("🔌 STOMP DISCONNECT event - Session: {}, Close status: {}", sessionId, closeStatus);
 
-            Long userId = getUserIdFromSession(headerAccessor);
-            logger.info("👤 Extracted userId from disconnect session: {}", userId);
+            handleSessionClosed(sessionId);
+        } catch (Exception e) {
+            logger.error("Error handling WebSocket disconnect event", e);
+        }
+    }
 
-            if (userId != null) {
-                // Remove user khỏi danh sách online
-                onlineUsers.remove(userId);
+    private void handleSessionClosed(String sessionId) {
+        UserSessionRegistry.Removal removal = userSessionRegistry.unregister(sessionId);
+        if (removal == null) {
+            return;
+        }
+        Long userId = removal.userId();
 
-                // Schedule offline task (hoặc set offline ngay nếu OFFLINE_DELAY_SECONDS = 0)
-                if (OFFLINE_DELAY_SECONDS == 0) {
+        if (!removal.lastSession()) {
+            logger.info("🟡 User {} closed session {} - {} sessions still open", userId, sessionId,
+                    userSessionRegistry.sessionCount(userId));
+            return;
+        }
 
-                    userService.updateUserStatus(userId, UserStatus.OFFLINE);
-                    logger.info("🔴 User {} set to OFFLINE immediately", userId);
-                } else {
-                    scheduleOfflineTask(userId);
-                    logger.info("🔴 User {} disconnected - Scheduling offline task in {} seconds",
-                            userId, OFFLINE_DELAY_SECONDS);
-                }
+        // Schedule offline task (hoặc set offline ngay nếu OFFLINE_DELAY_SECONDS = 0)
+        if (OFFLINE_DELAY_SECONDS == 0) {
+            supportRequestService.removeUserHashtags(userId);
+            userService.updateUserStatus(userId, UserStatus.OFFLINE);
+            logger.info("🔴 User {} set to OFFLINE immediately", userId);
+        } else {
+            scheduleOfflineTask(userId);
+            logger.info("🔴 User {} disconnected - Scheduling offline task in {} seconds",
+                    userId, OFFLINE_DELAY_SECONDS);
+        }
+    }
+
+    /**
+     * Đóng các session không còn gửi heartbeat (DISCONNECT bị mất, VD: SockJS rớt giữa chừng)
+     * và bỏ chúng khỏi registry
+     */
+    private void reapStaleSessions() {
+        try {
+            List<UserSessionRegistry.SessionView> stale = userSessionRegistry.findStaleSessions(MAX_MISSED_HEARTBEATS);
+            for (UserSessionRegistry.SessionView session : stale) {
+                logger.warn("💀 Reaping stale session {} of user {} (last heartbeat {})",
+                        session.sessionId(), session.userId(), session.lastHeartbeatAt());
+                handleSessionClosed(session.sessionId());
+                // Đóng transport để client biết mà kết nối lại; DISCONNECT sinh ra sau đó bị bỏ qua
+                // vì session đã không còn trong registry
+                webSocketSessionCloser.close(session.sessionId(), CloseStatus.SESSION_NOT_RELIABLE);
             }
         } catch (Exception e) {
-            logger.error("Error handling WebSocket disconnect event", e);
+            logger.error("Error reaping stale WebSocket sessions", e);
         }
     }
 
@@ -142,10 +200,10 @@ public class WebSocketPresenceHandler {
         cancelOfflineTask(userId);
 
         // Lên lịch tác vụ mới
-        ScheduledFuture<?> future = taskScheduler.schedule(() -> {
+        HashedWheelTimer.Timeout future = hashedWheelTimer.schedule(() -> {
             try {
                 // Kiểm tra lại xem user có kết nối lại không
-                if (!onlineUsers.containsKey(userId)) {
+                if (!userSessionRegistry.isConnected(userId)) {
                     supportRequestService.removeUserHashtags(userId);
                     userService.updateUserStatus(userId, UserStatus.OFFLINE);
                     logger.info("🔴 User {} set to OFFLINE after disconnect timeout", userId);
@@ -155,7 +213,7 @@ public class WebSocketPresenceHandler {
             } catch (Exception e) {
                 logger.error("Error executing offline task for user {}", userId, e);
             }
-        }, Instant.now().plusSeconds(OFFLINE_DELAY_SECONDS));
+        }, OFFLINE_DELAY_SECONDS, TimeUnit.SECONDS);
 
         scheduledOfflineTasks.put(userId, future);
     }
@@ -164,9 +222,8 @@ public class WebSocketPresenceHandler {
      * Hủy tác vụ offline đã được lên lịch
      */
     private void cancelOfflineTask(Long userId) {
-        ScheduledFuture<?> future = scheduledOfflineTasks.remove(userId);
-        if (future != null && !future.isDone()) {
-            future.cancel(false);
+        HashedWheelTimer.Timeout future = scheduledOfflineTasks.remove(userId);
+        if (future != null && future.cancel()) {
             logger.debug("Cancelled offline task for user {}", userId);
         }
     }
@@ -214,8 +271,8 @@ public class WebSocketPresenceHandler {
         // Hủy tác vụ offline nếu có
         cancelOfflineTask(userId);
 
-        // Remove user khỏi danh sách online
-        onlineUsers.remove(userId);
+        // Bỏ mọi session của user
+        userSessionRegistry.unregisterUser(userId);
         supportRequestService.removeUserHashtags(userId);
         // Set status thành OFFLINE ngay lập tức
         userService.updateUserStatus(userId, UserStatus.OFFLINE);
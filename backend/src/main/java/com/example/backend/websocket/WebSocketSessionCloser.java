@@ -0,0 +1,61 @@
+package com.example.backend.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Giữ WebSocketSession đang mở theo id để server chủ động đóng được session
+ * (VD: session mất heartbeat). Id trùng với simpSessionId của STOMP.
+ */
+@Component
+public class WebSocketSessionCloser implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketSessionCloser.class);
+
+    private final Map<String, WebSocketSession> openSessions = new ConcurrentHashMap<>();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                openSessions.put(session.getId(), session);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                openSessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Đóng session nếu còn mở trên node này
+     *
+     * @return true nếu tìm thấy session
+     */
+    public boolean close(String sessionId, CloseStatus status) {
+        WebSocketSession session = openSessions.remove(sessionId);
+        if (session == null) {
+            return false;
+        }
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            logger.warn("Error closing WebSocket session {}: {}", sessionId, e.getMessage());
+        }
+        return true;
+    }
+}
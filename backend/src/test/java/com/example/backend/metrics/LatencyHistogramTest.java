@@ -0,0 +1,132 @@
+package com.example.backend.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+	@Test
+	void indexOfAndHighestValueOfRoundTrip() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			long value = i < 10_000 ? i : (long) (random.nextDouble() * LatencyHistogram.MAX_VALUE_MS);
+			assertBucketContains(value);
+		}
+		for (int bit = 0; bit < 31; bit++) {
+			long power = 1L << bit;
+			assertBucketContains(power - 1);
+			assertBucketContains(power);
+			assertBucketContains(power + 1);
+		}
+		assertBucketContains(LatencyHistogram.MAX_VALUE_MS);
+	}
+
+	@Test
+	void percentileStaysWithinRelativeErrorBound() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100_000; value++) {
+			histogram.record(value);
+		}
+
+		for (double percentile : new double[] { 1, 25, 50, 90, 99, 99.9 }) {
+			long exact = (long) Math.ceil(percentile / 100.0 * 100_000);
+			long reported = histogram.getValueAtPercentile(percentile);
+			assertTrue(reported >= exact, "p" + percentile + " below exact value: " + reported);
+			assertTrue(reported <= exact + exact / 32, "p" + percentile + " above error bound: " + reported);
+		}
+		assertEquals(100_000, histogram.getValueAtPercentile(100));
+		assertEquals(100_000, histogram.getMax());
+		assertEquals(50_000.5, histogram.getMean(), 1e-9);
+	}
+
+	@Test
+	void emptyHistogramReportsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0.0, histogram.getMean());
+		assertEquals(0, LatencyHistogram.decode(histogram.encode()).getTotalCount());
+	}
+
+	@Test
+	void valuesOutOfRangeAreClamped() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(LatencyHistogram.MAX_VALUE_MS, histogram.getMax());
+	}
+
+	@Test
+	void encodeDecodeRoundTrip() {
+		LatencyHistogram histogram = randomHistogram(7, 5_000);
+
+		LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+
+		assertSameDistribution(histogram, decoded);
+		assertArrayEquals(histogram.encode(), decoded.encode());
+	}
+
+	@Test
+	void decodeRejectsUnknownVersion() {
+		byte[] data = new LatencyHistogram().encode();
+		data[0] = 99;
+
+		assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode(data));
+	}
+
+	@Test
+	void mergeEqualsRecordingAllValues() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		LatencyHistogram all = new LatencyHistogram();
+		Random random = new Random(3);
+		for (int i = 0; i < 10_000; i++) {
+			long value = (long) (Math.exp(random.nextDouble() * 15));
+			(i % 2 == 0 ? first : second).record(value);
+			all.record(value);
+		}
+
+		LatencyHistogram merged = LatencyHistogram.decode(first.encode());
+		merged.merge(LatencyHistogram.decode(second.encode()));
+
+		assertSameDistribution(all, merged);
+		assertArrayEquals(all.encode(), merged.encode());
+	}
+
+	private static void assertBucketContains(long value) {
+		int index = LatencyHistogram.indexOf(value);
+		long highest = LatencyHistogram.highestValueOf(index);
+
+		assertTrue(highest >= value, "bucket " + index + " ends before " + value);
+		assertEquals(index, LatencyHistogram.indexOf(highest), "highest value of bucket " + index);
+		if (index > 0) {
+			assertTrue(LatencyHistogram.highestValueOf(index - 1) < value, "bucket " + (index - 1) + " contains " + value);
+		}
+	}
+
+	private static LatencyHistogram randomHistogram(long seed, int samples) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(seed);
+		for (int i = 0; i < samples; i++) {
+			histogram.record((long) (Math.exp(random.nextDouble() * 20)));
+		}
+		return histogram;
+	}
+
+	private static void assertSameDistribution(LatencyHistogram expected, LatencyHistogram actual) {
+		assertEquals(expected.getTotalCount(), actual.getTotalCount());
+		assertEquals(expected.getMax(), actual.getMax());
+		assertEquals(expected.getMean(), actual.getMean(), 1e-9);
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			assertEquals(expected.getValueAtPercentile(percentile), actual.getValueAtPercentile(percentile));
+		}
+	}
+}
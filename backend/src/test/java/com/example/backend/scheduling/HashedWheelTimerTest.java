@@ -0,0 +1,105 @@
+package com.example.backend.scheduling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+	private static final long TICK_MS = 10;
+
+	// 4 ô x 10ms: mọi delay trên 40ms phải quay hết ít nhất một vòng bánh xe
+	private HashedWheelTimer timer;
+
+	@BeforeEach
+	void setUp() {
+		timer = new HashedWheelTimer("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 4, Runnable::run);
+	}
+
+	@AfterEach
+	void tearDown() {
+		timer.stop();
+	}
+
+	@Test
+	void timeoutBeyondOneRotationFiresAfterItsDeadline() throws InterruptedException {
+		CountDownLatch fired = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		HashedWheelTimer.Timeout timeout = timer.schedule(fired::countDown, 150, TimeUnit.MILLISECONDS);
+
+		assertTrue(fired.await(2, TimeUnit.SECONDS));
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(elapsedMs >= 150, "fired early after " + elapsedMs + "ms");
+		assertTrue(timeout.isExpired());
+		assertEquals(1, timer.getFiredCount());
+		assertEquals(0, timer.getPendingCount());
+	}
+
+	@Test
+	void timeoutsSpanningSeveralRotationsFireInDeadlineOrder() throws InterruptedException {
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CountDownLatch fired = new CountDownLatch(5);
+
+		// Cùng ô trên bánh xe (cách nhau đúng một vòng 40ms) nhưng khác số vòng còn lại
+		for (int i = 4; i >= 0; i--) {
+			int id = i;
+			timer.schedule(() -> {
+				order.add(id);
+				fired.countDown();
+			}, 20 + id * 40L, TimeUnit.MILLISECONDS);
+		}
+
+		assertTrue(fired.await(2, TimeUnit.SECONDS));
+		assertEquals(List.of(0, 1, 2, 3, 4), order);
+	}
+
+	@Test
+	void cancelledTimeoutNeverFires() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch later = new CountDownLatch(1);
+
+		HashedWheelTimer.Timeout cancelled = timer.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+		timer.schedule(later::countDown, 120, TimeUnit.MILLISECONDS);
+
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(cancelled.isCancelled());
+
+		assertTrue(later.await(2, TimeUnit.SECONDS));
+		assertEquals(0, runs.get());
+		assertFalse(cancelled.isExpired());
+		assertEquals(1, timer.getCancelledCount());
+		assertEquals(1, timer.getFiredCount());
+		assertEquals(0, timer.getPendingCount());
+	}
+
+	@Test
+	void cancelAfterFiringReturnsFalse() throws InterruptedException {
+		CountDownLatch fired = new CountDownLatch(1);
+
+		HashedWheelTimer.Timeout timeout = timer.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+
+		assertTrue(fired.await(2, TimeUnit.SECONDS));
+		assertFalse(timeout.cancel());
+		assertEquals(0, timer.getCancelledCount());
+	}
+
+	@Test
+	void scheduleAfterStopIsRejected() {
+		timer.stop();
+
+		assertThrows(IllegalStateException.class, () -> timer.schedule(() -> { }, 10, TimeUnit.MILLISECONDS));
+	}
+}
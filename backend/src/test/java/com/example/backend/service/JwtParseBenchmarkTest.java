@@ -0,0 +1,72 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * So sánh thời gian parseToken khi token chưa có trong cache (verify HMAC + parse JSON)
+ * với khi đã cache (SHA-256 của token + tra map).
+ * Mỗi vòng dùng một JwtService mới và một bộ token mới để lần parse đầu luôn là miss.
+ */
+class JwtParseBenchmarkTest {
+
+	private static final String SECRET = "benchmarkSecretKeyForJwtParseThatIsAtLeast256BitsLong";
+	private static final int TOKENS = 2_000;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 5;
+
+	@Test
+	void cachedParseIsFasterThanColdParse() {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runRound(i);
+		}
+
+		long coldNanos = 0;
+		long cachedNanos = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			long[] round = runRound(WARMUP_ROUNDS + i);
+			coldNanos += round[0];
+			cachedNanos += round[1];
+		}
+
+		long parses = (long) TOKENS * ROUNDS;
+		System.out.printf("parseToken: cold %d ns/op, cached %d ns/op (%d tokens x %d rounds)%n",
+				coldNanos / parses, cachedNanos / parses, TOKENS, ROUNDS);
+		assertTrue(cachedNanos < coldNanos,
+				"cached parse took " + cachedNanos + " ns, cold parse " + coldNanos + " ns");
+	}
+
+	/**
+	 * @return {tổng ns của lượt cold, tổng ns của lượt cached}
+	 */
+	private long[] runRound(int round) {
+		JwtService jwtService = JwtServiceTest.jwtService(SECRET, TOKENS);
+		List<String> tokens = new ArrayList<>(TOKENS);
+		for (int i = 0; i < TOKENS; i++) {
+			tokens.add(jwtService.generateToken((long) round * TOKENS + i, "user" + i + "@example.com", "USER"));
+		}
+
+		long start = System.nanoTime();
+		for (String token : tokens) {
+			jwtService.parseToken(token);
+		}
+		long cold = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (String token : tokens) {
+			jwtService.parseToken(token);
+		}
+		long cached = System.nanoTime() - start;
+
+		Map<String, Long> stats = jwtService.getCacheStats();
+		assertEquals((long) TOKENS, stats.get("misses").longValue());
+		assertEquals((long) TOKENS, stats.get("hits").longValue());
+		return new long[] { cold, cached };
+	}
+}
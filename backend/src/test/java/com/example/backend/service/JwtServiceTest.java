@@ -0,0 +1,132 @@
+package com.example.backend.service;
+
+import com.example.backend.security.JwtPrincipal;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtServiceTest {
+
+	private static final String SECRET = "testSecretKeyForJwtServiceTestThatIsAtLeast256BitsLong";
+
+	private JwtService jwtService;
+
+	@BeforeEach
+	void setUp() {
+		jwtService = jwtService(SECRET, 3);
+	}
+
+	@Test
+	void secondParseIsServedFromCache() {
+		String token = jwtService.generateToken(1L, "a@example.com", "USER");
+
+		JwtPrincipal first = jwtService.parseToken(token);
+		JwtPrincipal second = jwtService.parseToken(token);
+
+		assertEquals(first, second);
+		assertEquals(1L, second.userId().longValue());
+		assertEquals("a@example.com", second.email());
+		assertEquals("USER", second.role());
+		assertStats(1, 1, 1);
+	}
+
+	@Test
+	void expiredCachedPrincipalIsNotReturned() {
+		String token = jwtService.generateToken(1L, "a@example.com", "USER");
+		JwtPrincipal valid = jwtService.parseToken(token);
+
+		// Principal trong cache đã hết hạn (VD: cache giữ lâu hơn token): phải verify lại
+		JwtPrincipal expired = new JwtPrincipal(1L, "a@example.com", "USER", Instant.now().minusSeconds(1));
+		principalCache().put(ReflectionTestUtils.invokeMethod(jwtService, "digest", token), expired);
+
+		JwtPrincipal parsed = jwtService.parseToken(token);
+
+		assertEquals(valid, parsed);
+		assertStats(0, 2, 1);
+	}
+
+	@Test
+	void leastRecentlyUsedTokenIsEvictedAtCapacity() {
+		String a = jwtService.generateToken(1L, "a@example.com", "USER");
+		String b = jwtService.generateToken(2L, "b@example.com", "USER");
+		String c = jwtService.generateToken(3L, "c@example.com", "USER");
+		String d = jwtService.generateToken(4L, "d@example.com", "USER");
+
+		jwtService.parseToken(a);
+		jwtService.parseToken(b);
+		jwtService.parseToken(c);
+		jwtService.parseToken(a); // a thành token dùng gần nhất, b là token cũ nhất
+		jwtService.parseToken(d); // vượt capacity = 3: b bị bỏ
+		assertStats(1, 4, 3);
+
+		jwtService.parseToken(a);
+		jwtService.parseToken(c);
+		jwtService.parseToken(d);
+		assertStats(4, 4, 3);
+
+		jwtService.parseToken(b);
+		assertStats(4, 5, 3);
+	}
+
+	@Test
+	void revokedTokenIsRejectedAndRemovedFromCache() {
+		String token = jwtService.generateToken(1L, "a@example.com", "USER");
+		JwtPrincipal principal = jwtService.parseToken(token);
+
+		jwtService.revokeToken(principal, token);
+
+		assertThrows(JwtException.class, () -> jwtService.parseToken(token));
+		assertEquals(0L, jwtService.getCacheStats().get("size").longValue());
+		assertEquals(1L, jwtService.getCacheStats().get("revoked").longValue());
+
+		// Token khác của cùng user không bị ảnh hưởng
+		String other = jwtService.generateToken(1L, "a@example.com", "ADMIN");
+		assertEquals("ADMIN", jwtService.parseToken(other).role());
+	}
+
+	@Test
+	void tokenWithInvalidSignatureIsNeverCached() {
+		String forged = jwtService(SECRET.replace('t', 'x'), 3).generateToken(1L, "a@example.com", "ADMIN");
+
+		assertThrows(JwtException.class, () -> jwtService.parseToken(forged));
+		assertThrows(JwtException.class, () -> jwtService.parseToken(forged));
+
+		// Mỗi lần đều verify lại chữ ký
+		assertStats(0, 2, 0);
+	}
+
+	@Test
+	void cacheStatsReportConfiguredCapacity() {
+		assertEquals(3L, jwtService.getCacheStats().get("capacity").longValue());
+	}
+
+	private void assertStats(long hits, long misses, long size) {
+		Map<String, Long> stats = jwtService.getCacheStats();
+		assertEquals(hits, stats.get("hits").longValue());
+		assertEquals(misses, stats.get("misses").longValue());
+		assertEquals(size, stats.get("size").longValue());
+		assertTrue(stats.get("size") <= stats.get("capacity"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, JwtPrincipal> principalCache() {
+		return (Map<String, JwtPrincipal>) ReflectionTestUtils.getField(jwtService, "principalCache");
+	}
+
+	static JwtService jwtService(String secret, int capacity) {
+		JwtService service = new JwtService();
+		ReflectionTestUtils.setField(service, "secretKey", secret);
+		ReflectionTestUtils.setField(service, "jwtExpiration", 60_000L);
+		ReflectionTestUtils.setField(service, "maxCachedTokens", capacity);
+		service.init();
+		return service;
+	}
+}
@@ -0,0 +1,325 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * S3MultipartUploader với S3Client giả lập trong bộ nhớ (part size nhỏ nhất 5MB)
+ */
+class S3MultipartUploaderTest {
+
+	private static final int PART_SIZE = 5 * 1024 * 1024;
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "recordings/session-1/video.mp4";
+
+	private final FakeS3Client s3Client = new FakeS3Client();
+	private S3MultipartUploader uploader;
+
+	@AfterEach
+	void tearDown() {
+		if (uploader != null) {
+			uploader.shutdown();
+		}
+	}
+
+	@Test
+	void inputSmallerThanOnePartIsSentWithSinglePut() throws IOException {
+		uploader = uploader(4, 2);
+		byte[] data = data(1000);
+
+		long uploaded = upload(new ByteArrayInputStream(data));
+
+		assertEquals(1000L, uploaded);
+		assertArrayEquals(data, s3Client.putObjectBody.get());
+		assertEquals(0, s3Client.createCalls.get(), "multipart upload created");
+		assertEquals(0, s3Client.uploadPartCalls.get(), "parts uploaded");
+	}
+
+	@Test
+	void exactMultipleOfPartSizeHasNoEmptyTrailingPart() throws IOException {
+		uploader = uploader(4, 2);
+		byte[] data = data(3 * PART_SIZE);
+
+		long uploaded = upload(new ByteArrayInputStream(data));
+
+		assertEquals(3L * PART_SIZE, uploaded);
+		assertEquals(3, s3Client.uploadPartCalls.get(), "uploadPart calls");
+		assertEquals(List.of(1, 2, 3), s3Client.completedPartNumbers());
+		assertArrayEquals(data, s3Client.assembled(3));
+		assertEquals(0, s3Client.abortCalls.get(), "abort calls");
+	}
+
+	@Test
+	void partFailingOnceIsRetried() throws IOException {
+		uploader = uploader(4, 2);
+		s3Client.failures.put(2, new AtomicInteger(1));
+		byte[] data = data(2 * PART_SIZE + 123);
+
+		long uploaded = upload(new ByteArrayInputStream(data));
+
+		assertEquals(data.length, uploaded);
+		// Part 2 được gửi hai lần, các part khác một lần
+		assertEquals(4, s3Client.uploadPartCalls.get(), "uploadPart calls");
+		assertEquals(List.of(1, 2, 3), s3Client.completedPartNumbers());
+		assertArrayEquals(data, s3Client.assembled(3));
+		assertEquals(0, s3Client.abortCalls.get(), "abort calls");
+	}
+
+	@Test
+	void partFailingOnEveryAttemptAbortsWithoutComplete() {
+		uploader = uploader(4, 2);
+		s3Client.failures.put(2, new AtomicInteger(Integer.MAX_VALUE));
+		byte[] data = data(3 * PART_SIZE);
+
+		IOException error = assertThrows(IOException.class, () -> upload(new ByteArrayInputStream(data)));
+
+		assertTrue(error.getCause() instanceof S3Exception, "cause is " + error.getCause());
+		// Lần đầu + 2 lần retry
+		assertEquals(3, s3Client.attempts(2), "attempts for part 2");
+		assertEquals(1, s3Client.abortCalls.get(), "abort calls");
+		assertEquals(0, s3Client.completeCalls.get(), "complete calls");
+	}
+
+	@Test
+	void inFlightPartsAreBoundedByUploadConcurrency() throws Exception {
+		uploader = uploader(2, 0);
+		CountDownLatch unblock = new CountDownLatch(1);
+		s3Client.blockUploads = unblock;
+		CountingInputStream input = new CountingInputStream(new ByteArrayInputStream(data(5 * PART_SIZE)));
+
+		AtomicReference<Object> result = new AtomicReference<>();
+		Thread uploadThread = new Thread(() -> {
+			try {
+				result.set(upload(input));
+			} catch (Exception e) {
+				result.set(e);
+			}
+		});
+		uploadThread.start();
+
+		assertTrue(s3Client.awaitInFlight(2, 5), "two parts in flight");
+		Thread.sleep(200);
+		// Hai buffer đang được upload: không đọc thêm part thứ ba
+		assertEquals(2, s3Client.inFlight.get(), "parts in flight");
+		assertEquals(2L * PART_SIZE, input.bytesRead.get(), "bytes read while uploads are blocked");
+
+		unblock.countDown();
+		uploadThread.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(uploadThread.isAlive(), "upload finished");
+
+		assertEquals(5L * PART_SIZE, result.get());
+		assertEquals(2, s3Client.maxInFlight.get(), "max parts in flight");
+		assertEquals(List.of(1, 2, 3, 4, 5), s3Client.completedPartNumbers());
+	}
+
+	private S3MultipartUploader uploader(int concurrency, int maxPartRetries) {
+		S3MultipartUploader uploader = new S3MultipartUploader(5, concurrency, maxPartRetries);
+		ReflectionTestUtils.setField(uploader, "s3Client", s3Client);
+		return uploader;
+	}
+
+	private long upload(InputStream input) throws IOException {
+		return uploader.upload(input, BUCKET, KEY, "video/mp4", Map.of("session-id", "session-1"));
+	}
+
+	private static byte[] data(int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (i * 31 + i / PART_SIZE);
+		}
+		return data;
+	}
+
+	private static byte[] read(RequestBody body) {
+		try (InputStream stream = body.contentStreamProvider().newStream()) {
+			return stream.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static final class CountingInputStream extends InputStream {
+
+		private final InputStream delegate;
+		private final AtomicLong bytesRead = new AtomicLong();
+
+		private CountingInputStream(InputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = delegate.read();
+			if (b >= 0) {
+				bytesRead.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = delegate.read(b, off, len);
+			if (n > 0) {
+				bytesRead.addAndGet(n);
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * S3Client chỉ cài các thao tác uploader dùng, giữ nội dung từng part trong bộ nhớ
+	 */
+	private static final class FakeS3Client implements S3Client {
+
+		private final AtomicInteger createCalls = new AtomicInteger();
+		private final AtomicInteger uploadPartCalls = new AtomicInteger();
+		private final AtomicInteger completeCalls = new AtomicInteger();
+		private final AtomicInteger abortCalls = new AtomicInteger();
+		private final AtomicReference<byte[]> putObjectBody = new AtomicReference<>();
+
+		// partNumber -> số lần còn lại sẽ lỗi
+		private final Map<Integer, AtomicInteger> failures = new ConcurrentHashMap<>();
+		private final Map<Integer, AtomicInteger> attemptsByPart = new ConcurrentHashMap<>();
+		private final Map<Integer, byte[]> partBodies = new ConcurrentHashMap<>();
+		private final AtomicReference<List<CompletedPart>> completedParts = new AtomicReference<>();
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private volatile CountDownLatch blockUploads;
+
+		@Override
+		public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+			putObjectBody.set(read(body));
+			return PutObjectResponse.builder().eTag("put").build();
+		}
+
+		@Override
+		public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+			createCalls.incrementAndGet();
+			return CreateMultipartUploadResponse.builder().uploadId("upload-1").build();
+		}
+
+		@Override
+		public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+			uploadPartCalls.incrementAndGet();
+			int partNumber = request.partNumber();
+			attemptsByPart.computeIfAbsent(partNumber, n -> new AtomicInteger()).incrementAndGet();
+
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				CountDownLatch latch = blockUploads;
+				if (latch != null && !latch.await(10, TimeUnit.SECONDS)) {
+					throw new IllegalStateException("upload was never unblocked");
+				}
+				AtomicInteger remaining = failures.get(partNumber);
+				if (remaining != null && remaining.getAndDecrement() > 0) {
+					throw S3Exception.builder().message("part " + partNumber + " failed").statusCode(500).build();
+				}
+				byte[] bytes = read(body);
+				assertEquals(bytes.length, request.contentLength().intValue());
+				partBodies.put(partNumber, bytes);
+				return UploadPartResponse.builder().eTag("etag-" + partNumber).build();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		}
+
+		@Override
+		public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+			completeCalls.incrementAndGet();
+			completedParts.set(request.multipartUpload().parts());
+			return CompleteMultipartUploadResponse.builder().key(request.key()).build();
+		}
+
+		@Override
+		public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+			abortCalls.incrementAndGet();
+			return AbortMultipartUploadResponse.builder().build();
+		}
+
+		private int attempts(int partNumber) {
+			AtomicInteger attempts = attemptsByPart.get(partNumber);
+			return attempts == null ? 0 : attempts.get();
+		}
+
+		private List<Integer> completedPartNumbers() {
+			List<CompletedPart> parts = completedParts.get();
+			assertTrue(parts != null, "completeMultipartUpload was not called");
+			parts.forEach(part -> assertEquals("etag-" + part.partNumber(), part.eTag()));
+			return parts.stream().map(CompletedPart::partNumber).toList();
+		}
+
+		private byte[] assembled(int parts) {
+			int length = 0;
+			for (int i = 1; i <= parts; i++) {
+				length += partBodies.get(i).length;
+			}
+			byte[] all = new byte[length];
+			int offset = 0;
+			for (int i = 1; i <= parts; i++) {
+				byte[] part = partBodies.get(i);
+				System.arraycopy(part, 0, all, offset, part.length);
+				offset += part.length;
+			}
+			return all;
+		}
+
+		private boolean awaitInFlight(int expected, int timeoutSeconds) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+			while (inFlight.get() < expected) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				Thread.sleep(10);
+			}
+			return true;
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.example.backend.websocket;
+
+import com.example.backend.dto.notification.RequestSnapshot;
+import com.example.backend.dto.notification.SupportUpdateNotification;
+import com.example.backend.enums.ResponseStatus;
+import com.example.backend.enums.SupportRequestStatus;
+import com.example.backend.model.SupportRequest;
+import com.example.backend.model.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * So sánh số byte cấp phát khi gửi một notification tới nhiều người nhận:
+ * cách cũ (HashMap lồng nhau + convertAndSendToUser, Jackson chạy cho từng người nhận)
+ * với cách hiện tại (serialize một lần + NotificationSender.sendToUser).
+ */
+class NotificationSendAllocationTest {
+
+	private static final String DESTINATION = "/topic/support-updates";
+	private static final Long[] RECIPIENTS = { 1L, 2L };
+	private static final int WARMUP = 20_000;
+	private static final int ITERATIONS = 20_000;
+
+	private final com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private ObjectMapper objectMapper;
+	private SimpMessagingTemplate messagingTemplate;
+	private NotificationSender notificationSender;
+	private SupportRequest request;
+
+	private Message<?> lastSent;
+	private long sentCount;
+
+	@BeforeEach
+	void setUp() {
+		objectMapper = new ObjectMapper().findAndRegisterModules()
+				.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+		messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+			lastSent = message;
+			sentCount++;
+			return true;
+		});
+		MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+		converter.setObjectMapper(objectMapper);
+		messagingTemplate.setMessageConverter(converter);
+
+		UserNotificationBuffer buffer = new UserNotificationBuffer();
+		ReflectionTestUtils.setField(buffer, "capacity", 256);
+		ReflectionTestUtils.setField(buffer, "retentionMinutes", 10L);
+
+		notificationSender = new NotificationSender();
+		ReflectionTestUtils.setField(notificationSender, "objectMapper", objectMapper);
+		ReflectionTestUtils.setField(notificationSender, "messagingTemplate", messagingTemplate);
+		ReflectionTestUtils.setField(notificationSender, "notificationBuffer", buffer);
+
+		request = new SupportRequest();
+		request.setId(42L);
+		request.setType("quick_support");
+		request.setStatus(SupportRequestStatus.COMPLETED);
+		request.setResponse(ResponseStatus.ACCEPT);
+		request.setCreatedAt(LocalDateTime.of(2025, 1, 2, 3, 4, 5));
+		request.setUser(user(1L, "Nguyễn Văn A", "a@example.com"));
+		request.setAgent(user(2L, "Trần Thị B", "b@example.com"));
+	}
+
+	@Test
+	void bothPathsSendTheSameJson() throws Exception {
+		sendWithNestedMaps(RECIPIENTS[0]);
+		JsonNode nested = objectMapper.readTree((byte[]) lastSent.getPayload());
+
+		sendSerializedOnce(RECIPIENTS[0]);
+		JsonNode serialized = objectMapper.readTree((byte[]) lastSent.getPayload());
+
+		// timestamp khác nhau giữa hai lần gửi
+		((ObjectNode) nested).remove("timestamp");
+		((ObjectNode) serialized).remove("timestamp");
+		assertEquals(nested, serialized);
+	}
+
+	@Test
+	void serializeOnceAllocatesLessPerNotification() {
+		measure(() -> sendWithNestedMaps(RECIPIENTS), WARMUP);
+		measure(() -> sendSerializedOnce(RECIPIENTS), WARMUP);
+
+		long nestedBytes = measure(() -> sendWithNestedMaps(RECIPIENTS), ITERATIONS);
+		long serializedBytes = measure(() -> sendSerializedOnce(RECIPIENTS), ITERATIONS);
+
+		System.out.printf("%d recipients: nested maps + convertAndSend %d B/notification,"
+				+ " serialize once + send %d B/notification%n",
+				RECIPIENTS.length, nestedBytes, serializedBytes);
+		assertTrue(serializedBytes < nestedBytes,
+				"serialize once allocated " + serializedBytes + " B, nested maps " + nestedBytes + " B");
+		assertEquals(2L * (WARMUP + ITERATIONS) * RECIPIENTS.length, sentCount);
+	}
+
+	/**
+	 * Số byte cấp phát trung bình cho mỗi lần chạy
+	 */
+	private long measure(Runnable send, int iterations) {
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < iterations; i++) {
+			send.run();
+		}
+		return (threadBean.getThreadAllocatedBytes(threadId) - before) / iterations;
+	}
+
+	// Cách gửi trước khi có NotificationSender: mỗi người nhận một map và một lần Jackson
+	private void sendWithNestedMaps(Long... recipients) {
+		for (Long userId : recipients) {
+			Map<String, Object> notification = new HashMap<>();
+			notification.put("type", "request_completed");
+			notification.put("message", "Yêu cầu hỗ trợ đã hoàn thành");
+			notification.put("timestamp", System.currentTimeMillis());
+
+			Map<String, Object> requestData = new HashMap<>();
+			requestData.put("id", request.getId());
+			requestData.put("status", request.getStatus());
+			requestData.put("type", request.getType());
+			requestData.put("createdAt", request.getCreatedAt());
+			requestData.put("response", request.getResponse());
+
+			Map<String, Object> agentData = new HashMap<>();
+			agentData.put("id", request.getAgent().getId());
+			agentData.put("fullName", request.getAgent().getFullName());
+			agentData.put("email", request.getAgent().getEmail());
+			requestData.put("agent", agentData);
+
+			Map<String, Object> userData = new HashMap<>();
+			userData.put("id", request.getUser().getId());
+			userData.put("fullName", request.getUser().getFullName());
+			userData.put("email", request.getUser().getEmail());
+			requestData.put("user", userData);
+
+			notification.put("request", requestData);
+			messagingTemplate.convertAndSendToUser(userId.toString(), DESTINATION, notification);
+		}
+	}
+
+	// Cách gửi hiện tại (WebSocketBroadcastService.sendSupportUpdate)
+	private void sendSerializedOnce(Long... recipients) {
+		String requestJson = notificationSender.serializeToString(RequestSnapshot.of(request));
+		byte[] payload = notificationSender.serialize(new SupportUpdateNotification(
+				"request_completed", "Yêu cầu hỗ trợ đã hoàn thành", System.currentTimeMillis(), requestJson));
+		for (Long userId : recipients) {
+			notificationSender.sendToUser(userId, DESTINATION, payload);
+		}
+	}
+
+	private static User user(Long id, String fullName, String email) {
+		User user = new User();
+		user.setId(id);
+		user.setFullName(fullName);
+		user.setEmail(email);
+		return user;
+	}
+}
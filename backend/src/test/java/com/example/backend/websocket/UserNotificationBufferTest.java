@@ -0,0 +1,136 @@
+package com.example.backend.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserNotificationBufferTest {
+
+	private static final Long USER_ID = 7L;
+	private static final String DESTINATION = "/topic/support-updates";
+
+	private UserNotificationBuffer buffer;
+
+	@BeforeEach
+	void setUp() {
+		buffer = new UserNotificationBuffer();
+		ReflectionTestUtils.setField(buffer, "capacity", 3);
+		ReflectionTestUtils.setField(buffer, "retentionMinutes", 10L);
+	}
+
+	@Test
+	void appendAssignsIncreasingSeqAndDeliversInOrder() {
+		List<UserNotificationBuffer.Frame> delivered = new ArrayList<>();
+
+		for (int i = 0; i < 5; i++) {
+			buffer.append(USER_ID, DESTINATION, payload(i), delivered::add);
+		}
+
+		assertEquals(5, delivered.size());
+		for (int i = 1; i < delivered.size(); i++) {
+			assertEquals(delivered.get(i - 1).seq() + 1, delivered.get(i).seq());
+		}
+		assertEquals(delivered.get(4).seq(), buffer.latestSeq(USER_ID));
+	}
+
+	@Test
+	void replayAfterWraparoundSendsOnlyRetainedFramesAndIsIncomplete() {
+		List<Long> seqs = appendFrames(5);
+
+		List<UserNotificationBuffer.Frame> replayed = new ArrayList<>();
+		UserNotificationBuffer.Replay replay = buffer.replay(USER_ID, seqs.get(0), replayed::add);
+
+		// Frame thứ 2 đã bị ghi đè (capacity = 3): client lỡ mất một frame
+		assertFalse(replay.complete());
+		assertEquals(3, replay.replayed());
+		assertEquals(seqs.subList(2, 5), replayed.stream().map(UserNotificationBuffer.Frame::seq).toList());
+		assertEquals("2", new String(replayed.get(0).payload(), StandardCharsets.UTF_8));
+		assertEquals(seqs.get(4).longValue(), replay.latestSeq());
+	}
+
+	@Test
+	void replayFromOldestRetainedNeighbourIsComplete() {
+		List<Long> seqs = appendFrames(5);
+
+		List<UserNotificationBuffer.Frame> replayed = new ArrayList<>();
+		UserNotificationBuffer.Replay replay = buffer.replay(USER_ID, seqs.get(1), replayed::add);
+
+		assertTrue(replay.complete());
+		assertEquals(seqs.subList(2, 5), replayed.stream().map(UserNotificationBuffer.Frame::seq).toList());
+	}
+
+	@Test
+	void replayWhenUpToDateSendsNothing() {
+		List<Long> seqs = appendFrames(2);
+
+		UserNotificationBuffer.Replay replay = buffer.replay(USER_ID, seqs.get(1), frame -> {
+			throw new AssertionError("nothing to replay");
+		});
+
+		assertTrue(replay.complete());
+		assertEquals(0, replay.replayed());
+	}
+
+	@Test
+	void replayWithSeqFromAnotherBufferIsIncomplete() {
+		List<Long> seqs = appendFrames(2);
+
+		UserNotificationBuffer.Replay replay = buffer.replay(USER_ID, seqs.get(1) + 100, frame -> { });
+
+		assertFalse(replay.complete());
+		assertEquals(0, replay.replayed());
+	}
+
+	@Test
+	void replayForUnknownUserIsIncomplete() {
+		UserNotificationBuffer.Replay replay = buffer.replay(99L, 0L, frame -> {
+			throw new AssertionError("unknown user has no frames");
+		});
+
+		assertFalse(replay.complete());
+		assertEquals(0, replay.replayed());
+	}
+
+	@Test
+	void replayAfterIdleEvictionIsIncompleteAndNewFramesStartFresh() {
+		List<Long> seqs = appendFrames(2);
+
+		// Retention âm: mọi buffer đều bị xem là idle
+		ReflectionTestUtils.setField(buffer, "retentionMinutes", -1L);
+		ReflectionTestUtils.invokeMethod(buffer, "evictIdle");
+		assertEquals(0, buffer.size());
+
+		UserNotificationBuffer.Replay replay = buffer.replay(USER_ID, seqs.get(1), frame -> { });
+		assertFalse(replay.complete());
+
+		List<UserNotificationBuffer.Frame> delivered = new ArrayList<>();
+		buffer.append(USER_ID, DESTINATION, payload(9), delivered::add);
+		assertEquals(1, delivered.size());
+		assertEquals(1, buffer.size());
+
+		List<UserNotificationBuffer.Frame> replayed = new ArrayList<>();
+		UserNotificationBuffer.Replay fresh = buffer.replay(USER_ID, delivered.get(0).seq() - 1, replayed::add);
+		assertTrue(fresh.complete());
+		assertEquals(1, replayed.size());
+	}
+
+	private List<Long> appendFrames(int count) {
+		List<Long> seqs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			seqs.add(buffer.append(USER_ID, DESTINATION, payload(i), frame -> { }).seq());
+		}
+		return seqs;
+	}
+
+	private static byte[] payload(int i) {
+		return Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -37,20 +37,33 @@ export const WebSocketProvider = ({ children }) => {
   const autoReconnectEnabledRef = useRef(true);
   const componentMountedRef = useRef(true);
 
+  // Seq notification cuối cùng đã xử lý (header "seq" trên /user/topic/...),
+  // dùng để chỉ nhận lại các frame bị lỡ khi kết nối lại
+  const lastSeqRef = useRef(0);
+  const seqUserIdRef = useRef(null);
+  const replayPendingRef = useRef(false);
+  const pendingFramesRef = useRef([]);
+  const replayTimeoutRef = useRef(null);
+
   const WEBSOCKET_URL = "http://localhost:8081/ws";
   const RECONNECT_DELAY = 3000;
   const MAX_RECONNECT_ATTEMPTS = 5;
+  const REPLAY_TIMEOUT = 5000;
 
   const getRoleChannels = useCallback((role, userId) => {
-    const baseChannels = [`/user/${userId}/topic/support-updates`, `/user/${userId}/topic/permission-updates`, `/user/${userId}/topic/call-updates`];
+    const baseChannels = ["/user/topic/support-updates", "/user/topic/permission-updates", "/user/topic/call-updates"];
 
     switch (role) {
       case "USER":
-        return [...baseChannels, "/topic/users/status-changes", `/topic/${userId}/force-logout`];
+        // Snapshot agent online được gửi một lần khi subscribe, sau đó cập nhật qua USER_STATUS_BATCH
+        return [...baseChannels, "/topic/users/status-changes", "/app/users/status-snapshot", `/topic/${userId}/force-logout`];
       case "AGENT":
         return [...baseChannels, `/topic/${userId}/force-logout`];
-      case "ADMIN":
-        return [...baseChannels, "/topic/users/status-changes"];
+      case "ADMIN": {
+        // Luồng giám sát gửi riêng tới session của admin (thay cho bản sao gửi tới user 1),
+        // batch trạng thái của mọi user cũng đi qua đây thay vì topic công khai
+        return [...baseChannels, "/user/queue/admin-monitor"];
+      }
       default:
         return baseChannels;
     }
@@ -62,6 +75,11 @@ export const WebSocketProvider = ({ children }) => {
       reconnectTimeoutRef.current = null;
     }
 
+    // Replay đang chờ bị hủy; các frame giữ lại có seq > lastSeq nên sẽ được gửi lại ở lần kết nối sau
+    clearTimeout(replayTimeoutRef.current);
+    replayPendingRef.current = false;
+    pendingFramesRef.current = [];
+
     if (stompClientRef.current) {
       try {
         // Đóng tất cả subscriptions trước khi deactivate
@@ -111,6 +129,12 @@ export const WebSocketProvider = ({ children }) => {
     if (userData) {
       setUserRole(userData.role);
       setUserId(userData.id);
+
+      // Seq đánh theo từng user, đổi tài khoản thì bắt đầu lại
+      if (seqUserIdRef.current !== userData.id) {
+        seqUserIdRef.current = userData.id;
+        lastSeqRef.current = 0;
+      }
     }
 
     setConnectionStatus("connecting");
@@ -151,6 +175,7 @@ export const WebSocketProvider = ({ children }) => {
 
           if (userData) {
             subscribeToRoleChannels(userData.role, userData.id);
+            requestReplay(client);
           }
           resubscribeAll();
         },
@@ -305,10 +330,7 @@ export const WebSocketProvider = ({ children }) => {
     [getRoleChannels]
   );
 
-  const handleRoleChannelMessage = useCallback((topic, message) => {
-  try {
-    const data = JSON.parse(message.body);
-
+  const dispatchRoleChannelMessage = useCallback((topic, data) => {
     const customEvent = new CustomEvent("roleChannelMessage", {
       detail: {
         topic,
@@ -318,10 +340,72 @@ export const WebSocketProvider = ({ children }) => {
       },
     });
     window.dispatchEvent(customEvent);
+  }, []);
+
+  // Xử lý các frame giữ lại trong lúc chờ replay theo thứ tự seq, bỏ frame trùng
+  const finishReplay = useCallback((summary) => {
+    clearTimeout(replayTimeoutRef.current);
+    if (!replayPendingRef.current) {
+      return;
+    }
+    replayPendingRef.current = false;
+
+    const frames = pendingFramesRef.current.sort((a, b) => a.seq - b.seq);
+    pendingFramesRef.current = [];
+    frames.forEach((frame) => {
+      if (frame.seq > lastSeqRef.current) {
+        lastSeqRef.current = frame.seq;
+        dispatchRoleChannelMessage(frame.topic, frame.data);
+      }
+    });
+
+    if (summary) {
+      lastSeqRef.current = Math.max(lastSeqRef.current, summary.latestSeq);
+      if (!summary.complete) {
+        // Một phần notification đã mất (buffer replay chỉ nằm trên node đã gửi, hoặc đã bị ghi đè):
+        // báo cho listener của notification_replay tải lại trạng thái từ REST
+        console.warn("Notification replay incomplete, state may be stale");
+        dispatchRoleChannelMessage(null, summary);
+      }
+    }
+  }, [dispatchRoleChannelMessage]);
+
+  // Gửi seq cuối cùng đã nhận, server gửi lại các frame bị lỡ rồi một frame notification_replay
+  const requestReplay = useCallback((client) => {
+    replayPendingRef.current = true;
+    pendingFramesRef.current = [];
+    client.publish({
+      destination: "/app/notifications/replay",
+      body: JSON.stringify({ lastSeq: lastSeqRef.current || null }),
+    });
+
+    clearTimeout(replayTimeoutRef.current);
+    replayTimeoutRef.current = setTimeout(() => finishReplay(null), REPLAY_TIMEOUT);
+  }, [finishReplay]);
+
+  const handleRoleChannelMessage = useCallback((topic, message) => {
+  try {
+    const data = JSON.parse(message.body);
+    const seq = Number(message.headers?.seq) || 0;
+
+    if (data.type === "notification_replay") {
+      finishReplay(data);
+    } else if (seq > 0) {
+      if (replayPendingRef.current) {
+        pendingFramesRef.current.push({ topic, seq, data });
+        return;
+      }
+      if (seq <= lastSeqRef.current) {
+        return; // đã nhận (qua replay)
+      }
+      lastSeqRef.current = seq;
+    }
+
+    dispatchRoleChannelMessage(topic, data);
   } catch (error) {
     console.error("Error parsing role channel message:", error);
   }
-}, []);
+}, [dispatchRoleChannelMessage, finishReplay]);
 
 
   const subscribe = useCallback((topic, callback) => {
@@ -1,6 +1,7 @@
 import { useState, useCallback, use } from "react";
 import { useRoleChannelListener } from "./useRoleChannelListener";
 import axios from "axios";
+import { useUser } from "../context/UserContext";
 
 export const useAdminSubscriptions = () => {
     const [logs, setLogs] = useState([]);
@@ -16,6 +17,7 @@ export const useAdminSubscriptions = () => {
     const [users, setUsers] = useState([]);
 
     const API_BASE_URL = "http://localhost:8081/api";
+    const { token } = useUser();
 
     const formatTime = (millis) => {
         const date = new Date(millis);
@@ -29,36 +31,31 @@ export const useAdminSubscriptions = () => {
         setLogs((prev) => [newLog, ...prev].slice(0, 30));
     };
 
-    useRoleChannelListener("USER_STATUS_CHANGE", (data) => {
+    useRoleChannelListener("USER_STATUS_BATCH", (data) => {
         try {
-            const { userId, status, timestamp, fullName } = data;
+            const changes = data.changes || [];
+            if (changes.length === 0) return;
 
-            console.log("User status change received:", {
-                userId,
-                fullName,
-                status,
-                timestamp,
+            const statusById = new Map(changes.map((change) => [change.userId, change.status]));
+            changes.forEach(({ userId, fullName, status, timestamp }) => {
+                addLog(`${fullName} (${userId}) chuyển sang ${status} lúc ${formatTime(timestamp)}`);
             });
 
-            setTimeout(() => {
-                fetchTotals();
-                        addLog(`${fullName} (${userId}) chuyển sang ${status} lúc ${formatTime(timestamp)}`);
-                        setUsers((prev) =>
-                            prev.map((u) =>
-                                u.id === userId ? { ...u, status: status} : u
-                            )
-                        );
-
-                        setAgents((prev) =>
-                            prev.map((u) =>
-                                u.id === userId ? { ...u, status: status} : u
-                            )
-                        );  
-            }, 500);
-            
-
+            setUsers((prev) =>
+                prev.map((u) =>
+                    statusById.has(u.id) ? { ...u, status: statusById.get(u.id) } : u
+                )
+            );
+            setAgents((prev) =>
+                prev.map((u) =>
+                    statusById.has(u.id) ? { ...u, status: statusById.get(u.id) } : u
+                )
+            );
+
+            // Một lần cho cả batch
+            fetchTotals();
         } catch (error) {
-            console.error("Error handling user status change:", error);
+            console.error("Error handling user status batch:", error);
 
             addLog("Lỗi khi xử lý user status change");
         }
@@ -146,6 +143,7 @@ export const useAdminSubscriptions = () => {
     });
 
     const fetchTotals = useCallback(async () => {
+        const authConfig = { headers: { Authorization: `Bearer ${token}` } };
         try {
         const [
             userRes,
@@ -153,10 +151,10 @@ export const useAdminSubscriptions = () => {
             callRes,
             metricRes,
         ] = await Promise.all([
-            axios.get(`${API_BASE_URL}/user/total`),
-            axios.get(`${API_BASE_URL}/agent/total`),
-            axios.get(`${API_BASE_URL}/agent/call/total`),
-            axios.get(`${API_BASE_URL}/record/summary`),
+            axios.get(`${API_BASE_URL}/user/total`, authConfig),
+            axios.get(`${API_BASE_URL}/agent/total`, authConfig),
+            axios.get(`${API_BASE_URL}/agent/call/total`, authConfig),
+            axios.get(`${API_BASE_URL}/record/summary`, authConfig),
         ]);
 
         setUserOnlineCount(userRes.data.total);
@@ -170,7 +168,7 @@ export const useAdminSubscriptions = () => {
         } catch (err) {
         console.error("Error fetching totals:", err);
         }
-    }, []);
+    }, [token]);
 
     return{
         logs,
@@ -201,12 +201,12 @@ export const useSupportRequestNotifications = () => {
       console.log("Subscribing to support updates for user:", user.id);
 
       // Subscribe to user-specific support updates
-      subscribe(`/user/${user.id}/topic/support-updates`, handleSupportUpdate);
+      subscribe("/user/topic/support-updates", handleSupportUpdate);
     }
 
     return () => {
       if (user) {
-        unsubscribe(`/user/${user.id}/topic/support-updates`);
+        unsubscribe("/user/topic/support-updates");
       }
     };
   }, [isConnected, token, user, subscribe, unsubscribe, handleSupportUpdate]);
@@ -81,30 +81,41 @@ export const useUserSubscriptions = () => {
     setAnnouncements((prev) => [data, ...prev.slice(0, 9)]);
   });
 
-  // Agent status changes (moved from useAgentPresence)
-  useRoleChannelListener("USER_STATUS_CHANGE", (data) => {
-    try {
-      const { userId, status, timestamp, fullName, email } = data;
-      console.log("User status change received:", {
-        userId,
-        fullName,
-        status,
-        timestamp,
-      });
+  // Snapshot/batch chỉ gồm agent và chỉ có id, tên, trạng thái
+  const toOnlineAgent = (entry) => ({
+    id: entry.userId,
+    fullName: entry.fullName,
+    role: "AGENT",
+    status: entry.status,
+  });
 
-      // Update own status if it's for current user
-      if (user && userId === user.id) {
-        // setAgentStatus(status);
-      }
-      setTimeout(() => {
-        console.log(
-          "User status changed, reloading online agents list after a short delay..."
-        );
+  // Danh sách agent online ban đầu, gửi khi subscribe /app/users/status-snapshot
+  useRoleChannelListener("USER_STATUS_SNAPSHOT", (data) => {
+    setOnlineAgents((data.agents || []).map(toOnlineAgent));
+  });
 
-        loadOnlineAgents();
-      }, 500);
+  // Các thay đổi trạng thái đã gộp, áp trực tiếp vào danh sách thay vì tải lại
+  useRoleChannelListener("USER_STATUS_BATCH", (data) => {
+    try {
+      const agentChanges = data.changes || [];
+      if (agentChanges.length === 0) return;
+
+      setOnlineAgents((prev) => {
+        const byId = new Map(prev.map((agent) => [agent.id, agent]));
+        agentChanges.forEach((change) => {
+          if (change.status === "ONLINE") {
+            byId.set(change.userId, {
+              ...byId.get(change.userId),
+              ...toOnlineAgent(change),
+            });
+          } else {
+            byId.delete(change.userId);
+          }
+        });
+        return Array.from(byId.values());
+      });
     } catch (error) {
-      console.error("Error handling user status change:", error);
+      console.error("Error handling user status batch:", error);
     }
   });
 
@@ -88,6 +88,10 @@ export const VideoCall = () => {
           key: sessionId,
           rating,
           feedback: feedback || ""
+        }, {
+          headers: {
+            Authorization: `Bearer ${token}`,
+          },
         });
       }
 
@@ -6,6 +6,7 @@ import AddUserModal from "../../components/AdminUser/AddUserModel";
 import SearchBar from "../../components/AdminUser/SearchBar";
 import StarRating from "../../components/AdminDashboard/StarRating";
 import { useAdminSubscriptions } from "../../hooks/useAdminSubscriptions";
+import { useUser } from "../../context/UserContext";
 import * as XLSX from "xlsx";
 
 
@@ -32,13 +33,16 @@ export default function AdminAgent() {
   const [topTime, setTopTime] = useState(null);
 
   const API_BASE_URL = "http://localhost:8081/api";
+  const { token } = useUser();
+  const authConfig = { headers: { Authorization: `Bearer ${token}` } };
 
   // Fetch agents
   const fetchAgents = async (keyword = "", pageNum = page) => {
     try {
       setIsLoading(true);
       const res = await axios.get(
-        `${API_BASE_URL}/agent?q=${keyword}&page=${pageNum}&size=${size}&sort=id,asc`
+        `${API_BASE_URL}/agent?q=${keyword}&page=${pageNum}&size=${size}&sort=id,asc`,
+        authConfig
       );
 
       setAgents(res.data.content);
@@ -55,9 +59,9 @@ export default function AdminAgent() {
   const fetchTopStats = async () => {
     try {
       const [ratingRes, callsRes, timeRes] = await Promise.all([
-        axios.get(`${API_BASE_URL}/agent/top-rating`),
-        axios.get(`${API_BASE_URL}/agent/top-total-calls`),
-        axios.get(`${API_BASE_URL}/agent/top-total-call-times`),
+        axios.get(`${API_BASE_URL}/agent/top-rating`, authConfig),
+        axios.get(`${API_BASE_URL}/agent/top-total-calls`, authConfig),
+        axios.get(`${API_BASE_URL}/agent/top-total-call-times`, authConfig),
       ]);
       setTopRating(ratingRes.data);
       setTopCalls(callsRes.data);
@@ -80,7 +84,7 @@ export default function AdminAgent() {
   // CRUD Handlers
   const handleAddAgent = async () => {
     try {
-      await axios.post(`${API_BASE_URL}/user`, newAgent);
+      await axios.post(`${API_BASE_URL}/user`, newAgent, authConfig);
       setIsModalOpen(false);
       setNewAgent({ fullName: "", role: "AGENT" });
       fetchAgents(searchKeyword, 0);
@@ -92,7 +96,7 @@ export default function AdminAgent() {
 
   const handleDeleteAgent = async (agentId) => {
     try {
-      await axios.delete(`${API_BASE_URL}/agent/${agentId}`);
+      await axios.delete(`${API_BASE_URL}/agent/${agentId}`, authConfig);
       fetchAgents(searchKeyword, page);
       fetchTopStats();
     } catch (err) {
@@ -102,7 +106,7 @@ export default function AdminAgent() {
 
   const handleBlockAgent = async (agentId) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${agentId}/block`);
+      await axios.put(`${API_BASE_URL}/user/${agentId}/block`, null, authConfig);
       setAgents((prev) =>
         prev.map((u) =>
           u.id === agentId ? { ...u, active: false, status: "OFFLINE" } : u
@@ -116,7 +120,7 @@ export default function AdminAgent() {
 
   const handleUnBlockAgent = async (agentId) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${agentId}/unblock`);
+      await axios.put(`${API_BASE_URL}/user/${agentId}/unblock`, null, authConfig);
       fetchAgents(searchKeyword, page);
       fetchTopStats();
     } catch (err) {
@@ -126,7 +130,7 @@ export default function AdminAgent() {
 
   const handleRoleChange = async (userId, newRole) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${userId}/update-role`, { "role": newRole });
+      await axios.put(`${API_BASE_URL}/user/${userId}/update-role`, { "role": newRole }, authConfig);
       fetchAgents(searchKeyword, page);
     } catch (err) {
       console.error(err);
@@ -136,7 +140,7 @@ export default function AdminAgent() {
   const fetchAgentDetail = async (agentId) => {
     try {
       setIsDetailLoading(true);
-      const res = await axios.get(`${API_BASE_URL}/agent/${agentId}`);
+      const res = await axios.get(`${API_BASE_URL}/agent/${agentId}`, authConfig);
       setSelectedAgent(res.data);
       setIsDetailOpen(true);
     } catch (err) {
@@ -3,6 +3,7 @@ import axios from "axios";
 import * as XLSX from "xlsx";
 import { saveAs } from "file-saver";
 import StarRating from "../../components/AdminDashboard/StarRating";
+import { useUser } from "../../context/UserContext";
 
 export default function AdminRecord() {
   const [records, setRecords] = useState([]);
@@ -26,6 +27,8 @@ export default function AdminRecord() {
   const [selectedVideo, setSelectedVideo] = useState(null);
 
   const API_BASE_URL = "http://localhost:8081/api";
+  const { token } = useUser();
+  const authConfig = { headers: { Authorization: `Bearer ${token}` } };
 
   const agentTimeoutRef = useRef(null);
   const userTimeoutRef = useRef(null);
@@ -33,7 +36,7 @@ export default function AdminRecord() {
   const fetchRecords = async () => {
     try {
       const params = { page, size, ...filters };
-      const res = await axios.get(`${API_BASE_URL}/record`, { params });
+      const res = await axios.get(`${API_BASE_URL}/record`, { ...authConfig, params });
       setRecords(res.data.content);
       setTotalPages(res.data.totalPages);
     } catch (error) {
@@ -43,7 +46,7 @@ export default function AdminRecord() {
 
   const fetchAgents = async (keyword = "") => {
     try {
-      const res = await axios.get(`${API_BASE_URL}/agent?q=${keyword}&page=0&size=50&sort=id,asc`);
+      const res = await axios.get(`${API_BASE_URL}/agent?q=${keyword}&page=0&size=50&sort=id,asc`, authConfig);
       setAgents(res.data.content || []);
     } catch (error) {
       console.error("Error fetching agents:", error);
@@ -52,7 +55,7 @@ export default function AdminRecord() {
 
   const fetchUsers = async (keyword = "") => {
     try {
-      const res = await axios.get(`${API_BASE_URL}/user?q=${keyword}&page=0&size=50&sort=id,asc`);
+      const res = await axios.get(`${API_BASE_URL}/user?q=${keyword}&page=0&size=50&sort=id,asc`, authConfig);
       setUsers(res.data.content || []);
     } catch (error) {
       console.error("Error fetching users:", error);
@@ -1,6 +1,7 @@
 // src/pages/admin/AdminStats.jsx
 import { useEffect, useState } from "react";
 import axios from "axios";
+import { useUser } from "../../context/UserContext";
 import { Line, Pie, Bar } from "react-chartjs-2";
 import {
   Chart as ChartJS,
@@ -26,6 +27,8 @@ ChartJS.register(
 );
 
 const AdminStats = () => {
+  const { token } = useUser();
+  const authConfig = { headers: { Authorization: `Bearer ${token}` } };
   const [chartData, setChartData] = useState(null);
   const [ratingData, setRatingData] = useState(null);
   const [topEfficiencyData, setTopEfficiencyData] = useState(null);
@@ -48,7 +51,7 @@ const AdminStats = () => {
   // ======================= Rating API =======================
   const fetchRatingData = async () => {
     try {
-      const res = await axios.get("http://localhost:8081/api/agent/rating-stats");
+      const res = await axios.get("http://localhost:8081/api/agent/rating-stats", authConfig);
       const data = res.data;
 
       delete data["0-1"];
@@ -88,7 +91,7 @@ const AdminStats = () => {
   // ======================= Top Efficiency API =======================
     const fetchTopEfficiency = async () => {
     try {
-        const res = await axios.get("http://localhost:8081/api/agent/top-efficiency");
+        const res = await axios.get("http://localhost:8081/api/agent/top-efficiency", authConfig);
         const data = res.data.slice(0, 5); // Top 5
 
         // Mỗi bar một màu khác nhau
@@ -174,6 +177,7 @@ const AdminStats = () => {
 
     try {
       const res = await axios.get("http://localhost:8081/api/record/stats", {
+        ...authConfig,
         params: { interval, start: toUTC7(start), end: toUTC7(end) },
       });
       const data = res.data;
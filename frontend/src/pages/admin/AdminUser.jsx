@@ -2,6 +2,7 @@
 import { useEffect, useState } from "react";
 import axios from "axios";
 import { useWebSocket } from "../../context/WebSocketContext";
+import { useUser } from "../../context/UserContext";
 import SearchBar from "../../components/AdminUser/SearchBar";
 import AddUserModal from "../../components/AdminUser/AddUserModel";
 import UserTable from "../../components/AdminUser/UserTable";
@@ -22,6 +23,8 @@ export default function AdminUser() {
   const [pageSize] = useState(5);
 
   const { connect } = useWebSocket();
+  const { token } = useUser();
+  const authConfig = { headers: { Authorization: `Bearer ${token}` } };
   const API_BASE_URL = "http://localhost:8081/api";
 
   // Fetch users with pagination
@@ -29,7 +32,8 @@ export default function AdminUser() {
     try {
       setIsLoading(true);
       const res = await axios.get(
-        `${API_BASE_URL}/user?q=${keyword}&page=${pageNumber}&size=${pageSize}&sort=id,asc`
+        `${API_BASE_URL}/user?q=${keyword}&page=${pageNumber}&size=${pageSize}&sort=id,asc`,
+        authConfig
       );
 
       setUsers(res.data.content);
@@ -57,7 +61,7 @@ export default function AdminUser() {
   // CRUD Handlers
   const handleAddUser = async () => {
     try {
-      await axios.post(`${API_BASE_URL}/user`, newUser);
+      await axios.post(`${API_BASE_URL}/user`, newUser, authConfig);
       setIsModalOpen(false);
       setNewUser({ fullName: "", role: "USER" });
       fetchUsers(searchKeyword, page);
@@ -68,7 +72,7 @@ export default function AdminUser() {
 
   const handleDeleteUser = async (userId) => {
     try {
-      await axios.delete(`${API_BASE_URL}/user/${userId}`);
+      await axios.delete(`${API_BASE_URL}/user/${userId}`, authConfig);
       fetchUsers(searchKeyword, page);
     } catch (err) {
       console.error(err);
@@ -77,7 +81,7 @@ export default function AdminUser() {
 
   const handleBlockUser = async (userId) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${userId}/block`);
+      await axios.put(`${API_BASE_URL}/user/${userId}/block`, null, authConfig);
       setUsers((prev) =>
         prev.map((u) =>
           u.id === userId ? { ...u, active: false, status: "OFFLINE" } : u
@@ -90,7 +94,7 @@ export default function AdminUser() {
 
   const handleUnBlockUser = async (userId) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${userId}/unblock`);
+      await axios.put(`${API_BASE_URL}/user/${userId}/unblock`, null, authConfig);
       fetchUsers(searchKeyword, page);
     } catch (err) {
       console.error(err);
@@ -118,7 +122,7 @@ export default function AdminUser() {
 
   const handleRoleChange = async (userId, newRole) => {
     try {
-      await axios.put(`${API_BASE_URL}/user/${userId}/update-role`, { "role": newRole });
+      await axios.put(`${API_BASE_URL}/user/${userId}/update-role`, { "role": newRole }, authConfig);
       fetchUsers(searchKeyword, page);
     } catch (err) {
       console.error(err);
@@ -11,7 +11,7 @@ const RecordingManagement = () => {
   const [endDate, setEndDate] = useState(null);
   const [filterMode, setFilterMode] = useState("all");
   const [searchQuery, setSearchQuery] = useState("");
-  const { user } = useUser();
+  const { user, token } = useUser();
 
   useEffect(() => {
     if (
@@ -23,6 +23,9 @@ const RecordingManagement = () => {
           const response = await axios.get(
             "http://localhost:8081/api/record/filter",
             {
+              headers: {
+                Authorization: `Bearer ${token}`,
+              },
               params: {
                 id: user.id,
                 startDate,
@@ -2,6 +2,7 @@ import { useUser } from "../../context/UserContext";
 import { useNavigate } from "react-router-dom";
 import { useEffect, useState, useRef } from "react";
 import { useUserSubscriptions } from "../../hooks/useUserSubscriptions";
+import { useRoleChannelListener } from "../../hooks/useRoleChannelListener";
 import { useWebSocket } from "../../context/WebSocketContext";
 import { useNotification } from "../../context/NotificationContext";
 import { SupportRequestModal } from "../../components/SupportRequestModal";
@@ -113,6 +114,56 @@ const [isMatched, setIsMatched] = useState(false);
     prevNotificationsLength.current = notifications.length;
   }, [notifications, addNotification]);
 
+  // Replay sau khi kết nối lại bị thiếu notification: tải lại request đang chờ
+  // (GET /api/support/requests/{id}) thay vì tin vào trạng thái cũ trên màn hình
+  const refreshCurrentRequest = async () => {
+    if (!currentRequestId) return;
+
+    try {
+      const response = await axios.get(
+        `http://localhost:8081/api/support/requests/${currentRequestId}`,
+        {
+          headers: {
+            Authorization: `Bearer ${token}`,
+          },
+        }
+      );
+      const { status } = response.data;
+
+      if (status === "MATCHED") {
+        if (isQuickSupportActive) {
+          handleRequestMatched();
+        }
+      } else if (status === "ACCEPT") {
+        if (isQuickSupportActive) {
+          stopQuickSupportTimer();
+        }
+        await updateStatus("PREPARING");
+        navigate(`/permission/${currentRequestId}`);
+      } else if (status !== "WAITING") {
+        // REJECT, TIMEOUT, CANCELLED, COMPLETED: request không còn chờ nữa
+        if (isQuickSupportActive) {
+          stopQuickSupportTimer();
+        }
+        setSelectedAgent(null);
+        addNotification({
+          type: "warning",
+          title: "Cập nhật yêu cầu hỗ trợ",
+          message: "Yêu cầu hỗ trợ đã kết thúc trong lúc mất kết nối",
+          autoHide: false,
+        });
+      }
+    } catch (error) {
+      console.error("Error refreshing support request:", error);
+    }
+  };
+
+  useRoleChannelListener("notification_replay", (data) => {
+    if (!data.complete) {
+      refreshCurrentRequest();
+    }
+  });
+
   // Timer management functions
   const startQuickSupportTimer = () => {
     setSelectedAgent(null);
@@ -20,6 +20,18 @@ class OpenViduService {
     this.APPLICATION_SERVER_URL = "http://localhost:8081";
   }
 
+  /**
+   * Header gửi kèm mọi request tới backend: JWT lấy từ phiên đăng nhập
+   * (this.token là token OpenVidu, không phải JWT)
+   */
+  authHeaders() {
+    const userData = JSON.parse(sessionStorage.getItem("userData") || "{}");
+    return {
+      "Content-Type": "application/json",
+      ...(userData.token ? { Authorization: `Bearer ${userData.token}` } : {}),
+    };
+  }
+
   /**
    * Initialize OpenVidu session
    */
@@ -567,9 +579,7 @@ async stopScreenShare(isAudioEnabled) {
         },
         {
           timeout: 15000,
-          headers: {
-            "Content-Type": "application/json",
-          },
+          headers: this.authHeaders(),
         }
       );
 
@@ -616,9 +626,7 @@ async stopScreenShare(isAudioEnabled) {
         },
         {
           timeout: 15000,
-          headers: {
-            "Content-Type": "application/json",
-          },
+          headers: this.authHeaders(),
         }
       );
 
@@ -691,11 +699,8 @@ async stopScreenShare(isAudioEnabled) {
       console.log("Starting auto recording for session: ", this.mySessionId);
       const response = await axios.post(
         `${this.APPLICATION_SERVER_URL}/api/openvidu/recording/start-auto/${this.mySessionId}?agentId=${agentId}&userId=${userId}&requestId=${requestId}`,
-        {
-          headers: {
-            "Content-Type": "application/json",
-          },
-        }
+        null,
+        { headers: this.authHeaders() }
       );
       
       this.recordingId = response.data.recordingId;
@@ -717,11 +722,8 @@ async stopScreenShare(isAudioEnabled) {
       console.log("Stopping auto recording: ", this.recordingId);
       const response = await axios.post(
         `${this.APPLICATION_SERVER_URL}/api/openvidu/recording/stop-auto/${this.recordingId}`,
-        {
-          headers: {
-            "Content-Type": "application/json",
-          },
-        }
+        null,
+        { headers: this.authHeaders() }
       );
       
       console.log("Auto recording stopped:", response.data);
@@ -737,11 +739,8 @@ async stopScreenShare(isAudioEnabled) {
       console.log("Agent starting recording segment for session: ", this.mySessionId);
       const response = await axios.post(
         `${this.APPLICATION_SERVER_URL}/api/openvidu/recording/agent/start/${this.mySessionId}`,
-        {
-          headers: {
-            "Content-Type": "application/json",
-          },
-        }
+        null,
+        { headers: this.authHeaders() }
       );
       
       console.log("Agent recording segment started:", response.data);
@@ -757,11 +756,8 @@ async stopScreenShare(isAudioEnabled) {
       console.log("Agent stopping recording segment for session: ", this.mySessionId);
       const response = await axios.post(
         `${this.APPLICATION_SERVER_URL}/api/openvidu/recording/agent/stop/${segmentId}`,
-        {
-          headers: {
-            "Content-Type": "application/json",
-          },
-        }
+        null,
+        { headers: this.authHeaders() }
       );
       
       console.log("Agent recording segment stopped:", response.data);